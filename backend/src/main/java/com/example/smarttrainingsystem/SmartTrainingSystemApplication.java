@@ -2,6 +2,7 @@ package com.example.smarttrainingsystem;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -13,6 +14,7 @@ import org.springframework.web.bind.annotation.RestController;
  * @since 2025-01-18
  */
 @SpringBootApplication
+@EnableScheduling
 @RestController
 public class SmartTrainingSystemApplication {
 
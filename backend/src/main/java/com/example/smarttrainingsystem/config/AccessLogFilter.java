@@ -0,0 +1,66 @@
+package com.example.smarttrainingsystem.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 采样访问日志过滤器
+ * 按配置的采样率记录请求日志，慢请求始终记录；
+ * 日志写入 ACCESS_LOG 记录器，由 logback-spring.xml 中的异步 appender 输出，不阻塞请求线程
+ *
+ * @author 开发者
+ * @version 1.0
+ * @since 2025-08-06
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    private static final Logger ACCESS_LOG = LoggerFactory.getLogger("ACCESS_LOG");
+
+    /**
+     * 采样率（0~1），0 表示只记录慢请求
+     */
+    @Value("${app.access-log.sample-rate:0.01}")
+    private double sampleRate;
+
+    /**
+     * 慢请求阈值（毫秒），超过该耗时的请求始终记录
+     */
+    @Value("${app.access-log.slow-threshold-ms:1000}")
+    private long slowThresholdMs;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if (!ACCESS_LOG.isInfoEnabled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean sampled = sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            if (sampled || elapsedMs >= slowThresholdMs) {
+                ACCESS_LOG.info("{} {} {} {}ms user={}{}",
+                        request.getMethod(), request.getRequestURI(), response.getStatus(), elapsedMs,
+                        request.getAttribute("userId"), sampled ? "" : " [slow]");
+            }
+        }
+    }
+}
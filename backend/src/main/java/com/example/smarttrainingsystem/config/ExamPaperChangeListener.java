@@ -0,0 +1,103 @@
+package com.example.smarttrainingsystem.config;
+
+import com.example.smarttrainingsystem.entity.Exam;
+import com.example.smarttrainingsystem.entity.ExamQuestion;
+import com.example.smarttrainingsystem.entity.Question;
+import com.example.smarttrainingsystem.service.ExamPaperService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.time.LocalDateTime;
+
+/**
+ * 试卷缓存失效监听器
+ * 挂在考试、考试题目关联和题目实体上，实体变更时立即失效相关试卷缓存；事务提交后再次失效并推进试卷版本：
+ * 考试变更以新的更新时间作为最低版本，题目或考试题目关联变更时更新所属考试的更新时间，
+ * 提交前被并发请求以旧数据构建的试卷因版本过低不再写入缓存。
+ * 由 Hibernate 通过 Spring 容器创建并注入依赖
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-06
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ExamPaperChangeListener {
+
+    /**
+     * 试卷服务经由仓库依赖实体管理器工厂，这里延迟获取以避免循环依赖
+     */
+    private final ObjectProvider<ExamPaperService> examPaperServiceProvider;
+
+    @PostPersist
+    @PostUpdate
+    public void onChange(Object entity) {
+        ExamPaperService examPaperService = examPaperServiceProvider.getIfAvailable();
+        if (examPaperService == null) {
+            return;
+        }
+
+        if (entity instanceof Exam) {
+            Exam exam = (Exam) entity;
+            LocalDateTime version = exam.getUpdatedAt();
+            examPaperService.evict(exam.getId());
+            afterCommit(() -> examPaperService.evict(exam.getId(), version));
+        } else if (entity instanceof ExamQuestion) {
+            String examId = ((ExamQuestion) entity).getExamId();
+            examPaperService.evict(examId);
+            afterCommit(() -> examPaperService.expire(examId));
+        } else if (entity instanceof Question) {
+            String questionId = ((Question) entity).getId();
+            examPaperService.evictByQuestion(questionId);
+            afterCommit(() -> examPaperService.expireByQuestion(questionId));
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        if (entity instanceof Exam) {
+            ExamPaperService examPaperService = examPaperServiceProvider.getIfAvailable();
+            if (examPaperService == null) {
+                return;
+            }
+            // 已删除的考试不再缓存试卷
+            String examId = ((Exam) entity).getId();
+            examPaperService.evict(examId);
+            afterCommit(() -> examPaperService.evict(examId, LocalDateTime.MAX));
+        } else {
+            onChange(entity);
+        }
+    }
+
+    // ==================== 私有方法 ====================
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    run(action);
+                }
+            });
+        } else {
+            run(action);
+        }
+    }
+
+    /**
+     * 失效失败不影响已提交的业务操作，只记录日志
+     */
+    private void run(Runnable action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            log.error("试卷缓存失效失败: {}", e.getMessage(), e);
+        }
+    }
+}
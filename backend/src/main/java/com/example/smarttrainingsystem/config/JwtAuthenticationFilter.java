@@ -20,7 +20,8 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 /**
- * 简化的JWT认证过滤器（调试版本）
+ * JWT认证过滤器
+ * 请求级日志由 {@link AccessLogFilter} 按采样率异步输出，本过滤器只记录异常情况
  *
  * @author 开发者
  * @version 1.0
@@ -35,8 +36,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     /**
      * 不需要认证的路径（调整排除范围）
+     * 以"/"结尾的按前缀匹配，其余按整段路径匹配（自身或其子路径）
      */
-    private static final List<String> EXCLUDED_PATHS = Arrays.asList(
+    private static final String[] EXCLUDED_PATHS = {
             "/api/v1/auth/login",        // 只排除登录接口
             "/api/v1/auth/check-username", // 检查用户名接口
             "/api/v1/test",              // 所有测试接口
@@ -45,70 +47,72 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             "/api/error",                 // 错误页面
             "/api/v1/files/",  // 添加这一行，允许文件访问不需要认证
             "/api/v1/media/video/",        // ✅ 视频播放白名单
+            "/api/v1/media/hls/",          // HLS 分片白名单
             "/api/v1/media/document/" // 文档播放白名单
-    );
+    };
+
+    /**
+     * 启动时预先拆分好的前缀规则和整段规则，匹配过程不产生临时对象
+     */
+    private static final String[] PREFIX_PATHS = Arrays.stream(EXCLUDED_PATHS)
+            .filter(path -> path.endsWith("/"))
+            .toArray(String[]::new);
+
+    private static final String[] SEGMENT_PATHS = Arrays.stream(EXCLUDED_PATHS)
+            .filter(path -> !path.endsWith("/"))
+            .toArray(String[]::new);
+
+    /**
+     * 免认证但可携带Token的路径（媒体与文件输出）：Token有效时识别用户，用于按用户限流；
+     * 无Token或Token无效时按匿名访问处理，不返回401
+     */
+    private static final String[] OPTIONAL_AUTH_PATHS = {
+            "/api/v1/media/",
+            "/api/v1/files/"
+    };
+
+    /**
+     * 媒体路径上的Token查询参数（video、img 等标签无法携带 Authorization 头）
+     */
+    private static final String TOKEN_PARAM = "access_token";
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
 
         String requestPath = request.getRequestURI();
-        String method = request.getMethod();
-
-        log.info("=== JWT过滤器处理请求: {} {} ===", method, requestPath);
 
-        // 1. 检查是否为排除路径
+        // 1. 检查是否为排除路径（媒体路径携带有效Token时识别用户）
         if (isExcludedPath(requestPath)) {
-            log.info("✅ 跳过JWT验证: {}", requestPath);
+            if (isOptionalAuthPath(requestPath)) {
+                resolveOptionalUser(request);
+            }
             filterChain.doFilter(request, response);
             return;
         }
 
-        log.info("🔐 需要JWT验证的路径: {}", requestPath);
-
         // 2. 提取Token
         String token = extractToken(request);
         if (!StringUtils.hasText(token)) {
-            log.warn("❌ 请求{}缺少Authorization头", requestPath);
+            log.debug("请求{}缺少Authorization头", requestPath);
             sendUnauthorizedError(response, "缺少访问令牌");
             return;
         }
 
-        log.info("🎫 提取到Token: {}...", token.substring(0, Math.min(20, token.length())));
-
-        // 3. 验证Token
+        // 3. 验证Token（一次解析，结果带缓存）
         try {
-            String username = jwtUtil.getUsernameFromToken(token);
-            String userId = jwtUtil.getUserIdFromToken(token);
-            List<String> roles = jwtUtil.getRolesFromToken(token);
-
-            log.info("👤 Token解析结果 - 用户: {}, ID: {}, 角色: {}", username, userId, roles);
-
-            if (username == null || !jwtUtil.validateToken(token, username)) {
-                log.warn("❌ Token验证失败");
+            JwtUtil.TokenClaims claims = jwtUtil.parseToken(token);
+            if (claims == null || claims.getUsername() == null) {
+                log.debug("Token验证失败: {}", requestPath);
                 sendUnauthorizedError(response, "访问令牌无效或已过期");
                 return;
             }
 
-            // 4. 设置Spring Security认证信息
-            List<SimpleGrantedAuthority> authorities = roles.stream()
-                    .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                    .collect(Collectors.toList());
-
-            UsernamePasswordAuthenticationToken authentication =
-                    new UsernamePasswordAuthenticationToken(username, null, authorities);
-
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-
-            // 5. 设置请求属性
-            request.setAttribute("username", username);
-            request.setAttribute("userId", userId);
-            request.setAttribute("roles", roles);
-
-            log.info("✅ JWT验证成功，用户: {}, 权限: {}", username, authorities);
+            // 4. 设置Spring Security认证信息与请求属性
+            authenticate(request, claims);
 
         } catch (Exception e) {
-            log.error("❌ JWT验证异常: {}", e.getMessage(), e);
+            log.warn("JWT验证异常: {} - {}", requestPath, e.getMessage());
             sendUnauthorizedError(response, "访问令牌验证失败");
             return;
         }
@@ -121,16 +125,59 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
      * 检查是否为排除路径
      */
     private boolean isExcludedPath(String requestPath) {
-        boolean excluded = EXCLUDED_PATHS.stream().anyMatch(path -> {
-            // 处理通配符路径
-            if (path.endsWith("/")) {
-                return requestPath.startsWith(path);
-            } else {
-                return requestPath.equals(path) || requestPath.startsWith(path + "/");
+        for (String prefix : PREFIX_PATHS) {
+            if (requestPath.startsWith(prefix)) {
+                return true;
+            }
+        }
+        for (String path : SEGMENT_PATHS) {
+            if (requestPath.startsWith(path)
+                    && (requestPath.length() == path.length() || requestPath.charAt(path.length()) == '/')) {
+                return true;
             }
-        });
-        log.info("🔍 路径检查: {} -> {}", requestPath, excluded ? "排除" : "需要验证");
-        return excluded;
+        }
+        return false;
+    }
+
+    private boolean isOptionalAuthPath(String requestPath) {
+        for (String prefix : OPTIONAL_AUTH_PATHS) {
+            if (requestPath.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 媒体路径上从 Authorization 头或查询参数中识别用户，Token缺失或无效时保持匿名
+     */
+    private void resolveOptionalUser(HttpServletRequest request) {
+        String token = extractToken(request);
+        if (!StringUtils.hasText(token)) {
+            token = request.getParameter(TOKEN_PARAM);
+        }
+        if (!StringUtils.hasText(token)) {
+            return;
+        }
+        JwtUtil.TokenClaims claims = jwtUtil.parseToken(token);
+        if (claims != null && claims.getUsername() != null) {
+            authenticate(request, claims);
+        }
+    }
+
+    private void authenticate(HttpServletRequest request, JwtUtil.TokenClaims claims) {
+        List<SimpleGrantedAuthority> authorities = claims.getRoles().stream()
+                .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
+                .collect(Collectors.toList());
+
+        UsernamePasswordAuthenticationToken authentication =
+                new UsernamePasswordAuthenticationToken(claims.getUsername(), null, authorities);
+
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        request.setAttribute("username", claims.getUsername());
+        request.setAttribute("userId", claims.getUserId());
+        request.setAttribute("roles", claims.getRoles());
     }
 
     /**
@@ -138,7 +185,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
      */
     private String extractToken(HttpServletRequest request) {
         String authHeader = request.getHeader("Authorization");
-        log.debug("Authorization头: {}", authHeader != null ? authHeader.substring(0, Math.min(20, authHeader.length())) + "..." : "null");
 
         if (StringUtils.hasText(authHeader) && authHeader.startsWith("Bearer ")) {
             return authHeader.substring(7);
@@ -160,6 +206,5 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         );
 
         response.getWriter().write(jsonResponse);
-        log.info("📤 发送401响应: {}", message);
     }
 }
\ No newline at end of file
@@ -56,6 +56,7 @@ public class SecurityConfig {
                         .antMatchers("/api/v1/debug/public").permitAll()
                         .antMatchers("/api/v1/files/**").permitAll()  // 允许文件访问
                         .antMatchers("/api/v1/media/video/**").permitAll() // 视频流接口匿名访问
+                        .antMatchers("/api/v1/media/hls/**").permitAll() // HLS 分片接口匿名访问
                         .antMatchers("/api/v1/media/document/**").permitAll() // 文档流接口匿名访问
                         // 其他接口需要认证，但暂时放宽要求
                         .anyRequest().permitAll()  // 暂时允许所有请求，但JWT过滤器仍会处理
@@ -76,6 +77,8 @@ public class SecurityConfig {
         configuration.setAllowedOriginPatterns(Arrays.asList("*"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        // 分片上传进度头，供浏览器端读取
+        configuration.setExposedHeaders(Arrays.asList("Upload-Offset", "Upload-Length"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
@@ -0,0 +1,46 @@
+package com.example.smarttrainingsystem.config;
+
+import com.example.smarttrainingsystem.service.LocalStorageBackend;
+import com.example.smarttrainingsystem.service.S3StorageBackend;
+import com.example.smarttrainingsystem.service.StorageBackend;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * 文件存储后端配置类
+ * app.storage.type=local（默认）时文件只保存在 app.upload.path；
+ * app.storage.type=s3 时以 S3 兼容对象存储为准，app.upload.path 作为本地读写缓存
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Configuration
+public class StorageConfig {
+
+    /**
+     * S3 兼容对象存储后端
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+    public StorageBackend s3StorageBackend(@Value("${app.storage.s3.endpoint}") String endpoint,
+                                           @Value("${app.storage.s3.region:us-east-1}") String region,
+                                           @Value("${app.storage.s3.bucket}") String bucket,
+                                           @Value("${app.storage.s3.access-key}") String accessKey,
+                                           @Value("${app.storage.s3.secret-key}") String secretKey) {
+        return new S3StorageBackend(endpoint, region, bucket, accessKey, secretKey);
+    }
+
+    /**
+     * 本地文件系统后端
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "local", matchIfMissing = true)
+    public StorageBackend localStorageBackend(@Value("${app.upload.path:/uploads}") String uploadPath) {
+        return new LocalStorageBackend(Paths.get(uploadPath));
+    }
+}
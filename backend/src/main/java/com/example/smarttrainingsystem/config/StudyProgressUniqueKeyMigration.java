@@ -0,0 +1,88 @@
+package com.example.smarttrainingsystem.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 学习进度唯一键迁移
+ * t_study_progress 在加上 (user_id, progress_date, progress_type) 唯一键之前可能已有重复行，
+ * Hibernate 自动更新表结构时无法创建该唯一键（只记录警告）。本迁移在实体管理器工厂初始化之前执行：
+ * 表已存在且尚无该唯一键时，每组重复行只保留最后更新的一行，再创建唯一键；新库或已迁移的库直接跳过。
+ * 迁移失败时中止启动，避免在没有唯一键的表上继续写入重复行
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class StudyProgressUniqueKeyMigration implements InitializingBean {
+
+    private static final String TABLE = "t_study_progress";
+
+    private static final String UNIQUE_KEY = "uk_study_progress_user_date_type";
+
+    private static final String TABLE_EXISTS_SQL =
+            "SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?";
+
+    private static final String KEY_EXISTS_SQL =
+            "SELECT COUNT(*) FROM information_schema.statistics "
+                    + "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?";
+
+    /**
+     * 行的最后修改时间：旧数据的 updated_at 可能为空，依次退回 created_at 和固定值，保证比较结果不为 NULL
+     */
+    private static final String MODIFIED_AT = "COALESCE(%1$s.updated_at, %1$s.created_at, '1970-01-01')";
+
+    /**
+     * 删除重复行：同一用户、日期、类型只保留最后修改的一行，相同时保留 id 最大的一行，每组恰好保留一行
+     */
+    private static final String DELETE_DUPLICATES_SQL =
+            "DELETE p FROM " + TABLE + " p JOIN " + TABLE + " k "
+                    + "ON k.user_id = p.user_id AND k.progress_date = p.progress_date AND k.progress_type = p.progress_type "
+                    + "AND (" + String.format(MODIFIED_AT, "k") + " > " + String.format(MODIFIED_AT, "p")
+                    + " OR (" + String.format(MODIFIED_AT, "k") + " = " + String.format(MODIFIED_AT, "p")
+                    + " AND k.id > p.id))";
+
+    private static final String ADD_UNIQUE_KEY_SQL =
+            "ALTER TABLE " + TABLE + " ADD CONSTRAINT " + UNIQUE_KEY
+                    + " UNIQUE (user_id, progress_date, progress_type)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 实体管理器工厂（及其表结构更新）依赖本迁移
+     */
+    @Bean
+    public static EntityManagerFactoryDependsOnPostProcessor studyProgressUniqueKeyMigrationDependency() {
+        return new EntityManagerFactoryDependsOnPostProcessor(StudyProgressUniqueKeyMigration.class);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            Integer tables = jdbcTemplate.queryForObject(TABLE_EXISTS_SQL, Integer.class, TABLE);
+            if (tables == null || tables == 0) {
+                return;
+            }
+            Integer keys = jdbcTemplate.queryForObject(KEY_EXISTS_SQL, Integer.class, TABLE, UNIQUE_KEY);
+            if (keys != null && keys > 0) {
+                return;
+            }
+
+            long startTime = System.currentTimeMillis();
+            int removed = jdbcTemplate.update(DELETE_DUPLICATES_SQL);
+            jdbcTemplate.execute(ADD_UNIQUE_KEY_SQL);
+            log.info("学习进度唯一键迁移完成: 删除重复行{}条, 耗时={}ms", removed, System.currentTimeMillis() - startTime);
+        } catch (RuntimeException e) {
+            log.error("学习进度唯一键迁移失败，需手工清理 {} 中的重复行并创建唯一键 {} 后再启动", TABLE, UNIQUE_KEY, e);
+            throw new IllegalStateException("学习进度唯一键迁移失败: " + e.getMessage(), e);
+        }
+    }
+}
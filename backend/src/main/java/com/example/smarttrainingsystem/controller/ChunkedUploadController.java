@@ -0,0 +1,150 @@
+package com.example.smarttrainingsystem.controller;
+
+import com.example.smarttrainingsystem.common.Result;
+import com.example.smarttrainingsystem.dto.ChunkedUploadDTO;
+import com.example.smarttrainingsystem.service.ChunkedUploadService;
+import com.example.smarttrainingsystem.service.DocumentPreviewService;
+import com.example.smarttrainingsystem.service.HlsTranscodeService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 分片断点续传控制器（tus 风格）
+ * 流程：POST 创建会话 → PATCH 按偏移量上传分片（可并行）→ GET/HEAD 查询进度 → POST complete 完成
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/upload/chunked")
+@RequiredArgsConstructor
+@Validated
+public class ChunkedUploadController {
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    private final HlsTranscodeService hlsTranscodeService;
+
+    private final DocumentPreviewService documentPreviewService;
+
+    /**
+     * 获取当前用户ID
+     */
+    private String getCurrentUserId(HttpServletRequest request) {
+        String userId = (String) request.getAttribute("userId");
+        if (userId == null || userId.trim().isEmpty()) {
+            log.error("无法从请求中获取用户ID");
+            throw new RuntimeException("用户认证信息缺失");
+        }
+        return userId;
+    }
+
+    /**
+     * 创建上传会话
+     */
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN') or hasRole('TEACHER')")
+    public Result<ChunkedUploadDTO.Status> init(
+            @Valid @RequestBody ChunkedUploadDTO.InitRequest initRequest,
+            HttpServletRequest request) {
+
+        String userId = getCurrentUserId(request);
+        log.info("接收分片上传创建请求: fileName={}, size={}, type={}, userId={}",
+                initRequest.getFileName(), initRequest.getFileSize(), initRequest.getType(), userId);
+
+        return Result.success("上传会话创建成功", chunkedUploadService.init(initRequest, userId));
+    }
+
+    /**
+     * 上传分片，请求体为分片原始字节（application/offset+octet-stream）
+     */
+    @PatchMapping("/{uploadId}")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('TEACHER')")
+    public ResponseEntity<Result<ChunkedUploadDTO.Status>> uploadChunk(
+            @PathVariable String uploadId,
+            @RequestHeader(UPLOAD_OFFSET) long offset,
+            @RequestHeader(value = "Upload-Checksum", required = false) String checksum,
+            HttpServletRequest request) throws IOException {
+
+        String userId = getCurrentUserId(request);
+
+        ChunkedUploadDTO.Status status = chunkedUploadService.writeChunk(
+                uploadId, userId, offset, request.getContentLengthLong(), checksum, request.getInputStream());
+
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, String.valueOf(status.getUploadOffset()))
+                .header(UPLOAD_LENGTH, String.valueOf(status.getFileSize()))
+                .body(Result.success(status));
+    }
+
+    /**
+     * 查询上传进度，HEAD 请求只返回 Upload-Offset / Upload-Length 头
+     */
+    @GetMapping("/{uploadId}")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('TEACHER')")
+    public ResponseEntity<Result<ChunkedUploadDTO.Status>> getStatus(
+            @PathVariable String uploadId,
+            HttpServletRequest request) {
+
+        String userId = getCurrentUserId(request);
+        ChunkedUploadDTO.Status status = chunkedUploadService.getStatus(uploadId, userId);
+
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, String.valueOf(status.getUploadOffset()))
+                .header(UPLOAD_LENGTH, String.valueOf(status.getFileSize()))
+                .header("Cache-Control", "no-store")
+                .body(Result.success(status));
+    }
+
+    /**
+     * 完成上传，返回格式与普通上传接口一致
+     */
+    @PostMapping("/{uploadId}/complete")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('TEACHER')")
+    public Result<Map<String, Object>> complete(
+            @PathVariable String uploadId,
+            HttpServletRequest request) {
+
+        String userId = getCurrentUserId(request);
+        log.info("接收分片上传完成请求: uploadId={}, userId={}", uploadId, userId);
+
+        Map<String, Object> result = chunkedUploadService.complete(uploadId, userId);
+        String fileUrl = (String) result.get("url");
+        if (fileUrl.startsWith("/api/v1/files/course/videos/")) {
+            // HLS 分片异步生成，完成前该地址返回404，前端应回退到 url 播放
+            result.put("hlsUrl", hlsTranscodeService.getPlaylistUrl(fileUrl));
+        } else if (fileUrl.startsWith("/api/v1/files/course/documents/")) {
+            result.put("previewUrl", documentPreviewService.getPreviewUrl(fileUrl));
+        }
+
+        return Result.success(result);
+    }
+
+    /**
+     * 取消上传
+     */
+    @DeleteMapping("/{uploadId}")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('TEACHER')")
+    public Result<Void> abort(
+            @PathVariable String uploadId,
+            HttpServletRequest request) {
+
+        String userId = getCurrentUserId(request);
+        chunkedUploadService.abort(uploadId, userId);
+        return Result.success("上传已取消", null);
+    }
+}
@@ -210,6 +210,17 @@ public class CourseController {
         return Result.success(result);
     }
 
+    /**
+     * 搜索结果分面统计 - 所有已认证用户可访问
+     */
+    @GetMapping("/search/facets")
+    public Result<CourseDTO.Facets> getSearchFacets(CourseDTO.SearchRequest searchRequest) {
+        log.info("获取课程搜索分面: {}", searchRequest);
+
+        CourseDTO.Facets result = courseService.getSearchFacets(searchRequest);
+        return Result.success(result);
+    }
+
     /**
      * 获取推荐课程 - 所有已认证用户可访问
      */
@@ -1,7 +1,10 @@
 package com.example.smarttrainingsystem.controller;
 
 import com.example.smarttrainingsystem.common.Result;
+import com.example.smarttrainingsystem.utils.JwtUtil;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -22,8 +25,11 @@ import java.util.Map;
 @Slf4j
 @RestController
 @RequestMapping("/api/v1/debug")
+@RequiredArgsConstructor
 public class DebugController {
 
+    private final JwtUtil jwtUtil;
+
     /**
      * 调试请求信息
      */
@@ -82,4 +88,13 @@ public class DebugController {
     public Result<String> publicDebug() {
         return Result.success("公开调试接口正常", "这是一个无需认证的接口");
     }
-}
\ No newline at end of file
+
+    /**
+     * JWT解析缓存统计
+     */
+    @GetMapping("/jwt-cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<Map<String, Object>> jwtCacheStats() {
+        return Result.success("获取JWT缓存统计成功", jwtUtil.getCacheStats());
+    }
+}
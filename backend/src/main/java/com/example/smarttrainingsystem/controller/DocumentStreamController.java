@@ -1,24 +1,30 @@
 package com.example.smarttrainingsystem.controller;
 
+import com.example.smarttrainingsystem.common.Result;
+import com.example.smarttrainingsystem.service.DocumentPreviewService;
+import com.example.smarttrainingsystem.service.FileLocationIndex;
+import com.example.smarttrainingsystem.service.MediaStreamService;
+import com.example.smarttrainingsystem.service.StorageService;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * 文档流控制器 - 增强版
- * 提供课程文档的在线预览接口，支持多种文档类型
+ * 提供课程文档的在线预览接口，支持多种文档类型；
+ * 逐页预览接口返回后台预渲染的页面图片，打开大文档时无需先下载整个文件；
+ * 文档内容以 Servlet 异步非阻塞方式输出，慢速客户端不占用请求线程
  *
  * @author 开发者
  * @version 2.0
@@ -27,10 +33,16 @@ import java.nio.file.Paths;
 @Slf4j
 @RestController
 @RequestMapping("/api/v1/media")
+@RequiredArgsConstructor
 public class DocumentStreamController {
 
-    @Value("${app.upload.path:/uploads}")
-    private String uploadPath;
+    private final FileLocationIndex fileLocationIndex;
+
+    private final MediaStreamService mediaStreamService;
+
+    private final StorageService storageService;
+
+    private final DocumentPreviewService documentPreviewService;
 
     /**
      * 文档流式访问接口
@@ -46,55 +58,106 @@ public class DocumentStreamController {
 
         log.info("文档访问请求: userId={}, year={}, month={}, filename={}", userId, year, month, filename);
 
-        Path filePath = Paths.get(uploadPath)
-                .resolve("course/documents")
-                .resolve(userId)
-                .resolve(year)
-                .resolve(month)
-                .resolve(filename);
+        String key = "course/documents/" + userId + "/" + year + "/" + month + "/" + filename;
+        Path filePath;
+        try {
+            filePath = storageService.resolve(key);
+        } catch (IOException e) {
+            log.warn("读取文档文件失败: {}, error={}", key, e.getMessage());
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
 
-        if (!Files.exists(filePath) || !Files.isReadable(filePath)) {
-            log.warn("请求的文档文件不存在或不可读: {}", filePath);
+        if (filePath == null || !Files.isReadable(filePath)) {
+            log.warn("请求的文档文件不存在或不可读: {}", key);
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             return;
         }
 
         // 获取文件MIME类型
         String contentType = getContentType(filename);
-        long fileSize = 0;
-
-        try {
-            fileSize = Files.size(filePath);
-        } catch (IOException e) {
-            log.error("获取文件大小失败: {}", e.getMessage());
-        }
-
-        // 设置响应头
-        response.setContentType(contentType);
-        response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(fileSize));
 
         // 设置适当的Content-Disposition
         String disposition = getContentDisposition(filename, contentType);
-        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition);
-
-        // 添加缓存控制
-        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=3600");
 
-        // 支持范围请求（用于大文件）
-        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // 添加缓存控制：存储文件名内容不可变，可长期缓存
+        response.setHeader(HttpHeaders.CACHE_CONTROL, mediaStreamService.cacheControl(filename));
 
         // 添加CORS支持
         response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
         response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS, "GET, OPTIONS");
-        response.setHeader(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, "Content-Disposition");
+        response.setHeader(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, "Content-Disposition, ETag");
 
-        try (ServletOutputStream out = response.getOutputStream()) {
-            Files.copy(filePath, out);
-            out.flush();
-            log.info("文档流输出成功: {}", filename);
+        try {
+            // 支持范围请求与条件请求（ETag / Last-Modified，未变化时返回 304），响应体异步非阻塞输出
+            mediaStreamService.serveFileThrottled(filePath, contentType, disposition, request, response);
         } catch (IOException e) {
-            log.error("文档流输出失败: {}", e.getMessage(), e);
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            log.debug("文档流输出中断: {}", e.getMessage());
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        }
+    }
+
+    /**
+     * 文档预览状态接口，返回已渲染的页数；尚未渲染的文档在此时提交渲染
+     * 路径: /api/v1/media/document/{userId}/{year}/{month}/{filename}/pages
+     */
+    @GetMapping("/document/{userId}/{year}/{month}/{filename}/pages")
+    public Result<Map<String, Object>> getDocumentPreview(@PathVariable String userId,
+                                                          @PathVariable String year,
+                                                          @PathVariable String month,
+                                                          @PathVariable String filename) {
+        String key = "course/documents/" + userId + "/" + year + "/" + month + "/" + filename;
+
+        DocumentPreviewService.Preview preview;
+        try {
+            preview = documentPreviewService.getPreview(key);
+        } catch (IOException e) {
+            log.warn("读取文档预览状态失败: {}, error={}", key, e.getMessage());
+            return Result.error("读取文档预览状态失败");
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("status", preview.getStatus());
+        result.put("pages", preview.getPages());
+        result.put("totalPages", preview.getTotalPages());
+        result.put("pageUrl", "/api/v1/media/document/" + userId + "/" + year + "/" + month + "/"
+                + filename + "/pages/{page}");
+        return Result.success(result);
+    }
+
+    /**
+     * 文档单页预览图接口，页码从 1 开始
+     * 路径: /api/v1/media/document/{userId}/{year}/{month}/{filename}/pages/{page}
+     */
+    @GetMapping("/document/{userId}/{year}/{month}/{filename}/pages/{page}")
+    public void streamDocumentPage(@PathVariable String userId,
+                                   @PathVariable String year,
+                                   @PathVariable String month,
+                                   @PathVariable String filename,
+                                   @PathVariable int page,
+                                   HttpServletRequest request,
+                                   HttpServletResponse response) {
+        String key = "course/documents/" + userId + "/" + year + "/" + month + "/" + filename;
+
+        try {
+            Path pagePath = documentPreviewService.getPage(key, page);
+            if (pagePath == null) {
+                // 页面尚未渲染或超出页数，前端应查询预览状态或回退到原文档
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+
+            // 页面随文档不可变（文档存储名唯一），可长期缓存
+            response.setHeader(HttpHeaders.CACHE_CONTROL, mediaStreamService.cacheControl(filename));
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+            mediaStreamService.serveFile(pagePath, MediaType.IMAGE_JPEG_VALUE, "inline", request, response);
+        } catch (IOException e) {
+            log.debug("文档预览页输出中断: {}", e.getMessage());
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
         }
     }
 
@@ -103,37 +166,36 @@ public class DocumentStreamController {
      * 路径: /api/v1/media/document/{filename}
      */
     @GetMapping("/document/{filename}")
-    public ResponseEntity<byte[]> streamSimpleDocument(@PathVariable String filename,
-                                                       HttpServletRequest request) {
+    public void streamSimpleDocument(@PathVariable String filename,
+                                     HttpServletRequest request,
+                                     HttpServletResponse response) {
         log.info("简化文档访问请求: filename={}", filename);
 
-        // 在uploads目录下搜索文件
-        Path filePath = findFile(filename);
+        // 按文件名索引查找，不再遍历uploads目录
+        Path filePath = fileLocationIndex.find(filename);
 
-        if (filePath == null || !Files.exists(filePath) || !Files.isReadable(filePath)) {
+        if (filePath == null || !Files.isReadable(filePath)) {
             log.warn("请求的文档文件不存在: {}", filename);
-            return ResponseEntity.notFound().build();
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
 
-        try {
-            byte[] content = Files.readAllBytes(filePath);
-            String contentType = getContentType(filename);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType(contentType));
-            headers.setContentDisposition(
-                    org.springframework.http.ContentDisposition
-                            .inline()
-                            .filename(filename)
-                            .build()
-            );
-            headers.setCacheControl("public, max-age=3600");
-
-            return new ResponseEntity<>(content, headers, HttpStatus.OK);
+        String contentType = getContentType(filename);
+        String disposition = org.springframework.http.ContentDisposition
+                .inline()
+                .filename(filename)
+                .build()
+                .toString();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, mediaStreamService.cacheControl(filename));
 
+        try {
+            // 异步非阻塞输出，不把整个文档读入内存，也不占用请求线程
+            mediaStreamService.serveFileThrottled(filePath, contentType, disposition, request, response);
         } catch (IOException e) {
-            log.error("读取文档失败: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            log.debug("文档流输出中断: {}", e.getMessage());
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
         }
     }
 
@@ -227,22 +289,4 @@ public class DocumentStreamController {
         // 对于Office文档等，使用attachment以触发下载
         return String.format("attachment; filename=\"%s\"", filename);
     }
-
-    /**
-     * 在uploads目录下递归查找文件
-     */
-    private Path findFile(String filename) {
-        Path uploadsPath = Paths.get(uploadPath);
-
-        try {
-            return Files.walk(uploadsPath)
-                    .filter(Files::isRegularFile)
-                    .filter(path -> path.getFileName().toString().equals(filename))
-                    .findFirst()
-                    .orElse(null);
-        } catch (IOException e) {
-            log.error("搜索文件时出错: {}", e.getMessage());
-            return null;
-        }
-    }
-}
\ No newline at end of file
+}
@@ -1,19 +1,29 @@
 package com.example.smarttrainingsystem.controller;
 
 import com.example.smarttrainingsystem.common.Result;
+import com.example.smarttrainingsystem.dto.AutosaveAnswerDTO;
 import com.example.smarttrainingsystem.dto.ExamDTO;
 import com.example.smarttrainingsystem.dto.ExamResultDTO;
 import com.example.smarttrainingsystem.dto.ExamSessionDTO;
 import com.example.smarttrainingsystem.dto.SubmitAnswerDTO;
+import com.example.smarttrainingsystem.entity.ExamResult;
+import com.example.smarttrainingsystem.service.ExamAdmissionService;
+import com.example.smarttrainingsystem.service.ExamAutosaveService;
 import com.example.smarttrainingsystem.service.ExamService;
 import com.example.smarttrainingsystem.utils.SecurityUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 考试管理控制器
@@ -31,6 +41,10 @@ public class ExamController {
 
     private final ExamService examService;
 
+    private final ExamAdmissionService examAdmissionService;
+
+    private final ExamAutosaveService examAutosaveService;
+
     /**
      * 获取可用考试列表
      *
@@ -49,19 +63,56 @@ public class ExamController {
 
     /**
      * 开始考试
+     * 经过准入控制：同时开始考试的人数过多时返回 429，data 中包含排队位置与建议重试时间（毫秒），
+     * 客户端按 Retry-After 重试时保留原排队位置
      *
      * @param examId 考试ID
-     * @return 考试会话信息（包含题目）
+     * @return 考试会话信息（包含题目），或排队信息
      */
     @PostMapping("/{examId}/start")
     @PreAuthorize("hasRole('STUDENT') or hasRole('TEACHER') or hasRole('ADMIN')")
-    public Result<ExamSessionDTO> startExam(@PathVariable String examId) {
+    public Result<Object> startExam(@PathVariable String examId, HttpServletResponse response) {
         log.info("收到开始考试请求 - 考试ID: {}", examId);
         
         String userId = SecurityUtils.getCurrentUserId();
-        ExamSessionDTO session = examService.startExam(userId, examId);
-        
-        return Result.success("开始考试成功", session);
+        ExamAdmissionService.Admission admission = examAdmissionService.admit(userId + ":" + examId);
+        if (!admission.isGranted()) {
+            Map<String, Object> queue = new HashMap<>();
+            queue.put("queued", true);
+            queue.put("position", admission.getPosition());
+            queue.put("retryAfterMs", admission.getRetryAfterMs());
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER,
+                    String.valueOf(TimeUnit.MILLISECONDS.toSeconds(admission.getRetryAfterMs() + 999)));
+            return new Result<>(HttpStatus.TOO_MANY_REQUESTS.value(), "当前开始考试人数较多，正在排队", queue);
+        }
+
+        try {
+            ExamSessionDTO session = examService.startExam(userId, examId);
+            return Result.success("开始考试成功", session);
+        } finally {
+            admission.release();
+        }
+    }
+
+    /**
+     * 自动保存作答
+     * 客户端在作答变化时提交变化的题目，服务端合并后定时写入，可频繁调用
+     *
+     * @param examId 考试ID
+     * @param autosaveData 作答变化
+     * @return 当前已作答题数
+     */
+    @PutMapping("/{examId}/answers")
+    @PreAuthorize("hasRole('STUDENT') or hasRole('TEACHER') or hasRole('ADMIN')")
+    public Result<Map<String, Object>> autosaveAnswers(@PathVariable String examId,
+                                                       @Valid @RequestBody AutosaveAnswerDTO autosaveData) {
+        String userId = SecurityUtils.getCurrentUserId();
+        int answeredCount = examAutosaveService.save(userId, examId, autosaveData.getAnswers());
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("answeredCount", answeredCount);
+        return Result.success("保存成功", result);
     }
 
     /**
@@ -80,6 +131,10 @@ public class ExamController {
         String userId = SecurityUtils.getCurrentUserId();
         ExamResultDTO result = examService.submitExam(userId, examId, submitData);
         
+        // 异步评分时返回已交卷（评分中）状态，客户端轮询获取考试结果
+        if (ExamResult.PassStatus.SUBMITTED.name().equals(result.getPassStatus())) {
+            return Result.success("答案已提交，正在评分", result);
+        }
         return Result.success("提交考试成功", result);
     }
 
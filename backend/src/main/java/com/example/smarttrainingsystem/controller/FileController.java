@@ -1,10 +1,16 @@
 package com.example.smarttrainingsystem.controller;
 
 import com.example.smarttrainingsystem.common.Result;
+import com.example.smarttrainingsystem.service.DocumentPreviewService;
+import com.example.smarttrainingsystem.service.FileETagCache;
 import com.example.smarttrainingsystem.service.FileUploadService;
+import com.example.smarttrainingsystem.service.HlsTranscodeService;
+import com.example.smarttrainingsystem.service.ImageThumbnailService;
+import com.example.smarttrainingsystem.service.MediaStreamService;
+import com.example.smarttrainingsystem.service.PrecompressedVariantService;
+import com.example.smarttrainingsystem.service.StorageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpHeaders;
@@ -15,10 +21,10 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -37,8 +43,19 @@ public class FileController {
 
     private final FileUploadService fileUploadService;
 
-    @Value("${app.upload.path:/uploads}")
-    private String uploadPath;
+    private final HlsTranscodeService hlsTranscodeService;
+
+    private final MediaStreamService mediaStreamService;
+
+    private final FileETagCache fileETagCache;
+
+    private final ImageThumbnailService imageThumbnailService;
+
+    private final StorageService storageService;
+
+    private final DocumentPreviewService documentPreviewService;
+
+    private final PrecompressedVariantService precompressedVariantService;
 
     /**
      * 获取当前用户ID
@@ -143,6 +160,8 @@ public class FileController {
 
         Map<String, Object> result = new HashMap<>();
         result.put("url", fileUrl);
+        // HLS 分片异步生成，完成前该地址返回404，前端应回退到 url 播放
+        result.put("hlsUrl", hlsTranscodeService.getPlaylistUrl(fileUrl));
         result.put("originalName", file.getOriginalFilename());
         result.put("size", file.getSize());
         String extVideo = "";
@@ -172,6 +191,8 @@ public class FileController {
 
         Map<String, Object> result = new HashMap<>();
         result.put("url", fileUrl);
+        // 逐页预览图异步渲染，状态为 ready 前前端应回退到 url 预览
+        result.put("previewUrl", documentPreviewService.getPreviewUrl(fileUrl));
         result.put("originalName", file.getOriginalFilename());
         result.put("name", file.getOriginalFilename());
         result.put("size", file.getSize());
@@ -216,6 +237,45 @@ public class FileController {
 
     // ==================== 🔧 修复的文件访问接口 ====================
 
+    /**
+     * 图片缩略图接口（课程封面、头像等）
+     * 路径格式: /files/thumbnail?url=/api/v1/files/course/covers/...&w=48&h=48&format=jpg
+     * 宽高须为课程封面（48x48、320x180、640x360）或头像（48x48、96x96、192x192）规格之一，其他尺寸返回 400；
+     * 结果居中裁剪并缓存在服务器磁盘上
+     */
+    @GetMapping("/files/thumbnail")
+    public void downloadThumbnail(
+            @RequestParam("url") String url,
+            @RequestParam(value = "w", defaultValue = "0") int width,
+            @RequestParam(value = "h", defaultValue = "0") int height,
+            @RequestParam(value = "format", required = false) String format,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+
+        Path source = imageThumbnailService.resolveSource(url);
+        if (source == null) {
+            log.warn("缩略图原图不存在: {}", url);
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        try {
+            Path thumbnail = imageThumbnailService.getThumbnail(source, width, height, format);
+            // 缩略图随原图不可变（原图变化后生成新的缩略图文件）
+            response.setHeader(HttpHeaders.CACHE_CONTROL,
+                    mediaStreamService.cacheControl(source.getFileName().toString()));
+            mediaStreamService.serveFile(thumbnail, imageThumbnailService.getContentType(thumbnail),
+                    "inline", request, response);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        } catch (IOException e) {
+            log.warn("缩略图输出失败: url={}, error={}", url, e.getMessage());
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        }
+    }
+
     /**
      * 🔧 修复：支持多级分类的文件访问接口
      * 路径格式: /files/course/covers/{userId}/{year}/{month}/{filename}
@@ -304,15 +364,15 @@ public class FileController {
             HttpServletRequest request) {
 
         try {
-            // 构建文件路径
-            Path filePath = Paths.get(uploadPath)
-                    .resolve(category)
-                    .resolve(userId)
-                    .resolve(year)
-                    .resolve(month)
-                    .resolve(filename);
+            // 构建对象键，本地未命中时从存储后端拉取
+            String key = category + "/" + userId + "/" + year + "/" + month + "/" + filename;
+            log.info("尝试访问文件: {}", key);
 
-            log.info("尝试访问文件: {}", filePath.toAbsolutePath());
+            Path filePath = storageService.resolve(key);
+            if (filePath == null) {
+                log.warn("请求的文件不存在: {}", key);
+                return ResponseEntity.notFound().build();
+            }
 
             Resource resource = new UrlResource(filePath.toUri());
 
@@ -341,15 +401,38 @@ public class FileController {
 
             log.info("文件访问成功: {}", filePath);
 
-            return ResponseEntity.ok()
+            // 文本类文件存在预压缩副本时直接输出副本
+            PrecompressedVariantService.Variant variant = null;
+            if (precompressedVariantService.isCompressible(filePath)) {
+                variant = precompressedVariantService.select(filePath, request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+            }
+            Path servedPath = variant != null ? variant.getPath() : filePath;
+
+            // 携带 ETag / Last-Modified，条件请求未变化时由 Spring 返回 304
+            FileETagCache.Validators validators = fileETagCache.get(servedPath);
+
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
                     .contentType(MediaType.parseMediaType(contentType))
+                    .eTag(validators.getEtag())
+                    .lastModified(validators.getLastModified())
+                    .header(HttpHeaders.CACHE_CONTROL, mediaStreamService.cacheControl(filename))
                     .header(HttpHeaders.CONTENT_DISPOSITION,
-                            "attachment; filename=\"" + resource.getFilename() + "\"")
-                    .body(resource);
+                            "attachment; filename=\"" + resource.getFilename() + "\"");
+            if (precompressedVariantService.isCompressible(filePath)) {
+                builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+            if (variant != null) {
+                builder.header(HttpHeaders.CONTENT_ENCODING, variant.getEncoding());
+                return builder.body(new UrlResource(variant.getPath().toUri()));
+            }
+            return builder.body(resource);
 
         } catch (MalformedURLException ex) {
             log.error("文件路径格式错误: {}", ex.getMessage());
             return ResponseEntity.badRequest().build();
+        } catch (IOException ex) {
+            log.warn("读取文件属性失败: {}", ex.getMessage());
+            return ResponseEntity.notFound().build();
         }
     }
 
@@ -363,7 +446,11 @@ public class FileController {
 
         try {
             // 在uploads目录下搜索文件
-            Path filePath = Paths.get(uploadPath).resolve(filename);
+            Path filePath = storageService.resolve(filename);
+            if (filePath == null) {
+                log.warn("请求的文件不存在: {}", filename);
+                return ResponseEntity.notFound().build();
+            }
             Resource resource = new UrlResource(filePath.toUri());
 
             if (!resource.exists()) {
@@ -384,13 +471,21 @@ public class FileController {
 
             log.info("文件访问成功: {}", filePath);
 
+            FileETagCache.Validators validators = fileETagCache.get(filePath);
+
             return ResponseEntity.ok()
                     .contentType(MediaType.parseMediaType(contentType))
+                    .eTag(validators.getEtag())
+                    .lastModified(validators.getLastModified())
+                    .header(HttpHeaders.CACHE_CONTROL, mediaStreamService.cacheControl(filename))
                     .body(resource);
 
         } catch (MalformedURLException ex) {
             log.error("文件路径格式错误: {}", ex.getMessage());
             return ResponseEntity.badRequest().build();
+        } catch (IOException ex) {
+            log.warn("读取文件属性失败: {}", ex.getMessage());
+            return ResponseEntity.notFound().build();
         }
     }
 }
\ No newline at end of file
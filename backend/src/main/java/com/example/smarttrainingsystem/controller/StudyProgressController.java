@@ -1,6 +1,7 @@
 package com.example.smarttrainingsystem.controller;
 
 import com.example.smarttrainingsystem.common.Result;
+import com.example.smarttrainingsystem.service.StudyProgressRollupService;
 import com.example.smarttrainingsystem.service.StudyProgressService;
 import com.example.smarttrainingsystem.utils.SecurityUtils;
 import lombok.RequiredArgsConstructor;
@@ -29,6 +30,7 @@ import java.util.Map;
 public class StudyProgressController {
 
     private final StudyProgressService studyProgressService;
+    private final StudyProgressRollupService studyProgressRollupService;
 
     /**
      * 获取学习进度概览
@@ -242,25 +244,40 @@ public class StudyProgressController {
      * 批量更新用户学习进度 (管理员)
      *
      * @param date 日期
+     * @param restart 是否忽略断点重新汇总（默认从断点继续，已完成的日期直接跳过）
      * @return 操作结果
      */
     @PostMapping("/admin/batch-update")
     @PreAuthorize("hasRole('ADMIN')")
     public Result<Void> batchUpdateProgress(
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "false") boolean restart) {
 
         if (date == null) {
             date = LocalDate.now().minusDays(1);
         }
 
-        log.info("收到批量更新用户学习进度请求 - 日期: {}", date);
+        log.info("收到批量更新用户学习进度请求 - 日期: {}, 重新汇总: {}", date, restart);
 
-        // 异步执行批量更新
-        studyProgressService.scheduledUpdateAllUsersProgress();
+        // 后台执行批量更新
+        if (!studyProgressRollupService.startAsync(date, restart)) {
+            return Result.error("学习进度汇总任务正在执行，请稍后再试");
+        }
 
         return Result.success();
     }
 
+    /**
+     * 获取批量汇总任务的进度与吞吐指标 (管理员)
+     *
+     * @return 任务状态
+     */
+    @GetMapping("/admin/batch-update/status")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<Map<String, Object>> getBatchUpdateStatus() {
+        return Result.success("获取汇总任务状态成功", studyProgressRollupService.getStatus());
+    }
+
     /**
      * 清理过期学习进度记录 (管理员)
      *
@@ -1,31 +1,52 @@
 package com.example.smarttrainingsystem.controller;
 
+import com.example.smarttrainingsystem.common.Result;
+import com.example.smarttrainingsystem.service.HlsTranscodeService;
+import com.example.smarttrainingsystem.service.MediaIoScheduler;
+import com.example.smarttrainingsystem.service.MediaStreamService;
+import com.example.smarttrainingsystem.service.StorageBackend;
+import com.example.smarttrainingsystem.service.StorageService;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * 视频流控制器
  * 提供课程视频的在线播放接口，设置 Content-Disposition 为 inline
+ * 支持 Range 请求，播放器拖动进度时只传输所需的字节区间，并提供 HLS 分片访问接口；
+ * 文件经由存储服务读取，本地未缓存的大视频直接按区间从存储后端转发；
+ * 视频与分片按全局及单用户带宽限速，在独立的媒体线程池中输出
  */
 @Slf4j
 @RestController
 @RequestMapping("/api/v1/media")
+@RequiredArgsConstructor
 public class VideoStreamController {
 
-    @Value("${app.upload.path:/uploads}")
-    private String uploadPath;
+    /**
+     * 允许访问的 HLS 文件名：播放列表或分片
+     */
+    private static final Pattern HLS_FILE_PATTERN = Pattern.compile("index\\.m3u8|seg_\\d{5}\\.ts");
+
+    private final MediaStreamService mediaStreamService;
+
+    private final HlsTranscodeService hlsTranscodeService;
+
+    private final StorageService storageService;
+
+    private final MediaIoScheduler mediaIoScheduler;
 
     /**
      * 视频流式访问接口
@@ -36,29 +57,96 @@ public class VideoStreamController {
                             @PathVariable String year,
                             @PathVariable String month,
                             @PathVariable String filename,
+                            HttpServletRequest request,
                             HttpServletResponse response) {
-        Path filePath = Paths.get(uploadPath)
-                .resolve("course/videos")
-                .resolve(userId)
-                .resolve(year)
-                .resolve(month)
-                .resolve(filename);
-
-        if (!Files.exists(filePath) || !Files.isReadable(filePath)) {
-            log.warn("请求的视频文件不存在或不可读: {}", filePath);
+        String key = "course/videos/" + userId + "/" + year + "/" + month + "/" + filename;
+        String disposition = "inline; filename=\"" + filename + "\"";
+
+        try {
+            Path filePath = storageService.resolve(key, false);
+            if (filePath != null) {
+                mediaStreamService.serveFileThrottled(filePath, "video/mp4", disposition, request, response);
+                return;
+            }
+
+            StorageBackend.ObjectStat stat = storageService.isRemote() ? storageService.stat(key) : null;
+            if (stat == null) {
+                log.warn("请求的视频文件不存在或不可读: {}", key);
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            mediaStreamService.serveObjectThrottled(key, stat, "video/mp4", disposition, request, response);
+        } catch (IOException e) {
+            // 播放器拖动进度时会主动断开上一个请求，属于正常现象
+            log.debug("视频流输出中断: {}", e.getMessage());
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        }
+    }
+
+    /**
+     * HLS 播放列表及分片访问接口
+     * 路径: /api/v1/media/hls/{userId}/{year}/{month}/{name}/{filename}
+     */
+    @GetMapping("/hls/{userId}/{year}/{month}/{name}/{filename}")
+    public void streamHls(@PathVariable String userId,
+                          @PathVariable String year,
+                          @PathVariable String month,
+                          @PathVariable String name,
+                          @PathVariable String filename,
+                          HttpServletRequest request,
+                          HttpServletResponse response) {
+        if (!HLS_FILE_PATTERN.matcher(filename).matches()) {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             return;
         }
 
-        response.setContentType("video/mp4");
-        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"");
+        String key = storageService.keyOf(
+                hlsTranscodeService.resolveOutputDirectory(userId, year, month, name).resolve(filename));
 
-        try (ServletOutputStream out = response.getOutputStream()) {
-            Files.copy(filePath, out);
-            out.flush();
+        Path filePath;
+        try {
+            filePath = storageService.resolve(key);
         } catch (IOException e) {
-            log.error("视频流输出失败: {}", e.getMessage(), e);
+            log.warn("读取HLS文件失败: {}, error={}", key, e.getMessage());
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
         }
+        if (filePath == null) {
+            // 切片尚未完成时客户端应回退到 MP4 播放
+            log.debug("请求的HLS文件不存在: {}", key);
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        boolean playlist = HlsTranscodeService.PLAYLIST_NAME.equals(filename);
+        String contentType = playlist ? "application/vnd.apple.mpegurl" : "video/mp2t";
+        // 分片内容生成后不再变化，可长期缓存
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                playlist ? "public, max-age=3600" : "public, max-age=31536000, immutable");
+
+        try {
+            if (playlist) {
+                mediaStreamService.serveFile(filePath, contentType, "inline", request, response);
+            } else {
+                mediaStreamService.serveFileThrottled(filePath, contentType, "inline", request, response);
+            }
+        } catch (IOException e) {
+            log.debug("HLS分片输出中断: {}", e.getMessage());
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        }
+    }
+
+    /**
+     * 媒体流实时统计（仅管理员）
+     * 路径: /api/v1/media/streams
+     */
+    @GetMapping("/streams")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<Map<String, Object>> getStreamMetrics() {
+        return Result.success(mediaIoScheduler.getMetrics());
     }
 }
@@ -0,0 +1,26 @@
+package com.example.smarttrainingsystem.dto;
+
+import lombok.Data;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.Map;
+
+/**
+ * 作答自动保存数据传输对象
+ * 只包含自上次保存以来发生变化的题目
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Data
+public class AutosaveAnswerDTO {
+
+    /**
+     * 作答变化
+     * key: 题目ID, value: 用户答案（为空表示清除该题作答）
+     */
+    @NotEmpty(message = "答案不能为空")
+    @Size(max = 500, message = "单次保存的题目过多")
+    private Map<String, String> answers;
+}
@@ -0,0 +1,80 @@
+package com.example.smarttrainingsystem.dto;
+
+import lombok.Data;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.Size;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 分片断点续传数据传输对象
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+public class ChunkedUploadDTO {
+
+    /**
+     * 创建上传会话请求DTO
+     */
+    @Data
+    public static class InitRequest {
+        @NotBlank(message = "文件名不能为空")
+        @Size(max = 255, message = "文件名长度不能超过255字符")
+        private String fileName;
+
+        @NotNull(message = "文件大小不能为空")
+        @Positive(message = "文件大小必须大于0")
+        private Long fileSize;
+
+        /**
+         * 上传类型：video（课程视频，默认）、material（课程文档）、其他按 category 存放
+         */
+        private String type = "video";
+
+        @Size(max = 50, message = "文件分类长度不能超过50字符")
+        @Pattern(regexp = "^[a-zA-Z0-9_-]*$", message = "文件分类只能包含字母、数字、下划线和中划线")
+        private String category = "temp";
+
+        /**
+         * 整个文件的 SHA-256（十六进制，可选），完成上传时校验
+         */
+        @Pattern(regexp = "^([0-9a-fA-F]{64})?$", message = "SHA-256 校验值格式不正确")
+        private String sha256;
+    }
+
+    /**
+     * 上传会话状态DTO
+     */
+    @Data
+    public static class Status {
+        private String uploadId;
+        private String fileName;
+        private Long fileSize;
+        private Integer chunkSize;
+        private Integer chunkCount;
+
+        /**
+         * 已接收的字节数（含乱序到达的分片）
+         */
+        private Long uploadedBytes;
+
+        /**
+         * 从文件开头起连续接收完成的字节数，顺序续传时从该位置继续
+         */
+        private Long uploadOffset;
+
+        /**
+         * 尚未接收的分片序号
+         */
+        private List<Integer> missingChunks;
+
+        private Boolean complete;
+        private LocalDateTime expiresAt;
+    }
+}
@@ -6,7 +6,9 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import javax.validation.Valid;
 import javax.validation.constraints.*;
 import java.math.BigDecimal;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 课程数据传输对象
@@ -289,7 +291,7 @@ public class CourseDTO {
         private BigDecimal minPrice; // 最低价格
         private BigDecimal maxPrice; // 最高价格
         private Boolean isRequired; // 是否必修
-        private String sortBy = "createTime"; // 排序字段
+        private String sortBy = "relevance"; // 排序字段，relevance 为按相关度（仅关键词搜索时有效）
         private String sortOrder = "desc"; // 排序方向
         private Integer page = 0; // 页码
         private Integer size = 10; // 页大小
@@ -305,4 +307,15 @@ public class CourseDTO {
         private Long draftCourses; // 草稿课程数
         private Long unpublishedCourses; // 已下架课程数
     }
-}
\ No newline at end of file
+
+    /**
+     * 课程搜索分面统计DTO
+     */
+    @Data
+    public static class Facets {
+        private Long total = 0L; // 命中课程数
+        private Map<String, Long> categories = new LinkedHashMap<>(); // 分类 -> 课程数
+        private Map<String, Long> difficultyLevels = new LinkedHashMap<>(); // 难度 -> 课程数
+        private Map<String, Long> statuses = new LinkedHashMap<>(); // 状态 -> 课程数
+    }
+}
@@ -3,6 +3,7 @@ package com.example.smarttrainingsystem.dto;
 import lombok.Data;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 考试会话数据传输对象
@@ -50,6 +51,17 @@ public class ExamSessionDTO {
      */
     private LocalDateTime startTime;
     
+    /**
+     * 是否为恢复的进行中考试（开始时间沿用首次开始的时间）
+     */
+    private Boolean resumed;
+
+    /**
+     * 已自动保存的作答
+     * key: 题目ID, value: 用户答案
+     */
+    private Map<String, String> savedAnswers;
+    
     /**
      * 题目列表
      */
@@ -1,5 +1,6 @@
 package com.example.smarttrainingsystem.entity;
 
+import com.example.smarttrainingsystem.config.ExamPaperChangeListener;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import org.hibernate.annotations.CreationTimestamp;
@@ -18,6 +19,7 @@ import java.util.UUID;
  * @since 2025-07-17
  */
 @Entity
+@EntityListeners(ExamPaperChangeListener.class)
 @Table(name = "t_exam_question")
 @Data
 @EqualsAndHashCode(callSuper = false)
@@ -85,6 +85,18 @@ public class ExamResult {
     @Column(name = "answer_details", columnDefinition = "JSON")
     private String answerDetails;
 
+    /**
+     * 考试进行中自动保存的作答 (JSON格式，题目ID -> 答案)
+     */
+    @Column(name = "saved_answers", columnDefinition = "TEXT")
+    private String savedAnswers;
+
+    /**
+     * 最近一次自动保存时间
+     */
+    @Column(name = "answers_saved_at")
+    private LocalDateTime answersSavedAt;
+
     /**
      * 正确题目数
      */
@@ -160,6 +172,7 @@ public class ExamResult {
      */
     public enum PassStatus {
         IN_PROGRESS("进行中"),
+        SUBMITTED("已交卷，评分中"),
         PASS("通过"),
         FAIL("未通过"),
         TIMEOUT("超时"),
@@ -181,6 +194,7 @@ public class ExamResult {
      */
     public void startExam() {
         this.startTime = LocalDateTime.now();
+        this.endTime = null;
         this.passStatus = PassStatus.IN_PROGRESS;
     }
 
@@ -188,7 +202,10 @@ public class ExamResult {
      * 完成考试
      */
     public void finishExam(Integer score, Integer totalScore, Integer passScore) {
-        this.endTime = LocalDateTime.now();
+        // 异步评分时结束时间为交卷时间
+        if (this.endTime == null) {
+            this.endTime = LocalDateTime.now();
+        }
         this.score = score;
         this.totalScore = totalScore;
         
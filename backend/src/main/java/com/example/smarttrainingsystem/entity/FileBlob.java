@@ -0,0 +1,57 @@
+package com.example.smarttrainingsystem.entity;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 文件内容实体
+ * 相同内容的文件按 SHA-256 只存储一份，引用计数为 0 时删除
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Entity
+@Table(name = "t_file_blob")
+@Data
+@EqualsAndHashCode(callSuper = false)
+public class FileBlob {
+
+    /**
+     * 内容 SHA-256（十六进制），作为主键
+     */
+    @Id
+    @Column(name = "sha256", length = 64, nullable = false)
+    private String sha256;
+
+    /**
+     * 文件大小（字节）
+     */
+    @Column(name = "file_size", nullable = false)
+    private Long fileSize;
+
+    /**
+     * 引用该内容的文件数
+     */
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount = 0;
+
+    /**
+     * 创建时间
+     */
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 更新时间
+     */
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
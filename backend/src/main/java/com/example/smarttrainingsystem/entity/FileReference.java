@@ -0,0 +1,51 @@
+package com.example.smarttrainingsystem.entity;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 文件引用实体
+ * 记录上传目录下的文件路径（即访问URL中 /api/v1/files/ 之后的部分）指向的文件内容
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Entity
+@Table(name = "t_file_reference", indexes = {
+        @Index(name = "idx_file_reference_sha256", columnList = "sha256")
+})
+@Data
+@EqualsAndHashCode(callSuper = false)
+public class FileReference {
+
+    /**
+     * 相对上传目录的文件路径，如 course/documents/{userId}/2025/08/xxx.pdf
+     */
+    @Id
+    @Column(name = "file_path", length = 255, nullable = false)
+    private String filePath;
+
+    /**
+     * 文件内容 SHA-256
+     */
+    @Column(name = "sha256", length = 64, nullable = false)
+    private String sha256;
+
+    /**
+     * 上传用户ID
+     */
+    @Column(name = "user_id", length = 36)
+    private String userId;
+
+    /**
+     * 创建时间
+     */
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
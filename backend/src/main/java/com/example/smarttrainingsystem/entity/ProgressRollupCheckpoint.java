@@ -0,0 +1,108 @@
+package com.example.smarttrainingsystem.entity;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 学习进度汇总断点实体
+ * 记录每日汇总任务已连续完成到的用户位置，任务中断后从该位置继续
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Entity
+@Table(name = "t_progress_rollup_checkpoint")
+@Data
+@EqualsAndHashCode(callSuper = false)
+public class ProgressRollupCheckpoint {
+
+    /**
+     * 汇总日期，作为主键，每个日期一条断点
+     */
+    @Id
+    @Column(name = "rollup_date", nullable = false)
+    private LocalDate rollupDate;
+
+    /**
+     * 任务状态
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20, nullable = false)
+    private Status status = Status.RUNNING;
+
+    /**
+     * 已连续处理完成的最后一个用户ID（用户按ID升序处理），为空表示尚未开始
+     */
+    @Column(name = "last_user_id", length = 36)
+    private String lastUserId;
+
+    /**
+     * 已处理用户数
+     */
+    @Column(name = "processed_users", nullable = false)
+    private Long processedUsers = 0L;
+
+    /**
+     * 是否同时汇总周进度
+     */
+    @Column(name = "include_weekly", nullable = false)
+    private Boolean includeWeekly = false;
+
+    /**
+     * 是否同时汇总月进度
+     */
+    @Column(name = "include_monthly", nullable = false)
+    private Boolean includeMonthly = false;
+
+    /**
+     * 最后一次失败原因
+     */
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    /**
+     * 完成时间
+     */
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    /**
+     * 创建时间
+     */
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 更新时间
+     */
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    /**
+     * 任务状态枚举
+     */
+    public enum Status {
+        RUNNING("执行中"),
+        COMPLETED("已完成"),
+        FAILED("失败");
+
+        private final String description;
+
+        Status(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+}
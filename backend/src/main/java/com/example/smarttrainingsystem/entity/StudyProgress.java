@@ -19,7 +19,8 @@ import java.util.UUID;
  * @since 2025-07-17
  */
 @Entity
-@Table(name = "t_study_progress")
+@Table(name = "t_study_progress", uniqueConstraints = @UniqueConstraint(
+        name = "uk_study_progress_user_date_type", columnNames = {"user_id", "progress_date", "progress_type"}))
 @Data
 @EqualsAndHashCode(callSuper = false)
 public class StudyProgress {
@@ -76,4 +76,23 @@ public interface ExamQuestionRepository extends JpaRepository<ExamQuestion, Stri
      */
     @Query("SELECT eq.questionId FROM ExamQuestion eq WHERE eq.examId = :examId ORDER BY eq.questionOrder")
     List<String> findQuestionIdsByExamId(@Param("examId") String examId);
-}
\ No newline at end of file
+
+    /**
+     * 查询考试题目关联并一次性抓取题目实体，避免逐题查询
+     *
+     * @param examId 考试ID
+     * @return 按题目顺序排列的考试题目关联（已加载题目）
+     */
+    @Query("SELECT eq FROM ExamQuestion eq JOIN FETCH eq.question WHERE eq.examId = :examId " +
+            "ORDER BY eq.questionOrder")
+    List<ExamQuestion> findWithQuestionsByExamId(@Param("examId") String examId);
+
+    /**
+     * 查询包含指定题目的考试ID
+     *
+     * @param questionId 题目ID
+     * @return 考试ID列表
+     */
+    @Query("SELECT DISTINCT eq.examId FROM ExamQuestion eq WHERE eq.questionId = :questionId")
+    List<String> findExamIdsByQuestionId(@Param("questionId") String questionId);
+}
@@ -4,8 +4,12 @@ import com.example.smarttrainingsystem.entity.Exam;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -55,4 +59,30 @@ public interface ExamRepository extends JpaRepository<Exam, String> {
     long countByStatus(Exam.ExamStatus status);
     long countByExamType(Exam.ExamType examType);
     long countByCreatedBy(String createdBy);
-}
\ No newline at end of file
+
+    /**
+     * 查询正在进行或将在指定时间前开始的考试
+     *
+     * @param status 考试状态
+     * @param now 当前时间
+     * @param until 开始时间上限
+     * @return 考试列表
+     */
+    @Query("SELECT e FROM Exam e WHERE e.status = :status " +
+            "AND (e.startTime IS NULL OR e.startTime <= :until) " +
+            "AND (e.endTime IS NULL OR e.endTime > :now)")
+    List<Exam> findOpenOrUpcoming(@Param("status") Exam.ExamStatus status,
+                                  @Param("now") LocalDateTime now,
+                                  @Param("until") LocalDateTime until);
+
+    /**
+     * 更新考试的更新时间（试卷版本），用于题目或考试题目关联变更后使已构建的试卷过期
+     *
+     * @param examIds 考试ID列表
+     * @param updatedAt 更新时间
+     * @return 更新的考试数
+     */
+    @Modifying
+    @Query("UPDATE Exam e SET e.updatedAt = :updatedAt WHERE e.id IN :examIds")
+    int touchByIds(@Param("examIds") List<String> examIds, @Param("updatedAt") LocalDateTime updatedAt);
+}
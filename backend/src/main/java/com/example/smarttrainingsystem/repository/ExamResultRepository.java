@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -235,6 +236,25 @@ public interface ExamResultRepository extends JpaRepository<ExamResult, String>
      */
     List<ExamResult> findByUserIdAndPassStatus(String userId, ExamResult.PassStatus passStatus);
 
+    /**
+     * 查询所有进行中的考试会话及其考试时长
+     *
+     * @return [考试记录ID, 开始时间, 考试时长(分钟)]
+     */
+    @Query("SELECT er.id, er.startTime, e.duration FROM ExamResult er, Exam e " +
+            "WHERE e.id = er.examId AND er.passStatus = 'IN_PROGRESS'")
+    List<Object[]> findInProgressSessions();
+
+    /**
+     * 根据通过状态查询考试记录ID
+     *
+     * @param passStatus 通过状态
+     * @param pageable 分页参数
+     * @return 考试记录ID列表
+     */
+    @Query("SELECT er.id FROM ExamResult er WHERE er.passStatus = :passStatus ORDER BY er.endTime")
+    List<String> findIdsByPassStatus(@Param("passStatus") ExamResult.PassStatus passStatus, Pageable pageable);
+
     // 这些方法需要添加到现有的 ExamResultRepository 中
 
     /**
@@ -255,11 +275,24 @@ public interface ExamResultRepository extends JpaRepository<ExamResult, String>
     long countByUserIdAndPassStatus(String userId, ExamResult.PassStatus passStatus);
 
     /**
-     * 获取用户平均分
+     * 获取用户平均分（不含进行中和已交卷待评分的记录）
      *
      * @param userId 用户ID
      * @return 平均分
      */
-    @Query("SELECT AVG(er.score) FROM ExamResult er WHERE er.userId = :userId AND er.passStatus != 'IN_PROGRESS'")
+    @Query("SELECT AVG(er.score) FROM ExamResult er WHERE er.userId = :userId " +
+            "AND er.passStatus NOT IN ('IN_PROGRESS', 'SUBMITTED')")
     Double getAverageScoreByUserId(@Param("userId") String userId);
+
+    /**
+     * 按用户批量汇总考试结果
+     *
+     * @param userIds 用户ID集合
+     * @return 汇总数据 [用户ID, 考试次数, 通过次数, 平均分(不含进行中和待评分)]，没有考试记录的用户不返回
+     */
+    @Query("SELECT er.userId, COUNT(er), " +
+            "SUM(CASE WHEN er.passStatus = 'PASS' THEN 1 ELSE 0 END), " +
+            "AVG(CASE WHEN er.passStatus NOT IN ('IN_PROGRESS', 'SUBMITTED') THEN er.score END) " +
+            "FROM ExamResult er WHERE er.userId IN :userIds GROUP BY er.userId")
+    List<Object[]> aggregateByUserIds(@Param("userIds") Collection<String> userIds);
 }
\ No newline at end of file
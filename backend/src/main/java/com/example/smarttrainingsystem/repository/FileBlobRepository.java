@@ -0,0 +1,44 @@
+package com.example.smarttrainingsystem.repository;
+
+import com.example.smarttrainingsystem.entity.FileBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 文件内容数据仓储接口
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Repository
+public interface FileBlobRepository extends JpaRepository<FileBlob, String> {
+
+    /**
+     * 引用计数加一
+     *
+     * @return 更新行数，为 0 表示内容记录不存在
+     */
+    @Modifying
+    @Query("UPDATE FileBlob b SET b.refCount = b.refCount + 1 WHERE b.sha256 = :sha256")
+    int incrementRefCount(@Param("sha256") String sha256);
+
+    /**
+     * 引用计数减一
+     */
+    @Modifying
+    @Query("UPDATE FileBlob b SET b.refCount = b.refCount - 1 WHERE b.sha256 = :sha256 AND b.refCount > 0")
+    int decrementRefCount(@Param("sha256") String sha256);
+
+    /**
+     * 删除已无引用的内容记录
+     *
+     * @return 删除行数，为 1 表示内容可以从磁盘删除
+     */
+    @Modifying
+    @Query("DELETE FROM FileBlob b WHERE b.sha256 = :sha256 AND b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("sha256") String sha256);
+}
@@ -0,0 +1,16 @@
+package com.example.smarttrainingsystem.repository;
+
+import com.example.smarttrainingsystem.entity.FileReference;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 文件引用数据仓储接口
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Repository
+public interface FileReferenceRepository extends JpaRepository<FileReference, String> {
+}
@@ -0,0 +1,30 @@
+package com.example.smarttrainingsystem.repository;
+
+import com.example.smarttrainingsystem.entity.ProgressRollupCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 学习进度汇总断点数据仓储接口
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Repository
+public interface ProgressRollupCheckpointRepository extends JpaRepository<ProgressRollupCheckpoint, LocalDate> {
+
+    /**
+     * 查询指定日期之后处于给定状态的断点，按汇总日期升序
+     *
+     * @param statuses 断点状态
+     * @param date 起始日期（不含）
+     * @return 断点列表
+     */
+    List<ProgressRollupCheckpoint> findByStatusInAndRollupDateAfterOrderByRollupDateAsc(
+            Collection<ProgressRollupCheckpoint.Status> statuses, LocalDate date);
+}
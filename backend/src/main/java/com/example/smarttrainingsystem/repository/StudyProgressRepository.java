@@ -10,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,6 +36,32 @@ public interface StudyProgressRepository extends JpaRepository<StudyProgress, St
     Optional<StudyProgress> findByUserIdAndProgressDateAndProgressType(
             String userId, LocalDate progressDate, StudyProgress.ProgressType progressType);
 
+    /**
+     * 批量查询一组用户在指定日期的学习进度
+     *
+     * @param userIds 用户ID集合
+     * @param progressDate 进度日期
+     * @param progressType 进度类型
+     * @return 学习进度列表
+     */
+    List<StudyProgress> findByUserIdInAndProgressDateAndProgressType(
+            Collection<String> userIds, LocalDate progressDate, StudyProgress.ProgressType progressType);
+
+    /**
+     * 按用户汇总日期范围内的每日进度
+     *
+     * @param userIds 用户ID集合
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @return 汇总数据 [用户ID, 学习课程数, 完成课程数, 学习时长, 完成章节数]
+     */
+    @Query("SELECT sp.userId, SUM(sp.coursesStudied), SUM(sp.coursesCompleted), SUM(sp.studyDuration), SUM(sp.chaptersCompleted) " +
+            "FROM StudyProgress sp WHERE sp.userId IN :userIds AND sp.progressType = 'DAILY' " +
+            "AND sp.progressDate BETWEEN :startDate AND :endDate GROUP BY sp.userId")
+    List<Object[]> sumDailyProgressByUserIds(@Param("userIds") Collection<String> userIds,
+                                             @Param("startDate") LocalDate startDate,
+                                             @Param("endDate") LocalDate endDate);
+
     /**
      * 根据用户ID查询学习进度
      *
@@ -255,4 +282,12 @@ public interface StudyProgressRepository extends JpaRepository<StudyProgress, St
      * @param date 日期
      */
     void deleteByProgressDateBefore(LocalDate date);
+
+    /**
+     * 删除指定日期之前的某类学习进度记录
+     *
+     * @param date 日期
+     * @param progressType 进度类型
+     */
+    void deleteByProgressDateBeforeAndProgressType(LocalDate date, StudyProgress.ProgressType progressType);
 }
\ No newline at end of file
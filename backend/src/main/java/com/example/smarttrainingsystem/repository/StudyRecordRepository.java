@@ -12,6 +12,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -76,6 +77,18 @@ public interface StudyRecordRepository extends JpaRepository<StudyRecord, String
      */
     long countByUserIdAndStatus(String userId, StudyRecord.Status status);
 
+    /**
+     * 按用户批量汇总学习记录
+     *
+     * @param userIds 用户ID集合
+     * @return 汇总数据 [用户ID, 学习记录数, 已完成数, 学习总时长(分钟)]，没有学习记录的用户不返回
+     */
+    @Query("SELECT sr.userId, COUNT(sr), " +
+            "SUM(CASE WHEN sr.status = 'COMPLETED' THEN 1 ELSE 0 END), " +
+            "COALESCE(SUM(COALESCE(sr.studyTime, 0)), 0) + COALESCE(SUM(COALESCE(sr.studyDuration, 0)), 0) " +
+            "FROM StudyRecord sr WHERE sr.userId IN :userIds GROUP BY sr.userId")
+    List<Object[]> aggregateByUserIds(@Param("userIds") Collection<String> userIds);
+
     /**
      * 根据用户ID和学习状态查询学习记录
      *
@@ -438,6 +451,36 @@ public interface StudyRecordRepository extends JpaRepository<StudyRecord, String
     @Query("SELECT DISTINCT sr.userId FROM StudyRecord sr")
     Page<String> findAllUsersWithStudyRecords(Pageable pageable);
 
+    /**
+     * 按用户ID升序分批查找有学习记录的用户（键集分页）
+     *
+     * @param afterUserId 上一批最后一个用户ID，首批传空字符串
+     * @param pageable 分页参数（仅使用页大小）
+     * @return 用户ID列表
+     */
+    @Query("SELECT DISTINCT sr.userId FROM StudyRecord sr WHERE sr.userId > :afterUserId ORDER BY sr.userId")
+    List<String> findUserIdsWithStudyRecordsAfter(@Param("afterUserId") String afterUserId, Pageable pageable);
+
+    /**
+     * 按用户批量汇总每日学习进度所需的数据
+     *
+     * @param userIds 用户ID集合
+     * @param startOfDay 当日开始时间
+     * @param endOfDay 当日结束时间
+     * @return 汇总数据 [用户ID, 学习课程数, 完成课程数, 完成章节数, 当日学习时长(分钟)]
+     */
+    @Query(value = "SELECT user_id, " +
+            "COUNT(DISTINCT course_id), " +
+            "COUNT(DISTINCT CASE WHEN status = 'COMPLETED' THEN course_id END), " +
+            "SUM(CASE WHEN status = 'COMPLETED' THEN 1 ELSE 0 END), " +
+            "COALESCE(SUM(CASE WHEN last_study_at BETWEEN :startOfDay AND :endOfDay " +
+            "OR last_study_time BETWEEN :startOfDay AND :endOfDay " +
+            "THEN COALESCE(study_time, 0) + COALESCE(study_duration, 0) ELSE 0 END), 0) " +
+            "FROM t_study_record WHERE user_id IN (:userIds) GROUP BY user_id", nativeQuery = true)
+    List<Object[]> aggregateDailyProgressByUserIds(@Param("userIds") Collection<String> userIds,
+                                                   @Param("startOfDay") LocalDateTime startOfDay,
+                                                   @Param("endOfDay") LocalDateTime endOfDay);
+
     /**
      * 查找在指定时间后有学习活动的用户ID
      *
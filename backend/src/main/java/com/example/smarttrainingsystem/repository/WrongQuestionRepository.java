@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -33,6 +34,15 @@ public interface WrongQuestionRepository extends JpaRepository<WrongQuestion, St
      */
     Optional<WrongQuestion> findByUserIdAndQuestionId(String userId, String questionId);
 
+    /**
+     * 查询用户在指定题目上的错题记录
+     *
+     * @param userId 用户ID
+     * @param questionIds 题目ID集合
+     * @return 错题记录列表
+     */
+    List<WrongQuestion> findByUserIdAndQuestionIdIn(String userId, Collection<String> questionIds);
+
     /**
      * 根据用户ID查询错题记录
      *
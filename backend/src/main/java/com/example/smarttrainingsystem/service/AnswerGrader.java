@@ -0,0 +1,286 @@
+package com.example.smarttrainingsystem.service;
+
+import com.example.smarttrainingsystem.entity.Question;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 答案评分器
+ * 按题型把正确答案预先编译为匹配器：选择题编译为选项位集（多选题与作答顺序、大小写、分隔符无关），
+ * 判断题编译为布尔值，填空题编译为规范化后的各空可接受答案。匹配器随试卷缓存，评分时不再解析正确答案。
+ * 匹配结果以 {@link #FULL_CREDIT} 为满分的得分比例表示，支持部分得分：
+ * 多选题少选（所选均正确）得一半，多空填空题按答对的空数计分
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+public final class AnswerGrader {
+
+    /**
+     * 满分比例
+     */
+    public static final int FULL_CREDIT = 10000;
+
+    /**
+     * 多选题少选时的得分比例
+     */
+    private static final int MULTIPLE_CHOICE_PARTIAL_CREDIT = FULL_CREDIT / 2;
+
+    /**
+     * 选择题作答中允许出现的分隔字符
+     */
+    private static final String CHOICE_SEPARATORS = ",，、;； ";
+
+    /**
+     * 填空题各空之间的分隔字符
+     */
+    private static final String BLANK_SEPARATORS = ";；";
+
+    /**
+     * 填空题同一空多个可接受答案之间的分隔字符
+     */
+    private static final char ALTERNATIVE_SEPARATOR = '|';
+
+    private static final Set<String> TRUE_TOKENS = new HashSet<>(
+            Arrays.asList("true", "t", "yes", "y", "1", "正确", "对", "是", "√"));
+
+    private static final Set<String> FALSE_TOKENS = new HashSet<>(
+            Arrays.asList("false", "f", "no", "n", "0", "错误", "错", "否", "×"));
+
+    private AnswerGrader() {
+    }
+
+    /**
+     * 按题型编译正确答案；无法按题型解析的正确答案退化为规范化文本比较
+     *
+     * @param questionType 题型
+     * @param correctAnswer 正确答案
+     * @return 匹配器
+     */
+    public static Matcher compile(Question.QuestionType questionType, String correctAnswer) {
+        if (correctAnswer == null) {
+            return answer -> 0;
+        }
+        if (questionType == null) {
+            return new TextMatcher(correctAnswer, false);
+        }
+        switch (questionType) {
+            case SINGLE_CHOICE:
+            case MULTIPLE_CHOICE:
+                long options = parseChoices(correctAnswer);
+                if (options <= 0) {
+                    return new TextMatcher(correctAnswer, false);
+                }
+                return new ChoiceMatcher(options, questionType == Question.QuestionType.MULTIPLE_CHOICE);
+            case TRUE_FALSE:
+                Boolean value = parseBoolean(correctAnswer);
+                return value != null ? new TrueFalseMatcher(value) : new TextMatcher(correctAnswer, false);
+            case FILL_BLANK:
+                return new TextMatcher(correctAnswer, true);
+            default:
+                return new TextMatcher(correctAnswer, false);
+        }
+    }
+
+    /**
+     * 规范化文本：去除首尾空白，全角字符转半角，连续空白合并为一个空格，英文转小写
+     */
+    static String normalize(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = toHalfWidth(text.charAt(i));
+            if (Character.isWhitespace(c)) {
+                pendingSpace = builder.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                builder.append(' ');
+                pendingSpace = false;
+            }
+            builder.append(Character.toLowerCase(c));
+        }
+        return builder.toString();
+    }
+
+    // ==================== 私有方法 ====================
+
+    private static char toHalfWidth(char c) {
+        if (c == '　') {
+            return ' ';
+        }
+        if (c >= '！' && c <= '～') {
+            return (char) (c - 0xFEE0);
+        }
+        return c;
+    }
+
+    /**
+     * 把选项字母解析为位集，A 对应最低位；出现分隔符以外的其他字符时返回 -1，未选择任何选项时返回 0
+     */
+    private static long parseChoices(String answer) {
+        long options = 0;
+        for (int i = 0; i < answer.length(); i++) {
+            char c = toHalfWidth(answer.charAt(i));
+            if (c >= 'a' && c <= 'z') {
+                c = (char) (c - 'a' + 'A');
+            }
+            if (c >= 'A' && c <= 'Z') {
+                options |= 1L << (c - 'A');
+            } else if (CHOICE_SEPARATORS.indexOf(c) < 0 && !Character.isWhitespace(c)) {
+                return -1;
+            }
+        }
+        return options;
+    }
+
+    private static Boolean parseBoolean(String answer) {
+        String token = normalize(answer);
+        if (TRUE_TOKENS.contains(token)) {
+            return Boolean.TRUE;
+        }
+        if (FALSE_TOKENS.contains(token)) {
+            return Boolean.FALSE;
+        }
+        return null;
+    }
+
+    /**
+     * 按分隔字符拆分，保留空片段
+     */
+    private static List<String> split(String text, String separators) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (separators.indexOf(text.charAt(i)) >= 0) {
+                parts.add(text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(text.substring(start));
+        return parts;
+    }
+
+    /**
+     * 编译后的答案匹配器，线程安全
+     */
+    public interface Matcher {
+
+        /**
+         * 匹配考生作答
+         *
+         * @param answer 考生作答，可为空
+         * @return 得分比例，0 到 {@link #FULL_CREDIT}
+         */
+        int match(String answer);
+    }
+
+    /**
+     * 选择题：比较选项位集
+     */
+    private static final class ChoiceMatcher implements Matcher {
+        private final long options;
+        private final boolean partialCredit;
+
+        ChoiceMatcher(long options, boolean partialCredit) {
+            this.options = options;
+            this.partialCredit = partialCredit;
+        }
+
+        @Override
+        public int match(String answer) {
+            if (answer == null) {
+                return 0;
+            }
+            long selected = parseChoices(answer);
+            if (selected == options) {
+                return FULL_CREDIT;
+            }
+            if (partialCredit && selected > 0 && (selected & ~options) == 0) {
+                return MULTIPLE_CHOICE_PARTIAL_CREDIT;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * 判断题：比较布尔值
+     */
+    private static final class TrueFalseMatcher implements Matcher {
+        private final boolean value;
+
+        TrueFalseMatcher(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public int match(String answer) {
+            if (answer == null) {
+                return 0;
+            }
+            Boolean selected = parseBoolean(answer);
+            return selected != null && selected == value ? FULL_CREDIT : 0;
+        }
+    }
+
+    /**
+     * 文本题：比较规范化后的文本
+     * 填空题的正确答案以分号分隔各空、以竖线分隔同一空的可接受答案，按答对的空数计分
+     */
+    private static final class TextMatcher implements Matcher {
+        private final String[][] blanks;
+
+        TextMatcher(String correctAnswer, boolean fillBlank) {
+            List<String> parts = fillBlank
+                    ? split(correctAnswer, BLANK_SEPARATORS)
+                    : Collections.singletonList(correctAnswer);
+            blanks = new String[parts.size()][];
+            for (int i = 0; i < parts.size(); i++) {
+                List<String> alternatives = fillBlank
+                        ? split(parts.get(i), String.valueOf(ALTERNATIVE_SEPARATOR))
+                        : parts.subList(i, i + 1);
+                blanks[i] = new String[alternatives.size()];
+                for (int j = 0; j < alternatives.size(); j++) {
+                    blanks[i][j] = normalize(alternatives.get(j));
+                }
+            }
+        }
+
+        @Override
+        public int match(String answer) {
+            if (answer == null) {
+                return 0;
+            }
+            if (blanks.length == 1) {
+                return accepts(blanks[0], normalize(answer)) ? FULL_CREDIT : 0;
+            }
+
+            List<String> parts = split(answer, BLANK_SEPARATORS);
+            int correct = 0;
+            for (int i = 0; i < blanks.length && i < parts.size(); i++) {
+                if (accepts(blanks[i], normalize(parts.get(i)))) {
+                    correct++;
+                }
+            }
+            return (int) ((long) FULL_CREDIT * correct / blanks.length);
+        }
+
+        private static boolean accepts(String[] alternatives, String answer) {
+            if (answer.isEmpty()) {
+                return false;
+            }
+            for (String alternative : alternatives) {
+                if (alternative.equals(answer)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
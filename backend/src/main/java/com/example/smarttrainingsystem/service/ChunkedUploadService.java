@@ -0,0 +1,727 @@
+package com.example.smarttrainingsystem.service;
+
+import com.example.smarttrainingsystem.dto.ChunkedUploadDTO;
+import com.example.smarttrainingsystem.exception.BusinessException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分片断点续传服务
+ * 大文件按固定大小分片上传：创建会话时预分配目标文件，每个分片按偏移量直接写入目标文件，
+ * 不经过内存整包缓冲和临时分片文件；分片可并行、乱序、重复上传，
+ * 已接收分片记录在磁盘上的会话描述文件中，服务重启后可继续上传
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChunkedUploadService {
+
+    private static final String SESSION_DIR = ".chunked";
+    private static final String DATA_SUFFIX = ".part";
+    private static final String META_SUFFIX = ".properties";
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private final FileUploadService fileUploadService;
+
+    @Value("${app.upload.chunked.max-file-size:10737418240}") // 默认10GB
+    private long maxFileSize;
+
+    @Value("${app.upload.chunked.chunk-size:8388608}") // 默认8MB
+    private int chunkSize;
+
+    @Value("${app.upload.chunked.expire-hours:24}")
+    private long expireHours;
+
+    private Path sessionDirectory;
+
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        sessionDirectory = fileUploadService.getUploadDirectory().resolve(SESSION_DIR);
+        try {
+            Files.createDirectories(sessionDirectory);
+        } catch (IOException e) {
+            throw new RuntimeException("分片上传目录初始化失败", e);
+        }
+
+        // 恢复未完成的上传会话
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(sessionDirectory, "*" + META_SUFFIX)) {
+            for (Path metaFile : stream) {
+                UploadSession session = loadSession(metaFile);
+                if (session != null) {
+                    sessions.put(session.id, session);
+                }
+            }
+        } catch (IOException e) {
+            log.error("恢复分片上传会话失败: {}", e.getMessage(), e);
+        }
+
+        log.info("分片上传服务初始化完成，恢复未完成会话: {}", sessions.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (UploadSession session : sessions.values()) {
+            session.closeChannel();
+        }
+    }
+
+    /**
+     * 创建上传会话并预分配目标文件
+     *
+     * @param request 创建请求
+     * @param userId 用户ID
+     * @return 会话状态
+     */
+    public ChunkedUploadDTO.Status init(ChunkedUploadDTO.InitRequest request, String userId) {
+        String fileName = request.getFileName();
+        long fileSize = request.getFileSize();
+
+        if (fileSize > maxFileSize) {
+            throw new BusinessException(4006, String.format("文件大小不能超过%dMB", maxFileSize / 1024 / 1024));
+        }
+        if (!fileUploadService.isAllowedType(fileName)) {
+            throw new BusinessException(4007, "不支持的文件类型: " + fileName);
+        }
+        if ("video".equals(request.getType()) && !fileUploadService.isVideoFileName(fileName)) {
+            throw new BusinessException(4003, "只能上传视频文件");
+        }
+        if ("material".equals(request.getType()) && !fileUploadService.isDocumentFileName(fileName)) {
+            throw new BusinessException(4004, "只能上传文档文件");
+        }
+
+        UploadSession session = new UploadSession();
+        session.id = UUID.randomUUID().toString().replace("-", "");
+        session.userId = userId;
+        session.fileName = fileName;
+        session.fileSize = fileSize;
+        session.chunkSize = chunkSize;
+        session.chunkCount = (int) ((fileSize + chunkSize - 1) / chunkSize);
+        session.type = request.getType();
+        session.category = StringUtils.hasText(request.getCategory()) ? request.getCategory() : "temp";
+        session.expectedSha256 = StringUtils.hasText(request.getSha256()) ? request.getSha256().toLowerCase() : null;
+        session.received = new BitSet(session.chunkCount);
+        session.digest = newSha256();
+        session.lastActive = System.currentTimeMillis();
+        session.dataFile = sessionDirectory.resolve(session.id + DATA_SUFFIX);
+
+        try {
+            if (Files.getFileStore(sessionDirectory).getUsableSpace() < fileSize) {
+                throw new BusinessException(4013, "服务器磁盘空间不足");
+            }
+
+            // 预分配目标文件，后续分片按偏移量写入
+            try (RandomAccessFile file = new RandomAccessFile(session.dataFile.toFile(), "rw")) {
+                file.setLength(fileSize);
+            }
+            saveSession(session);
+        } catch (IOException e) {
+            deleteQuietly(session.dataFile);
+            log.error("创建分片上传会话失败: {}", e.getMessage(), e);
+            throw new BusinessException(4001, "文件上传失败: " + e.getMessage());
+        }
+
+        sessions.put(session.id, session);
+        log.info("创建分片上传会话: uploadId={}, fileName={}, size={}, chunks={}, userId={}",
+                session.id, fileName, fileSize, session.chunkCount, userId);
+
+        return toStatus(session);
+    }
+
+    /**
+     * 写入一个分片
+     *
+     * @param uploadId 会话ID
+     * @param userId 用户ID
+     * @param offset 分片起始偏移量，必须是分片大小的整数倍
+     * @param contentLength 请求体长度，未知时为 -1
+     * @param checksum 分片校验值，格式为 "算法 Base64值"，如 "sha256 xxx"，可为空
+     * @param body 请求体
+     * @return 会话状态
+     */
+    public ChunkedUploadDTO.Status writeChunk(String uploadId, String userId, long offset, long contentLength,
+                                             String checksum, InputStream body) {
+        UploadSession session = requireSession(uploadId, userId);
+
+        if (offset < 0 || offset % session.chunkSize != 0 || offset >= session.fileSize) {
+            throw new BusinessException(4009, "分片偏移量无效: " + offset);
+        }
+        int index = (int) (offset / session.chunkSize);
+        long length = Math.min(session.chunkSize, session.fileSize - offset);
+        if (contentLength >= 0 && contentLength != length) {
+            throw new BusinessException(4009, String.format("分片长度应为%d字节", length));
+        }
+
+        MessageDigest chunkDigest = null;
+        byte[] expectedChunkDigest = null;
+        if (StringUtils.hasText(checksum)) {
+            String[] parts = checksum.trim().split("\\s+");
+            if (parts.length != 2) {
+                throw new BusinessException(4010, "分片校验值格式不正确");
+            }
+            chunkDigest = newDigest(parts[0]);
+            try {
+                expectedChunkDigest = Base64.getDecoder().decode(parts[1]);
+            } catch (IllegalArgumentException e) {
+                throw new BusinessException(4010, "分片校验值格式不正确");
+            }
+        }
+
+        // 整文件摘要只能按顺序计算：当前分片正好接在已计算位置之后时边写边算，否则稍后补算
+        MessageDigest snapshot = null;
+        synchronized (session) {
+            if (session.finalizing) {
+                throw new BusinessException(4012, "上传已在完成处理中");
+            }
+            if (session.received.get(index)) {
+                // 重复上传已完成的分片（如客户端重试），直接返回当前状态
+                session.lastActive = System.currentTimeMillis();
+                return toStatus(session);
+            }
+            if (!session.inFlight.add(index)) {
+                throw new BusinessException(4012, "该分片正在上传中");
+            }
+            if (!session.digestBusy && session.digestedUpTo == offset) {
+                session.digestBusy = true;
+                snapshot = cloneDigest(session.digest);
+            }
+        }
+
+        boolean success = false;
+        try {
+            FileChannel channel = session.openChannel();
+            byte[] buffer = new byte[IO_BUFFER_SIZE];
+            long written = 0;
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                if (written + read > length) {
+                    throw new BusinessException(4009, String.format("分片长度应为%d字节", length));
+                }
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                long position = offset + written;
+                while (byteBuffer.hasRemaining()) {
+                    position += channel.write(byteBuffer, position);
+                }
+                if (chunkDigest != null) {
+                    chunkDigest.update(buffer, 0, read);
+                }
+                if (snapshot != null) {
+                    session.digest.update(buffer, 0, read);
+                }
+                written += read;
+            }
+
+            if (written != length) {
+                throw new BusinessException(4009, String.format("分片数据不完整: 已接收%d字节，应为%d字节", written, length));
+            }
+            if (chunkDigest != null && !MessageDigest.isEqual(chunkDigest.digest(), expectedChunkDigest)) {
+                throw new BusinessException(4010, "分片校验失败，请重新上传该分片");
+            }
+
+            // 落盘后再记录为已接收，保证重启后记录的分片一定完整
+            channel.force(false);
+
+            synchronized (session) {
+                session.received.set(index);
+                session.lastActive = System.currentTimeMillis();
+                if (snapshot != null) {
+                    session.digestedUpTo = offset + length;
+                    session.digestBusy = false;
+                    session.notifyAll();
+                }
+                success = true;
+                saveSession(session);
+            }
+
+        } catch (IOException e) {
+            log.error("写入分片失败: uploadId={}, offset={}, error={}", uploadId, offset, e.getMessage());
+            throw new BusinessException(4001, "分片上传失败: " + e.getMessage());
+        } finally {
+            synchronized (session) {
+                session.inFlight.remove(index);
+                if (!success && snapshot != null) {
+                    session.digest = snapshot;
+                    session.digestBusy = false;
+                    session.notifyAll();
+                }
+            }
+        }
+
+        // 补算此前乱序到达、已连续的分片摘要，避免完成时整文件重读
+        advanceDigest(session);
+
+        synchronized (session) {
+            return toStatus(session);
+        }
+    }
+
+    /**
+     * 查询上传会话状态
+     */
+    public ChunkedUploadDTO.Status getStatus(String uploadId, String userId) {
+        UploadSession session = requireSession(uploadId, userId);
+        synchronized (session) {
+            return toStatus(session);
+        }
+    }
+
+    /**
+     * 完成上传：校验整文件摘要，移动到正式目录
+     *
+     * @param uploadId 会话ID
+     * @param userId 用户ID
+     * @return 文件信息（url、originalName、size、format、sha256）
+     */
+    public Map<String, Object> complete(String uploadId, String userId) {
+        UploadSession session = requireSession(uploadId, userId);
+
+        synchronized (session) {
+            if (session.finalizing) {
+                throw new BusinessException(4012, "上传已在完成处理中");
+            }
+            if (session.received.cardinality() < session.chunkCount || !session.inFlight.isEmpty()) {
+                throw new BusinessException(4011, String.format("文件尚未上传完成: 已接收%d/%d个分片",
+                        session.received.cardinality(), session.chunkCount));
+            }
+            session.finalizing = true;
+        }
+
+        boolean success = false;
+        try {
+            String sha256 = finishDigest(session);
+            if (session.expectedSha256 != null && !session.expectedSha256.equals(sha256)) {
+                throw new BusinessException(4010, "文件校验失败，SHA-256 不一致");
+            }
+
+            session.closeChannel();
+
+            String fileUrl;
+            if ("video".equals(session.type)) {
+                fileUrl = fileUploadService.importCourseVideo(session.dataFile, session.fileName, userId, sha256);
+            } else if ("material".equals(session.type)) {
+                fileUrl = fileUploadService.importCourseDocument(session.dataFile, session.fileName, userId, sha256);
+            } else {
+                fileUrl = fileUploadService.importFile(session.dataFile, session.fileName, session.category, userId, sha256);
+            }
+
+            sessions.remove(session.id);
+            deleteQuietly(metaFile(session.id));
+            success = true;
+
+            log.info("分片上传完成: uploadId={}, fileName={}, size={}, url={}",
+                    session.id, session.fileName, session.fileSize, fileUrl);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("url", fileUrl);
+            result.put("originalName", session.fileName);
+            result.put("name", session.fileName);
+            result.put("size", session.fileSize);
+            String ext = "";
+            if (session.fileName.contains(".")) {
+                ext = session.fileName.substring(session.fileName.lastIndexOf('.') + 1);
+            }
+            result.put("format", ext);
+            result.put("sha256", sha256);
+            return result;
+
+        } catch (IOException e) {
+            log.error("完成分片上传失败: uploadId={}, error={}", uploadId, e.getMessage(), e);
+            throw new BusinessException(4001, "文件上传失败: " + e.getMessage());
+        } finally {
+            if (!success) {
+                synchronized (session) {
+                    session.finalizing = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * 取消上传，删除已上传的数据
+     */
+    public void abort(String uploadId, String userId) {
+        UploadSession session = requireSession(uploadId, userId);
+        synchronized (session) {
+            if (session.finalizing || !session.inFlight.isEmpty()) {
+                throw new BusinessException(4012, "上传正在处理中，无法取消");
+            }
+            sessions.remove(session.id);
+        }
+        discard(session);
+        log.info("取消分片上传: uploadId={}, userId={}", uploadId, userId);
+    }
+
+    /**
+     * 定时清理长时间无进展的上传会话
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 600000)
+    public void cleanupExpiredSessions() {
+        long deadline = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(expireHours);
+        int removed = 0;
+        for (UploadSession session : sessions.values()) {
+            synchronized (session) {
+                if (session.lastActive >= deadline || session.finalizing || !session.inFlight.isEmpty()) {
+                    continue;
+                }
+                sessions.remove(session.id);
+            }
+            discard(session);
+            removed++;
+        }
+        if (removed > 0) {
+            log.info("清理过期分片上传会话: {}", removed);
+        }
+    }
+
+    // ==================== 私有方法 ====================
+
+    private UploadSession requireSession(String uploadId, String userId) {
+        UploadSession session = sessions.get(uploadId);
+        if (session == null) {
+            throw new BusinessException(4008, "上传会话不存在或已过期");
+        }
+        if (!session.userId.equals(userId)) {
+            throw new BusinessException(4008, "上传会话不存在或已过期");
+        }
+        return session;
+    }
+
+    /**
+     * 从已计算位置起，依次补算已连续接收分片的摘要
+     *
+     * @return 是否有进展
+     */
+    private boolean advanceDigest(UploadSession session) {
+        MessageDigest digest;
+        long from;
+        long to;
+        synchronized (session) {
+            if (session.digestBusy) {
+                return false;
+            }
+            from = session.digestedUpTo;
+            to = from;
+            while (to < session.fileSize && session.received.get((int) (to / session.chunkSize))) {
+                to = Math.min(to + session.chunkSize, session.fileSize);
+            }
+            if (to == from) {
+                return false;
+            }
+            session.digestBusy = true;
+            digest = session.digest;
+        }
+
+        boolean success = false;
+        try {
+            // 刚写入的数据通常仍在页缓存中
+            FileChannel channel = session.openChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+            long position = from;
+            while (position < to) {
+                buffer.clear();
+                buffer.limit((int) Math.min(IO_BUFFER_SIZE, to - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("分片文件长度不足");
+                }
+                buffer.flip();
+                digest.update(buffer);
+                position += read;
+            }
+            success = true;
+        } catch (IOException e) {
+            log.warn("计算上传文件摘要失败: uploadId={}, error={}", session.id, e.getMessage());
+        } finally {
+            synchronized (session) {
+                if (success) {
+                    session.digestedUpTo = to;
+                } else {
+                    // 摘要状态已不可信，从头重新计算
+                    session.digest = newSha256();
+                    session.digestedUpTo = 0;
+                }
+                session.digestBusy = false;
+                session.notifyAll();
+            }
+        }
+        return success;
+    }
+
+    /**
+     * 补算剩余部分并返回整文件 SHA-256（十六进制）
+     */
+    private String finishDigest(UploadSession session) throws IOException {
+        while (true) {
+            synchronized (session) {
+                while (session.digestBusy) {
+                    try {
+                        session.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("等待文件摘要计算被中断");
+                    }
+                }
+                if (session.digestedUpTo >= session.fileSize) {
+                    return toHex(session.digest.digest());
+                }
+            }
+            if (!advanceDigest(session)) {
+                synchronized (session) {
+                    if (!session.digestBusy && session.digestedUpTo < session.fileSize) {
+                        throw new IOException("计算文件摘要失败");
+                    }
+                }
+            }
+        }
+    }
+
+    private ChunkedUploadDTO.Status toStatus(UploadSession session) {
+        ChunkedUploadDTO.Status status = new ChunkedUploadDTO.Status();
+        status.setUploadId(session.id);
+        status.setFileName(session.fileName);
+        status.setFileSize(session.fileSize);
+        status.setChunkSize(session.chunkSize);
+        status.setChunkCount(session.chunkCount);
+
+        int receivedChunks = session.received.cardinality();
+        long uploadedBytes = (long) receivedChunks * session.chunkSize;
+        int lastIndex = session.chunkCount - 1;
+        if (session.received.get(lastIndex)) {
+            uploadedBytes -= (long) session.chunkSize * session.chunkCount - session.fileSize;
+        }
+        status.setUploadedBytes(uploadedBytes);
+
+        int firstMissing = session.received.nextClearBit(0);
+        status.setUploadOffset(Math.min((long) firstMissing * session.chunkSize, session.fileSize));
+
+        List<Integer> missing = new ArrayList<>();
+        for (int i = firstMissing; i < session.chunkCount; i = session.received.nextClearBit(i + 1)) {
+            missing.add(i);
+        }
+        status.setMissingChunks(missing);
+        status.setComplete(receivedChunks == session.chunkCount);
+        status.setExpiresAt(LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(session.lastActive + TimeUnit.HOURS.toMillis(expireHours)),
+                ZoneId.systemDefault()));
+        return status;
+    }
+
+    private Path metaFile(String uploadId) {
+        return sessionDirectory.resolve(uploadId + META_SUFFIX);
+    }
+
+    /**
+     * 保存会话描述文件（先写临时文件再原子替换）
+     */
+    private void saveSession(UploadSession session) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("userId", session.userId);
+        properties.setProperty("fileName", session.fileName);
+        properties.setProperty("fileSize", String.valueOf(session.fileSize));
+        properties.setProperty("chunkSize", String.valueOf(session.chunkSize));
+        properties.setProperty("type", session.type == null ? "" : session.type);
+        properties.setProperty("category", session.category);
+        properties.setProperty("sha256", session.expectedSha256 == null ? "" : session.expectedSha256);
+        properties.setProperty("received", Base64.getEncoder().encodeToString(session.received.toByteArray()));
+        properties.setProperty("lastActive", String.valueOf(session.lastActive));
+
+        Path target = metaFile(session.id);
+        Path temp = sessionDirectory.resolve(session.id + META_SUFFIX + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private UploadSession loadSession(Path metaFile) {
+        String name = metaFile.getFileName().toString();
+        String uploadId = name.substring(0, name.length() - META_SUFFIX.length());
+        Path dataFile = sessionDirectory.resolve(uploadId + DATA_SUFFIX);
+
+        try {
+            if (!Files.exists(dataFile)) {
+                Files.delete(metaFile);
+                return null;
+            }
+
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+
+            UploadSession session = new UploadSession();
+            session.id = uploadId;
+            session.userId = properties.getProperty("userId");
+            session.fileName = properties.getProperty("fileName");
+            session.fileSize = Long.parseLong(properties.getProperty("fileSize"));
+            session.chunkSize = Integer.parseInt(properties.getProperty("chunkSize"));
+            session.chunkCount = (int) ((session.fileSize + session.chunkSize - 1) / session.chunkSize);
+            session.type = properties.getProperty("type");
+            session.category = properties.getProperty("category");
+            String sha256 = properties.getProperty("sha256");
+            session.expectedSha256 = StringUtils.hasText(sha256) ? sha256 : null;
+            session.received = BitSet.valueOf(Base64.getDecoder().decode(properties.getProperty("received")));
+            session.lastActive = Long.parseLong(properties.getProperty("lastActive"));
+            session.dataFile = dataFile;
+            // 摘要状态不持久化，恢复后从头补算
+            session.digest = newSha256();
+            return session;
+
+        } catch (IOException | RuntimeException e) {
+            log.warn("分片上传会话描述文件无效，已忽略: {}, error={}", metaFile, e.getMessage());
+            return null;
+        }
+    }
+
+    private void discard(UploadSession session) {
+        session.closeChannel();
+        deleteQuietly(session.dataFile);
+        deleteQuietly(metaFile(session.id));
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除文件失败: {}, error={}", path, e.getMessage());
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        return newDigest("sha256");
+    }
+
+    /**
+     * 按 tus 校验扩展的算法名创建摘要（sha1、sha256、md5）
+     */
+    private static MessageDigest newDigest(String algorithm) {
+        String name;
+        switch (algorithm.toLowerCase()) {
+            case "sha1":
+                name = "SHA-1";
+                break;
+            case "sha256":
+                name = "SHA-256";
+                break;
+            case "md5":
+                name = "MD5";
+                break;
+            default:
+                throw new BusinessException(4010, "不支持的校验算法: " + algorithm);
+        }
+        try {
+            return MessageDigest.getInstance(name);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest cloneDigest(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 上传会话，除文件通道外的可变状态均在会话对象锁内访问
+     */
+    private static final class UploadSession {
+        private String id;
+        private String userId;
+        private String fileName;
+        private long fileSize;
+        private int chunkSize;
+        private int chunkCount;
+        private String type;
+        private String category;
+        private String expectedSha256;
+        private Path dataFile;
+
+        private BitSet received;
+        private final Set<Integer> inFlight = new HashSet<>();
+        private long lastActive;
+        private boolean finalizing;
+
+        /**
+         * 整文件摘要，已计算到 digestedUpTo 位置；digestBusy 时由持有者线程独占更新
+         */
+        private MessageDigest digest;
+        private long digestedUpTo;
+        private boolean digestBusy;
+
+        private FileChannel channel;
+
+        /**
+         * 同一会话的并行分片共享一个文件通道，按位置读写互不影响
+         */
+        synchronized FileChannel openChannel() throws IOException {
+            if (channel == null || !channel.isOpen()) {
+                channel = FileChannel.open(dataFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            return channel;
+        }
+
+        synchronized void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // 关闭失败不影响后续处理
+                }
+                channel = null;
+            }
+        }
+    }
+}
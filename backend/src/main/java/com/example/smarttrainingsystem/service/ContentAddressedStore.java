@@ -0,0 +1,284 @@
+package com.example.smarttrainingsystem.service;
+
+import com.example.smarttrainingsystem.entity.FileBlob;
+import com.example.smarttrainingsystem.entity.FileReference;
+import com.example.smarttrainingsystem.repository.FileBlobRepository;
+import com.example.smarttrainingsystem.repository.FileReferenceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 按内容寻址的文件存储
+ * 上传的文件边写入边计算 SHA-256，相同内容只在 .blobs 目录下保存一份，
+ * 原有的访问路径（/api/v1/files/{category}/{userId}/{yyyy}/{MM}/{file}）以硬链接指向该内容，
+ * 因此文件访问、视频流、文档流等读取方无需改动；路径与内容的对应关系及引用计数记录在数据库中，
+ * 删除文件时只删除该路径，最后一个引用删除时才删除内容。
+ * 使用对象存储时本地上传目录只是按容量淘汰的缓存，内容文件不在淘汰范围内，且引用计数由多个节点共享，因此不启用去重
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ContentAddressedStore {
+
+    private static final String BLOB_DIR = ".blobs";
+    private static final int LOCK_STRIPES = 64;
+
+    private final FileBlobRepository fileBlobRepository;
+    private final FileReferenceRepository fileReferenceRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final StorageService storageService;
+
+    @Value("${app.upload.path:/uploads}")
+    private String uploadPath;
+
+    @Value("${app.upload.dedup.enabled:true}")
+    private boolean enabled;
+
+    private Path uploadDirectory;
+    private Path blobDirectory;
+    private Path tempDirectory;
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 按内容摘要分段加锁，保证同一内容的入库与删除互斥
+     */
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        if (!enabled) {
+            log.info("文件去重存储已关闭");
+            return;
+        }
+        if (storageService.isRemote()) {
+            enabled = false;
+            log.info("文件存储使用对象存储后端，文件去重存储已关闭");
+            return;
+        }
+
+        uploadDirectory = Paths.get(uploadPath).toAbsolutePath().normalize();
+        blobDirectory = uploadDirectory.resolve(BLOB_DIR);
+        tempDirectory = blobDirectory.resolve("tmp");
+        try {
+            Files.createDirectories(tempDirectory);
+            checkLinkSupport();
+            log.info("文件去重存储初始化完成: {}", blobDirectory);
+        } catch (IOException | UnsupportedOperationException e) {
+            enabled = false;
+            log.warn("上传目录不支持硬链接，文件去重存储已关闭: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 是否启用去重存储
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 边计算摘要边写入内容，并在 target 位置建立引用
+     *
+     * @param input 文件内容
+     * @param target 访问路径对应的文件位置
+     * @param userId 上传用户ID
+     * @return 内容 SHA-256
+     */
+    public String store(InputStream input, Path target, String userId) throws IOException {
+        Path temp = Files.createTempFile(tempDirectory, "upload-", ".tmp");
+        try {
+            MessageDigest digest = newSha256();
+            try (InputStream in = new DigestInputStream(input, digest)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String sha256 = toHex(digest.digest());
+            storeFile(temp, sha256, target, userId);
+            return sha256;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 将已在服务器上的完整文件（须与上传目录位于同一文件系统）纳入存储，并在 target 位置建立引用
+     *
+     * @param source 源文件，处理完成后被移动或删除
+     * @param sha256 源文件内容摘要，为空时重新计算
+     * @param target 访问路径对应的文件位置
+     * @param userId 上传用户ID
+     * @return 内容 SHA-256
+     */
+    public String storeFile(Path source, String sha256, Path target, String userId) throws IOException {
+        if (sha256 == null) {
+            sha256 = hashFile(source);
+        }
+        long size = Files.size(source);
+        Path blob = blobPath(sha256);
+        String key = referenceKey(target);
+        String hash = sha256;
+
+        synchronized (lockFor(sha256)) {
+            boolean created = false;
+            if (!Files.exists(blob)) {
+                Files.createDirectories(blob.getParent());
+                Files.move(source, blob, StandardCopyOption.ATOMIC_MOVE);
+                created = true;
+            }
+            Files.createLink(target, blob);
+
+            try {
+                transactionTemplate.execute(status -> {
+                    FileReference reference = new FileReference();
+                    reference.setFilePath(key);
+                    reference.setSha256(hash);
+                    reference.setUserId(userId);
+                    fileReferenceRepository.save(reference);
+
+                    if (fileBlobRepository.incrementRefCount(hash) == 0) {
+                        FileBlob fileBlob = new FileBlob();
+                        fileBlob.setSha256(hash);
+                        fileBlob.setFileSize(size);
+                        fileBlob.setRefCount(1);
+                        fileBlobRepository.save(fileBlob);
+                    }
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                Files.deleteIfExists(target);
+                if (created) {
+                    Files.deleteIfExists(blob);
+                }
+                throw e;
+            }
+
+            if (!created) {
+                // 内容已存在，本次上传的数据不再需要
+                Files.deleteIfExists(source);
+                log.info("文件内容已存在，复用已有内容: path={}, sha256={}", key, sha256);
+            }
+        }
+
+        return sha256;
+    }
+
+    /**
+     * 删除 target 位置的引用，最后一个引用删除时同时删除内容
+     *
+     * @param target 访问路径对应的文件位置
+     * @return 该路径是否由去重存储管理；为 false 时调用方按普通文件处理
+     */
+    public boolean release(Path target) throws IOException {
+        if (!enabled) {
+            return false;
+        }
+
+        String key = referenceKey(target);
+        FileReference reference = fileReferenceRepository.findById(key).orElse(null);
+        if (reference == null) {
+            return false;
+        }
+
+        String sha256 = reference.getSha256();
+        synchronized (lockFor(sha256)) {
+            Boolean unreferenced = transactionTemplate.execute(status -> {
+                fileReferenceRepository.delete(reference);
+                fileBlobRepository.decrementRefCount(sha256);
+                return fileBlobRepository.deleteIfUnreferenced(sha256) > 0;
+            });
+
+            Files.deleteIfExists(target);
+            if (Boolean.TRUE.equals(unreferenced)) {
+                Files.deleteIfExists(blobPath(sha256));
+                log.info("文件内容已无引用，删除内容: sha256={}", sha256);
+            }
+        }
+        return true;
+    }
+
+    // ==================== 私有方法 ====================
+
+    /**
+     * 内容路径：.blobs/{前2位}/{3-4位}/{sha256}
+     */
+    private Path blobPath(String sha256) {
+        return blobDirectory.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    /**
+     * 引用键：相对上传目录的路径，与访问URL中 /api/v1/files/ 之后的部分一致
+     */
+    private String referenceKey(Path target) {
+        Path relative = uploadDirectory.relativize(target.toAbsolutePath().normalize());
+        return relative.toString().replace('\\', '/');
+    }
+
+    private Object lockFor(String sha256) {
+        return locks[(sha256.hashCode() & 0x7fffffff) % locks.length];
+    }
+
+    private void checkLinkSupport() throws IOException {
+        Path probe = tempDirectory.resolve("link-probe");
+        Path link = tempDirectory.resolve("link-probe.link");
+        try {
+            Files.deleteIfExists(link);
+            Files.deleteIfExists(probe);
+            Files.createFile(probe);
+            Files.createLink(link, probe);
+        } finally {
+            Files.deleteIfExists(link);
+            Files.deleteIfExists(probe);
+        }
+    }
+
+    private String hashFile(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
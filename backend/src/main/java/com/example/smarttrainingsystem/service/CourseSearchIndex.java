@@ -0,0 +1,519 @@
+package com.example.smarttrainingsystem.service;
+
+import com.example.smarttrainingsystem.dto.CourseDTO;
+import com.example.smarttrainingsystem.entity.Course;
+import com.example.smarttrainingsystem.repository.CourseRepository;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.cjk.CJKAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.Facets;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopDocsCollector;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.QueryBuilder;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 课程全文检索索引
+ * 基于进程内 Lucene 索引，CJK 文本按二元组切分，标题、标签、描述按权重打分；
+ * 排序字段写入 DocValues，按相关度或其他字段排序时都由索引直接排序分页；
+ * 启动时从数据库全量重建，课程创建、修改、发布、下架、删除后在事务提交时增量更新
+ *
+ * @author 开发者
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CourseSearchIndex {
+
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_TITLE = "title";
+    private static final String FIELD_TAGS = "tags";
+    private static final String FIELD_DESCRIPTION = "description";
+    private static final String FIELD_CATEGORY = "category";
+    private static final String FIELD_DIFFICULTY = "difficultyLevel";
+    private static final String FIELD_STATUS = "status";
+    private static final String FIELD_INSTRUCTOR = "instructorId";
+    private static final String FIELD_REQUIRED = "isRequired";
+    private static final String FIELD_PRICE = "price";
+
+    /**
+     * 排序字段（DocValues），与 {@code CourseService} 中数据库排序的字段一致
+     */
+    private static final String SORT_CREATE_TIME = "sort_createTime";
+    private static final String SORT_RATING = "sort_rating";
+    private static final String SORT_STUDENT_COUNT = "sort_studentCount";
+    private static final String SORT_PUBLISH_TIME = "sort_publishTime";
+    private static final String SORT_TITLE = "sort_title";
+    private static final String SORT_PRICE = "sort_price";
+
+    /**
+     * 分面维度
+     */
+    private static final String FACET_CATEGORY = "category";
+    private static final String FACET_DIFFICULTY = "difficulty";
+    private static final String FACET_STATUS = "status";
+
+    private static final int REBUILD_PAGE_SIZE = 500;
+
+    /**
+     * 走索引检索的最短关键词长度
+     */
+    private static final int MIN_KEYWORD_LENGTH = 2;
+
+    private final CourseRepository courseRepository;
+
+    private final Analyzer analyzer = new CJKAnalyzer();
+
+    private final FacetsConfig facetsConfig = new FacetsConfig();
+
+    private ByteBuffersDirectory directory;
+
+    private IndexWriter writer;
+
+    private SearcherManager searcherManager;
+
+    /**
+     * 全量重建完成前不对外提供检索，调用方回退到SQL
+     */
+    private volatile boolean ready;
+
+    @PostConstruct
+    public void init() throws IOException {
+        directory = new ByteBuffersDirectory();
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+        searcherManager = new SearcherManager(writer, null);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        ready = false;
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    /**
+     * 应用启动后从数据库全量重建索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long startTime = System.currentTimeMillis();
+        try {
+            writer.deleteAll();
+            int page = 0;
+            long total = 0;
+            Page<Course> courses;
+            do {
+                courses = courseRepository.findAll(PageRequest.of(page++, REBUILD_PAGE_SIZE));
+                for (Course course : courses.getContent()) {
+                    writer.updateDocument(new Term(FIELD_ID, course.getId()), toDocument(course));
+                }
+                total += courses.getNumberOfElements();
+            } while (courses.hasNext());
+
+            writer.commit();
+            searcherManager.maybeRefreshBlocking();
+            ready = true;
+            log.info("课程检索索引重建完成: {}门课程, 耗时={}ms", total, System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            ready = false;
+            log.error("课程检索索引重建失败，搜索将回退到数据库查询: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 索引是否可用
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 在当前事务提交后更新课程索引（无事务时立即更新）
+     *
+     * @param course 课程
+     */
+    public void indexAfterCommit(Course course) {
+        runAfterCommit(() -> index(course));
+    }
+
+    /**
+     * 在当前事务提交后从索引中移除课程（无事务时立即移除）
+     *
+     * @param courseId 课程ID
+     */
+    public void removeAfterCommit(String courseId) {
+        runAfterCommit(() -> remove(courseId));
+    }
+
+    /**
+     * 检索课程，按搜索条件中的排序字段排序并分页（relevance 为按相关度）
+     *
+     * @param searchRequest 搜索条件（需包含关键词）
+     * @param offset 起始位置
+     * @param limit 返回数量
+     * @return 检索结果，关键词无法构成查询或索引不可用时返回 null
+     */
+    public SearchResult search(CourseDTO.SearchRequest searchRequest, int offset, int limit) {
+        Query query = buildQuery(searchRequest);
+        if (query == null) {
+            return null;
+        }
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            int numHits = Math.max(1, offset + limit);
+            Sort sort = buildSort(searchRequest.getSortBy(), searchRequest.getSortOrder());
+            TopDocsCollector<?> collector = sort == null
+                    ? TopScoreDocCollector.create(numHits, Integer.MAX_VALUE)
+                    : TopFieldCollector.create(sort, numHits, Integer.MAX_VALUE);
+            searcher.search(query, collector);
+            TopDocs topDocs = collector.topDocs(offset, limit);
+
+            List<String> ids = new ArrayList<>(topDocs.scoreDocs.length);
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                ids.add(searcher.doc(scoreDoc.doc).get(FIELD_ID));
+            }
+            return new SearchResult(ids, collector.getTotalHits());
+        } catch (IOException e) {
+            log.error("课程检索失败: {}", e.getMessage(), e);
+            return null;
+        } finally {
+            release(searcher);
+        }
+    }
+
+    /**
+     * 统计检索结果在分类、难度、状态上的分布
+     *
+     * @param searchRequest 搜索条件（关键词可为空）
+     * @return 分面统计，索引不可用时返回 null
+     */
+    public CourseDTO.Facets facets(CourseDTO.SearchRequest searchRequest) {
+        if (!ready) {
+            return null;
+        }
+
+        Query query = buildQuery(searchRequest);
+        if (query == null) {
+            return null;
+        }
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            CourseDTO.Facets result = new CourseDTO.Facets();
+            if (searcher.getIndexReader().numDocs() == 0) {
+                return result;
+            }
+
+            FacetsCollector collector = new FacetsCollector();
+            FacetsCollector.search(searcher, query, 1, collector);
+            SortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(searcher.getIndexReader());
+            Facets facets = new SortedSetDocValuesFacetCounts(state, collector);
+
+            result.setTotal(collector.getMatchingDocs().stream().mapToLong(docs -> docs.totalHits).sum());
+            result.setCategories(toCounts(facets, FACET_CATEGORY));
+            result.setDifficultyLevels(toCounts(facets, FACET_DIFFICULTY));
+            result.setStatuses(toCounts(facets, FACET_STATUS));
+            return result;
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("课程分面统计失败: {}", e.getMessage(), e);
+            return null;
+        } finally {
+            release(searcher);
+        }
+    }
+
+    // ==================== 私有方法 ====================
+
+    private void index(Course course) {
+        try {
+            writer.updateDocument(new Term(FIELD_ID, course.getId()), toDocument(course));
+            writer.commit();
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.error("更新课程索引失败: courseId={}, error={}", course.getId(), e.getMessage(), e);
+        }
+    }
+
+    private void remove(String courseId) {
+        try {
+            writer.deleteDocuments(new Term(FIELD_ID, courseId));
+            writer.commit();
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.error("删除课程索引失败: courseId={}, error={}", courseId, e.getMessage(), e);
+        }
+    }
+
+    private Document toDocument(Course course) throws IOException {
+        Document doc = new Document();
+        doc.add(new StringField(FIELD_ID, course.getId(), Field.Store.YES));
+
+        if (StringUtils.hasText(course.getTitle())) {
+            doc.add(new TextField(FIELD_TITLE, course.getTitle(), Field.Store.NO));
+        }
+        if (StringUtils.hasText(course.getTags())) {
+            doc.add(new TextField(FIELD_TAGS, course.getTags(), Field.Store.NO));
+        }
+        if (StringUtils.hasText(course.getDescription())) {
+            doc.add(new TextField(FIELD_DESCRIPTION, course.getDescription(), Field.Store.NO));
+        }
+        if (StringUtils.hasText(course.getCategory())) {
+            doc.add(new StringField(FIELD_CATEGORY, course.getCategory(), Field.Store.NO));
+            doc.add(new SortedSetDocValuesFacetField(FACET_CATEGORY, course.getCategory()));
+        }
+        if (course.getDifficultyLevel() != null) {
+            doc.add(new IntPoint(FIELD_DIFFICULTY, course.getDifficultyLevel()));
+            doc.add(new SortedSetDocValuesFacetField(FACET_DIFFICULTY, String.valueOf(course.getDifficultyLevel())));
+        }
+        if (course.getStatus() != null) {
+            doc.add(new IntPoint(FIELD_STATUS, course.getStatus()));
+            doc.add(new SortedSetDocValuesFacetField(FACET_STATUS, String.valueOf(course.getStatus())));
+        }
+        if (StringUtils.hasText(course.getInstructorId())) {
+            doc.add(new StringField(FIELD_INSTRUCTOR, course.getInstructorId(), Field.Store.NO));
+        }
+        doc.add(new StringField(FIELD_REQUIRED, String.valueOf(Boolean.TRUE.equals(course.getIsRequired())), Field.Store.NO));
+        if (course.getPrice() != null) {
+            doc.add(new DoublePoint(FIELD_PRICE, course.getPrice().doubleValue()));
+            doc.add(new DoubleDocValuesField(SORT_PRICE, course.getPrice().doubleValue()));
+        }
+
+        if (course.getCreateTime() != null) {
+            doc.add(new NumericDocValuesField(SORT_CREATE_TIME, course.getCreateTime()));
+        }
+        if (course.getRating() != null) {
+            doc.add(new DoubleDocValuesField(SORT_RATING, course.getRating().doubleValue()));
+        }
+        if (course.getStudentCount() != null) {
+            doc.add(new NumericDocValuesField(SORT_STUDENT_COUNT, course.getStudentCount()));
+        }
+        if (course.getPublishTime() != null) {
+            doc.add(new NumericDocValuesField(SORT_PUBLISH_TIME, course.getPublishTime()));
+        }
+        if (course.getTitle() != null) {
+            doc.add(new SortedDocValuesField(SORT_TITLE, new BytesRef(course.getTitle().toLowerCase(Locale.ROOT))));
+        }
+
+        return facetsConfig.build(doc);
+    }
+
+    /**
+     * 构建查询：关键词在标题、标签、描述任一字段中全部命中即匹配，再叠加筛选条件
+     */
+    private Query buildQuery(CourseDTO.SearchRequest searchRequest) {
+        if (!ready) {
+            return null;
+        }
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+
+        if (StringUtils.hasText(searchRequest.getKeyword())) {
+            String keyword = searchRequest.getKeyword().trim();
+            if (keyword.codePointCount(0, keyword.length()) < MIN_KEYWORD_LENGTH) {
+                // 索引按二元组切分，单字无法命中，交给SQL做子串匹配
+                return null;
+            }
+            QueryBuilder queryBuilder = new QueryBuilder(analyzer);
+            BooleanQuery.Builder keywordQuery = new BooleanQuery.Builder();
+            addFieldQuery(keywordQuery, queryBuilder, FIELD_TITLE, keyword, 3.0f);
+            addFieldQuery(keywordQuery, queryBuilder, FIELD_TAGS, keyword, 2.0f);
+            addFieldQuery(keywordQuery, queryBuilder, FIELD_DESCRIPTION, keyword, 1.0f);
+            BooleanQuery built = keywordQuery.build();
+            if (built.clauses().isEmpty()) {
+                // 单字或全为停用词，无法用索引表达，交给SQL
+                return null;
+            }
+            builder.add(built, BooleanClause.Occur.MUST);
+        }
+
+        if (StringUtils.hasText(searchRequest.getCategory())) {
+            builder.add(new TermQuery(new Term(FIELD_CATEGORY, searchRequest.getCategory())), BooleanClause.Occur.FILTER);
+        }
+        if (searchRequest.getDifficultyLevel() != null) {
+            builder.add(IntPoint.newExactQuery(FIELD_DIFFICULTY, searchRequest.getDifficultyLevel()), BooleanClause.Occur.FILTER);
+        }
+        if (StringUtils.hasText(searchRequest.getInstructorId())) {
+            builder.add(new TermQuery(new Term(FIELD_INSTRUCTOR, searchRequest.getInstructorId())), BooleanClause.Occur.FILTER);
+        }
+        if (searchRequest.getStatus() != null) {
+            builder.add(IntPoint.newExactQuery(FIELD_STATUS, searchRequest.getStatus()), BooleanClause.Occur.FILTER);
+        }
+        if (searchRequest.getMaxPrice() != null) {
+            builder.add(DoublePoint.newRangeQuery(FIELD_PRICE, Double.NEGATIVE_INFINITY,
+                    searchRequest.getMaxPrice().doubleValue()), BooleanClause.Occur.FILTER);
+        }
+        if (searchRequest.getIsRequired() != null) {
+            builder.add(new TermQuery(new Term(FIELD_REQUIRED, String.valueOf(searchRequest.getIsRequired()))),
+                    BooleanClause.Occur.FILTER);
+        }
+
+        BooleanQuery query = builder.build();
+        if (query.clauses().isEmpty()) {
+            return new MatchAllDocsQuery();
+        }
+        return query;
+    }
+
+    /**
+     * 构建排序，字段与次序同数据库排序一致；空值与 MySQL 相同，升序时在前、降序时在后
+     *
+     * @return 排序，按相关度排序时返回 null
+     */
+    private Sort buildSort(String sortBy, String sortOrder) {
+        if (sortBy == null || "relevance".equals(sortBy)) {
+            return null;
+        }
+        boolean reverse = !"asc".equalsIgnoreCase(sortOrder);
+        SortField createTime = longSortField(SORT_CREATE_TIME, reverse);
+
+        switch (sortBy) {
+            case "rating":
+                return new Sort(doubleSortField(SORT_RATING, reverse), createTime);
+            case "studentCount":
+                return new Sort(longSortField(SORT_STUDENT_COUNT, reverse), createTime);
+            case "publishTime":
+                return new Sort(longSortField(SORT_PUBLISH_TIME, reverse), createTime);
+            case "title":
+                SortField title = new SortField(SORT_TITLE, SortField.Type.STRING, reverse);
+                title.setMissingValue(SortField.STRING_FIRST);
+                return new Sort(title);
+            case "price":
+                return new Sort(doubleSortField(SORT_PRICE, reverse), createTime);
+            default:
+                return new Sort(createTime);
+        }
+    }
+
+    private static SortField longSortField(String field, boolean reverse) {
+        SortField sortField = new SortField(field, SortField.Type.LONG, reverse);
+        sortField.setMissingValue(Long.MIN_VALUE);
+        return sortField;
+    }
+
+    private static SortField doubleSortField(String field, boolean reverse) {
+        SortField sortField = new SortField(field, SortField.Type.DOUBLE, reverse);
+        sortField.setMissingValue(Double.NEGATIVE_INFINITY);
+        return sortField;
+    }
+
+    private void addFieldQuery(BooleanQuery.Builder target, QueryBuilder queryBuilder,
+                               String field, String keyword, float boost) {
+        Query query = queryBuilder.createBooleanQuery(field, keyword, BooleanClause.Occur.MUST);
+        if (query != null) {
+            target.add(new BoostQuery(query, boost), BooleanClause.Occur.SHOULD);
+        }
+    }
+
+    private Map<String, Long> toCounts(Facets facets, String dim) throws IOException {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        FacetResult facetResult;
+        try {
+            facetResult = facets.getTopChildren(100, dim);
+        } catch (IllegalArgumentException e) {
+            // 该维度在索引中没有任何值
+            return Collections.emptyMap();
+        }
+        if (facetResult != null) {
+            for (LabelAndValue labelAndValue : facetResult.labelValues) {
+                counts.put(labelAndValue.label, labelAndValue.value.longValue());
+            }
+        }
+        return counts;
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void release(IndexSearcher searcher) {
+        if (searcher == null) {
+            return;
+        }
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            log.warn("释放索引检索器失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 一页检索结果
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PACKAGE)
+    public static final class SearchResult {
+        private final List<String> ids;
+        private final long totalHits;
+    }
+}
@@ -11,6 +11,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -22,7 +23,11 @@ import org.springframework.util.StringUtils;
 import javax.persistence.criteria.Predicate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -39,6 +44,8 @@ public class CourseService {
 
     private final CourseRepository courseRepository;
     private final CourseChapterRepository courseChapterRepository;
+    private final CourseViewCounter courseViewCounter;
+    private final CourseSearchIndex courseSearchIndex;
 
     // ==================== 基础CRUD操作 ====================
 
@@ -69,6 +76,8 @@ public class CourseService {
             createChaptersForCourse(savedCourse.getId(), request.getChapters());
         }
 
+        courseSearchIndex.indexAfterCommit(savedCourse);
+
         log.info("课程创建成功: courseId={}", savedCourse.getId());
         return convertToResponse(savedCourse);
     }
@@ -106,6 +115,8 @@ public class CourseService {
             updateChaptersForCourse(savedCourse.getId(), request.getChapters());
         }
 
+        courseSearchIndex.indexAfterCommit(savedCourse);
+
         log.info("课程更新成功: courseId={}", savedCourse.getId());
         return convertToResponse(savedCourse);
     }
@@ -131,12 +142,15 @@ public class CourseService {
         }
 
         courseRepository.delete(course);
+        courseSearchIndex.removeAfterCommit(courseId);
         log.info("课程删除成功: courseId={}", courseId);
     }
 
     /**
      * 获取课程详情
+     * 浏览次数在内存中累加并定时批量刷回，本方法不写数据库
      */
+    @Transactional(readOnly = true)
     public CourseDTO.Response getCourseDetail(String courseId) {
         log.info("获取课程详情: courseId={}", courseId);
 
@@ -144,8 +158,7 @@ public class CourseService {
                 .orElseThrow(() -> new BusinessException(2001, "课程不存在"));
 
         // 增加浏览次数
-        course.incrementViewCount();
-        courseRepository.save(course);
+        courseViewCounter.increment(courseId);
 
         return convertToResponse(course);
     }
@@ -155,14 +168,7 @@ public class CourseService {
      */
     public Page<CourseDTO.ListItem> getCourseList(CourseDTO.SearchRequest searchRequest, Pageable pageable) {
         log.info("获取课程列表: searchRequest={}", searchRequest);
-
-        Specification<Course> spec = buildSearchSpecification(searchRequest);
-        Sort sort = buildSort(searchRequest.getSortBy(), searchRequest.getSortOrder());
-
-        // 🔧 修正：创建新的 PageRequest 而不是使用 withSort
-        Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
-        Page<Course> coursePage = courseRepository.findAll(spec, sortedPageable);
-        return coursePage.map(this::convertToListItem);
+        return findCourses(searchRequest, pageable);
     }
 
     // ==================== 课程状态管理 ====================
@@ -187,6 +193,7 @@ public class CourseService {
 
         course.publish();
         Course savedCourse = courseRepository.save(course);
+        courseSearchIndex.indexAfterCommit(savedCourse);
 
         log.info("课程发布成功: courseId={}", courseId);
         return convertToResponse(savedCourse);
@@ -209,6 +216,7 @@ public class CourseService {
 
         course.unpublish();
         Course savedCourse = courseRepository.save(course);
+        courseSearchIndex.indexAfterCommit(savedCourse);
 
         log.info("课程下架成功: courseId={}", courseId);
         return convertToResponse(savedCourse);
@@ -222,7 +230,7 @@ public class CourseService {
         log.info("发布课程(简化): courseId={}", courseId);
         return courseRepository.findById(courseId).map(course -> {
             course.publish();
-            courseRepository.save(course);
+            courseSearchIndex.indexAfterCommit(courseRepository.save(course));
             return true;
         }).orElse(false);
     }
@@ -235,7 +243,7 @@ public class CourseService {
         log.info("下架课程(简化): courseId={}", courseId);
         return courseRepository.findById(courseId).map(course -> {
             course.unpublish();
-            courseRepository.save(course);
+            courseSearchIndex.indexAfterCommit(courseRepository.save(course));
             return true;
         }).orElse(false);
     }
@@ -247,14 +255,28 @@ public class CourseService {
      */
     public Page<CourseDTO.ListItem> searchCourses(CourseDTO.SearchRequest searchRequest, Pageable pageable) {
         log.info("搜索课程: keyword={}, category={}", searchRequest.getKeyword(), searchRequest.getCategory());
+        return findCourses(searchRequest, pageable);
+    }
 
-        Specification<Course> spec = buildSearchSpecification(searchRequest);
-        Sort sort = buildSort(searchRequest.getSortBy(), searchRequest.getSortOrder());
+    /**
+     * 获取搜索结果的分面统计（分类、难度、状态）
+     */
+    public CourseDTO.Facets getSearchFacets(CourseDTO.SearchRequest searchRequest) {
+        log.info("获取课程搜索分面: keyword={}, category={}", searchRequest.getKeyword(), searchRequest.getCategory());
 
-        // 🔧 修正：创建新的 PageRequest 而不是使用 withSort
-        Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
-        Page<Course> coursePage = courseRepository.findAll(spec, sortedPageable);
-        return coursePage.map(this::convertToListItem);
+        CourseDTO.Facets facets = courseSearchIndex.facets(searchRequest);
+        if (facets != null) {
+            return facets;
+        }
+
+        // 索引不可用时回退到数据库统计
+        List<Course> courses = courseRepository.findAll(buildSearchSpecification(searchRequest));
+        facets = new CourseDTO.Facets();
+        facets.setTotal((long) courses.size());
+        facets.setCategories(countBy(courses, Course::getCategory));
+        facets.setDifficultyLevels(countBy(courses, Course::getDifficultyLevel));
+        facets.setStatuses(countBy(courses, Course::getStatus));
+        return facets;
     }
 
     /**
@@ -449,6 +471,64 @@ public class CourseService {
 
     // ==================== 私有方法 ====================
 
+    /**
+     * 查询课程：有关键词时优先走全文索引，索引不可用或关键词过短时回退到SQL
+     */
+    private Page<CourseDTO.ListItem> findCourses(CourseDTO.SearchRequest searchRequest, Pageable pageable) {
+        if (StringUtils.hasText(searchRequest.getKeyword())) {
+            Page<Course> indexed = searchByIndex(searchRequest, pageable);
+            if (indexed != null) {
+                return indexed.map(this::convertToListItem);
+            }
+        }
+
+        Specification<Course> spec = buildSearchSpecification(searchRequest);
+        Sort sort = buildSort(searchRequest.getSortBy(), searchRequest.getSortOrder());
+
+        // 🔧 修正：创建新的 PageRequest 而不是使用 withSort
+        Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
+        Page<Course> coursePage = courseRepository.findAll(spec, sortedPageable);
+        return coursePage.map(this::convertToListItem);
+    }
+
+    /**
+     * 通过全文索引检索课程，由索引按排序字段排序分页，数据库只加载当前页的课程
+     *
+     * @return 检索结果，索引无法处理时返回 null
+     */
+    private Page<Course> searchByIndex(CourseDTO.SearchRequest searchRequest, Pageable pageable) {
+        CourseSearchIndex.SearchResult result = courseSearchIndex.search(
+                searchRequest, (int) pageable.getOffset(), pageable.getPageSize());
+        if (result == null) {
+            return null;
+        }
+
+        Map<String, Course> courseMap = courseRepository.findAllById(result.getIds()).stream()
+                .collect(Collectors.toMap(Course::getId, Function.identity()));
+        List<Course> ordered = new ArrayList<>(result.getIds().size());
+        for (String id : result.getIds()) {
+            Course course = courseMap.get(id);
+            if (course != null) {
+                ordered.add(course);
+            }
+        }
+        return new PageImpl<>(ordered, pageable, result.getTotalHits());
+    }
+
+    /**
+     * 按字段分组计数
+     */
+    private Map<String, Long> countBy(List<Course> courses, Function<Course, Object> classifier) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Course course : courses) {
+            Object key = classifier.apply(course);
+            if (key != null) {
+                counts.merge(String.valueOf(key), 1L, Long::sum);
+            }
+        }
+        return counts;
+    }
+
     /**
      * 验证课程是否可以发布
      */
@@ -533,6 +613,9 @@ public class CourseService {
         CourseDTO.Response response = new CourseDTO.Response();
         BeanUtils.copyProperties(course, response);
 
+        // 叠加尚未刷回数据库的浏览次数
+        response.setViewCount(currentViewCount(course));
+
         // 设置状态和难度文本
         response.setStatusText(course.getStatusText());
         response.setDifficultyText(course.getDifficultyText());
@@ -571,6 +654,9 @@ public class CourseService {
         CourseDTO.ListItem item = new CourseDTO.ListItem();
         BeanUtils.copyProperties(course, item);
 
+        // 叠加尚未刷回数据库的浏览次数
+        item.setViewCount(currentViewCount(course));
+
         // 设置状态和难度文本
         item.setStatusText(course.getStatusText());
         item.setDifficultyText(course.getDifficultyText());
@@ -597,6 +683,14 @@ public class CourseService {
         return item;
     }
 
+    /**
+     * 当前浏览次数 = 数据库中的值 + 内存中未刷回的增量
+     */
+    private Integer currentViewCount(Course course) {
+        long stored = course.getViewCount() != null ? course.getViewCount() : 0;
+        return (int) (stored + courseViewCounter.getPending(course.getId()));
+    }
+
     /**
      * 🔧 转换材料信息列表
      */
@@ -0,0 +1,107 @@
+package com.example.smarttrainingsystem.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 课程浏览次数计数器（写回缓存）
+ * 浏览时只在内存中累加，定时以批量 UPDATE ... SET view_count = view_count + ? 刷回数据库，
+ * 应用关闭时也会刷新一次；尚未刷回的增量可通过 {@link #getPending(String)} 叠加到读取结果上
+ *
+ * @author 开发者
+ * @version 1.0
+ * @since 2025-08-06
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CourseViewCounter {
+
+    private static final String FLUSH_SQL =
+            "UPDATE t_course SET view_count = COALESCE(view_count, 0) + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 每门课程一个 LongAdder，高并发浏览时不争用同一计数
+     */
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次浏览
+     *
+     * @param courseId 课程ID
+     */
+    public void increment(String courseId) {
+        counters.computeIfAbsent(courseId, id -> new LongAdder()).increment();
+    }
+
+    /**
+     * 获取尚未刷回数据库的浏览增量
+     *
+     * @param courseId 课程ID
+     * @return 未刷回的增量
+     */
+    public long getPending(String courseId) {
+        LongAdder adder = counters.get(courseId);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    /**
+     * 将累计的浏览增量批量刷回数据库
+     */
+    @Scheduled(fixedDelayString = "${app.course.view-flush-interval-ms:10000}")
+    public synchronized void flush() {
+        if (counters.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>();
+        Iterator<Map.Entry<String, LongAdder>> iterator = counters.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, LongAdder> entry = iterator.next();
+            long delta = entry.getValue().sumThenReset();
+            if (delta > 0) {
+                batch.add(new Object[]{delta, entry.getKey()});
+            } else {
+                iterator.remove();
+                // 移除期间若有并发累加，放回新的计数器，避免丢失
+                long late = entry.getValue().sumThenReset();
+                if (late > 0) {
+                    counters.computeIfAbsent(entry.getKey(), id -> new LongAdder()).add(late);
+                }
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+            log.debug("课程浏览次数已刷回: {}门课程", batch.size());
+        } catch (Exception e) {
+            // 刷回失败时把增量放回，等待下次刷新
+            for (Object[] row : batch) {
+                counters.computeIfAbsent((String) row[1], id -> new LongAdder()).add((Long) row[0]);
+            }
+            log.error("课程浏览次数刷回失败: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
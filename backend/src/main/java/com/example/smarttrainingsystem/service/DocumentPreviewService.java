@@ -0,0 +1,540 @@
+package com.example.smarttrainingsystem.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 文档预览服务
+ * 课程文档上传后异步渲染为逐页 JPEG 图片：PDF 直接调用 poppler 的 pdftoppm 渲染，
+ * Office 文档先用 LibreOffice 无界面转换为 PDF。页面输出到
+ * course/previews/{userId}/{year}/{month}/{文档文件名}/ 目录下，首页先单独渲染以尽快可预览，
+ * 全部页面完成后最后写入页数清单；使用对象存储时各页同步上传，本地作为页面缓存
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentPreviewService {
+
+    /**
+     * 页数清单文件名，存在即表示渲染完成
+     */
+    public static final String MANIFEST_NAME = "pages.properties";
+
+    private static final String PAGE_PATTERN = "page-%05d.jpg";
+    private static final String DOCUMENT_DIR = "course/documents";
+    private static final String PREVIEW_DIR = "course/previews";
+    private static final String RENDER_PREFIX = "render";
+    private static final Pattern RENDER_OUTPUT_PATTERN = Pattern.compile(RENDER_PREFIX + "-(\\d+)\\.jpg");
+    private static final Pattern PAGES_PATTERN = Pattern.compile("^Pages:\\s+(\\d+)", Pattern.MULTILINE);
+
+    private static final List<String> PDF_TYPES = Arrays.asList("pdf");
+    private static final List<String> OFFICE_TYPES = Arrays.asList("doc", "docx", "xls", "xlsx", "ppt", "pptx");
+
+    private final StorageService storageService;
+
+    @Value("${app.media.preview.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.media.preview.pdftoppm-path:pdftoppm}")
+    private String pdftoppmPath;
+
+    @Value("${app.media.preview.pdfinfo-path:pdfinfo}")
+    private String pdfinfoPath;
+
+    @Value("${app.media.preview.soffice-path:soffice}")
+    private String sofficePath;
+
+    @Value("${app.media.preview.width:1280}")
+    private int width;
+
+    @Value("${app.media.preview.max-pages:300}")
+    private int maxPages;
+
+    @Value("${app.media.preview.workers:1}")
+    private int workers;
+
+    @Value("${app.media.preview.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${app.media.preview.timeout-minutes:10}")
+    private long timeoutMinutes;
+
+    private Path uploadDirectory;
+
+    private boolean officeEnabled;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 正在排队或渲染中的文档，避免重复提交
+     */
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 渲染失败的文档，查询状态时不再自动重试，重新上传后才会再次渲染
+     */
+    private final Set<Path> failed = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        uploadDirectory = storageService.getLocalRoot();
+
+        if (enabled && !(commandAvailable(pdftoppmPath, "-v") && commandAvailable(pdfinfoPath, "-v"))) {
+            log.warn("未检测到可用的 pdftoppm/pdfinfo ({}, {})，文档预览功能已停用", pdftoppmPath, pdfinfoPath);
+            enabled = false;
+        }
+        if (!enabled) {
+            return;
+        }
+
+        officeEnabled = commandAvailable(sofficePath, "--version");
+        if (!officeEnabled) {
+            log.warn("未检测到可用的 LibreOffice ({})，仅支持 PDF 文档预览", sofficePath);
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "document-preview-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        log.info("文档预览服务初始化完成: pdftoppm={}, office={}, 页宽={}px, 工作线程={}",
+                pdftoppmPath, officeEnabled, width, workers);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交文档渲染任务
+     *
+     * @param documentPath 已上传的文档文件路径
+     */
+    public void submit(Path documentPath) {
+        if (!enabled || !isSupported(documentPath.getFileName().toString())) {
+            return;
+        }
+
+        Path source = documentPath.toAbsolutePath().normalize();
+        if (outputDirectoryFor(source) == null || !pending.add(source)) {
+            return;
+        }
+        failed.remove(source);
+
+        try {
+            executor.execute(() -> {
+                try {
+                    if (!render(source)) {
+                        failed.add(source);
+                    }
+                } finally {
+                    pending.remove(source);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(source);
+            log.warn("文档预览队列已满，跳过文档: {}", source);
+        }
+    }
+
+    /**
+     * 根据文档访问URL计算预览状态查询URL
+     *
+     * @param documentUrl 文档文件URL，形如 /api/v1/files/course/documents/{userId}/{year}/{month}/{filename}
+     * @return 预览状态URL，URL格式不符、类型不支持或功能未启用时返回 null
+     */
+    public String getPreviewUrl(String documentUrl) {
+        String prefix = "/api/v1/files/" + DOCUMENT_DIR + "/";
+        if (!enabled || documentUrl == null || !documentUrl.startsWith(prefix) || !isSupported(documentUrl)) {
+            return null;
+        }
+        return "/api/v1/media/document/" + documentUrl.substring(prefix.length()) + "/pages";
+    }
+
+    /**
+     * 文档类型是否支持预览
+     */
+    public boolean isSupported(String filename) {
+        String extension = getExtension(filename);
+        return PDF_TYPES.contains(extension) || (officeEnabled && OFFICE_TYPES.contains(extension));
+    }
+
+    /**
+     * 查询文档预览状态，尚未渲染的已有文档会在此时提交渲染
+     *
+     * @param documentKey 文档对象键，形如 course/documents/{userId}/{year}/{month}/{filename}
+     * @return 预览状态
+     * @throws IOException 读取页数清单失败
+     */
+    public Preview getPreview(String documentKey) throws IOException {
+        Path source = storageService.localPath(documentKey);
+        Path outputDir = source == null ? null : outputDirectoryFor(source);
+        if (!enabled || outputDir == null || !isSupported(source.getFileName().toString())) {
+            return new Preview(Preview.UNAVAILABLE, 0, 0);
+        }
+
+        Path manifest = storageService.resolve(storageService.keyOf(outputDir.resolve(MANIFEST_NAME)));
+        if (manifest != null) {
+            Properties properties = loadManifest(manifest);
+            return new Preview(Preview.READY,
+                    Integer.parseInt(properties.getProperty("pages", "0")),
+                    Integer.parseInt(properties.getProperty("totalPages", "0")));
+        }
+
+        if (failed.contains(source)) {
+            return new Preview(Preview.UNAVAILABLE, 0, 0);
+        }
+        if (!pending.contains(source)) {
+            if (!Files.isRegularFile(source) && storageService.stat(documentKey) == null) {
+                return new Preview(Preview.UNAVAILABLE, 0, 0);
+            }
+            submit(source);
+        }
+        return new Preview(Preview.PROCESSING, 0, 0);
+    }
+
+    /**
+     * 获取已渲染的页面图片
+     *
+     * @param documentKey 文档对象键
+     * @param page 页码，从 1 开始
+     * @return 页面图片路径，尚未渲染或页码超出范围时返回 null
+     * @throws IOException 从存储后端拉取失败
+     */
+    public Path getPage(String documentKey, int page) throws IOException {
+        Path source = storageService.localPath(documentKey);
+        Path outputDir = source == null ? null : outputDirectoryFor(source);
+        if (outputDir == null || page < 1) {
+            return null;
+        }
+        return storageService.resolve(storageService.keyOf(outputDir.resolve(String.format(PAGE_PATTERN, page))));
+    }
+
+    /**
+     * 删除文档对应的预览页面
+     *
+     * @param documentPath 文档文件路径
+     */
+    public void deletePreview(Path documentPath) {
+        Path outputDir = outputDirectoryFor(documentPath.toAbsolutePath().normalize());
+        if (outputDir == null) {
+            return;
+        }
+
+        try {
+            if (storageService.isRemote()) {
+                deleteRemotePages(outputDir);
+            }
+            if (Files.isDirectory(outputDir)) {
+                deleteRecursively(outputDir);
+                log.info("已删除文档预览: {}", outputDir);
+            }
+        } catch (IOException e) {
+            log.warn("删除文档预览失败: {}, error={}", outputDir, e.getMessage());
+        }
+    }
+
+    // ==================== 私有方法 ====================
+
+    /**
+     * 渲染文档：Office 文档先转换为 PDF，首页单独渲染后立即发布，再渲染其余页面，最后写入页数清单
+     *
+     * @return 是否渲染成功
+     */
+    private boolean render(Path source) {
+        Path outputDir = outputDirectoryFor(source);
+        Path workDir = outputDir.resolveSibling(outputDir.getFileName() + ".tmp");
+        long startTime = System.currentTimeMillis();
+
+        try {
+            // 排队期间本地副本可能已被淘汰，渲染前确保源文件在本地
+            if (storageService.resolve(storageService.keyOf(source)) == null) {
+                log.warn("文档文件不存在，跳过预览渲染: {}", source);
+                return false;
+            }
+            if (Files.exists(workDir)) {
+                deleteRecursively(workDir);
+            }
+            if (Files.exists(outputDir)) {
+                deleteRecursively(outputDir);
+            }
+            Files.createDirectories(workDir);
+            Files.createDirectories(outputDir);
+
+            Path pdf = source;
+            if (OFFICE_TYPES.contains(getExtension(source.getFileName().toString()))) {
+                pdf = convertToPdf(source, workDir);
+                if (pdf == null) {
+                    log.error("文档转换 PDF 失败: {}，详见 {}", source, workDir.resolve("render.log"));
+                    return false;
+                }
+            }
+
+            int totalPages = countPages(pdf, workDir);
+            if (totalPages <= 0) {
+                log.error("读取 PDF 页数失败: {}，详见 {}", source, workDir.resolve("render.log"));
+                return false;
+            }
+            int pages = Math.min(totalPages, maxPages);
+
+            // 首页优先，打开文档时无需等待全部页面
+            if (!renderPages(pdf, workDir, 1, 1) || publishPages(workDir, outputDir) != 1) {
+                log.error("文档首页渲染失败: {}，详见 {}", source, workDir.resolve("render.log"));
+                return false;
+            }
+            long firstPageTime = System.currentTimeMillis() - startTime;
+
+            if (pages > 1 && (!renderPages(pdf, workDir, 2, pages) || publishPages(workDir, outputDir) != pages - 1)) {
+                log.error("文档页面渲染失败: {}，详见 {}", source, workDir.resolve("render.log"));
+                return false;
+            }
+
+            writeManifest(outputDir, pages, totalPages);
+            deleteRecursively(workDir);
+            log.info("文档预览渲染完成: {}, 页数={}/{}, 首页耗时={}ms, 总耗时={}ms",
+                    source, pages, totalPages, firstPageTime, System.currentTimeMillis() - startTime);
+            return true;
+        } catch (IOException e) {
+            log.error("文档预览渲染失败: {}, error={}", source, e.getMessage(), e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("文档预览渲染被中断: {}", source);
+            return false;
+        }
+    }
+
+    /**
+     * LibreOffice 转换为 PDF，每个任务使用独立的用户配置目录以便并发执行
+     */
+    private Path convertToPdf(Path source, Path workDir) throws IOException, InterruptedException {
+        List<String> command = Arrays.asList(
+                sofficePath, "--headless", "--norestore", "--nologo",
+                "-env:UserInstallation=" + workDir.resolve("profile").toUri(),
+                "--convert-to", "pdf",
+                "--outdir", workDir.toString(),
+                source.toString());
+        if (!run(command, workDir)) {
+            return null;
+        }
+        Path pdf = workDir.resolve(stripExtension(source.getFileName().toString()) + ".pdf");
+        return Files.exists(pdf) ? pdf : null;
+    }
+
+    private int countPages(Path pdf, Path workDir) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(pdfinfoPath, pdf.toString())
+                .redirectError(ProcessBuilder.Redirect.appendTo(workDir.resolve("render.log").toFile()))
+                .start();
+
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line).append('\n');
+            }
+        }
+
+        if (!process.waitFor(timeoutMinutes, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            return 0;
+        }
+        Matcher matcher = PAGES_PATTERN.matcher(output);
+        return process.exitValue() == 0 && matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    private boolean renderPages(Path pdf, Path workDir, int first, int last) throws IOException, InterruptedException {
+        List<String> command = Arrays.asList(
+                pdftoppmPath, "-jpeg",
+                "-f", String.valueOf(first), "-l", String.valueOf(last),
+                "-scale-to-x", String.valueOf(width), "-scale-to-y", "-1",
+                pdf.toString(), workDir.resolve(RENDER_PREFIX).toString());
+        return run(command, workDir);
+    }
+
+    /**
+     * 将渲染输出按页码改名移入输出目录，使用对象存储时同步上传
+     *
+     * @return 发布的页数
+     */
+    private int publishPages(Path workDir, Path outputDir) throws IOException {
+        TreeMap<Integer, Path> rendered = new TreeMap<>();
+        try (Stream<Path> files = Files.list(workDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = RENDER_OUTPUT_PATTERN.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    rendered.put(Integer.parseInt(matcher.group(1)), file);
+                }
+            }
+        }
+
+        for (Integer page : rendered.keySet()) {
+            Path target = outputDir.resolve(String.format(PAGE_PATTERN, page));
+            Files.move(rendered.get(page), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            storageService.stored(target);
+        }
+        return rendered.size();
+    }
+
+    /**
+     * 写入页数清单，清单出现即表示全部页面可用
+     */
+    private void writeManifest(Path outputDir, int pages, int totalPages) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("pages", String.valueOf(pages));
+        properties.setProperty("totalPages", String.valueOf(totalPages));
+
+        Path manifest = outputDir.resolve(MANIFEST_NAME);
+        Path temp = outputDir.resolve(MANIFEST_NAME + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, null);
+        }
+        Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        storageService.stored(manifest);
+    }
+
+    private Properties loadManifest(Path manifest) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(manifest)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    /**
+     * 按页数清单删除存储后端中的页面，清单最先删除
+     */
+    private void deleteRemotePages(Path outputDir) throws IOException {
+        Path manifest = storageService.resolve(storageService.keyOf(outputDir.resolve(MANIFEST_NAME)));
+        if (manifest == null) {
+            return;
+        }
+        int pages = Integer.parseInt(loadManifest(manifest).getProperty("pages", "0"));
+        storageService.deleted(manifest);
+        for (int page = 1; page <= pages; page++) {
+            storageService.deleted(outputDir.resolve(String.format(PAGE_PATTERN, page)));
+        }
+    }
+
+    private boolean run(List<String> command, Path workDir) throws IOException, InterruptedException {
+        File logFile = workDir.resolve("render.log").toFile();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(logFile))
+                .start();
+
+        if (!process.waitFor(timeoutMinutes, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            log.warn("文档预览命令执行超时: {}", command.get(0));
+            return false;
+        }
+        return process.exitValue() == 0;
+    }
+
+    /**
+     * 由文档路径计算输出目录：course/documents/{userId}/{year}/{month}/{filename}
+     * 对应 course/previews/{userId}/{year}/{month}/{filename}
+     */
+    private Path outputDirectoryFor(Path source) {
+        Path documentRoot = uploadDirectory.resolve(DOCUMENT_DIR);
+        if (!source.startsWith(documentRoot) || source.equals(documentRoot)) {
+            return null;
+        }
+        return uploadDirectory.resolve(PREVIEW_DIR).resolve(documentRoot.relativize(source));
+    }
+
+    private boolean commandAvailable(String executable, String versionFlag) {
+        try {
+            Process process = new ProcessBuilder(executable, versionFlag)
+                    .redirectErrorStream(true)
+                    .start();
+            process.getInputStream().close();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static String getExtension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot < 0 ? "" : filename.substring(dot + 1).toLowerCase();
+    }
+
+    private static String stripExtension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot < 0 ? filename : filename.substring(0, dot);
+    }
+
+    /**
+     * 文档预览状态
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PACKAGE)
+    public static final class Preview {
+        public static final String READY = "ready";
+        public static final String PROCESSING = "processing";
+        public static final String UNAVAILABLE = "unavailable";
+
+        private final String status;
+        private final int pages;
+        private final int totalPages;
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.smarttrainingsystem.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 考试开始准入控制
+ * 考试开放瞬间大量考生同时开始考试，直接进入数据库会占满连接池导致请求超时。
+ * 开始考试前先取得准入许可，同时持有许可的请求数不超过配置值，其余请求按到达顺序排队：
+ * 在请求内等待一小段时间，仍未轮到时返回排队位置和建议重试时间，客户端重试时保留原排队位置
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Service
+public class ExamAdmissionService {
+
+    /**
+     * 同时执行开始考试事务的请求数上限，应小于数据库连接池大小
+     */
+    @Value("${app.exam.admission.max-concurrent:8}")
+    private int maxConcurrent;
+
+    /**
+     * 排队人数上限，超过后直接返回重试
+     */
+    @Value("${app.exam.admission.max-queue:10000}")
+    private int maxQueue;
+
+    /**
+     * 单个请求在服务端排队等待的最长时间
+     */
+    @Value("${app.exam.admission.max-wait-ms:2000}")
+    private long maxWaitMs;
+
+    /**
+     * 未在请求内轮到的排队位置保留时间，客户端在此期间重试可保留原位置
+     */
+    @Value("${app.exam.admission.ticket-ttl-ms:30000}")
+    private long ticketTtlMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 排队中的请求，按排队序号排序；只在持有 lock 时访问
+     */
+    private final TreeMap<Long, Waiter> queue = new TreeMap<>();
+
+    /**
+     * 排队键到排队记录的映射，客户端重试时据此找回原位置；只在持有 lock 时访问
+     */
+    private final Map<String, Waiter> waiters = new HashMap<>();
+
+    /**
+     * 暂时离开（等待客户端重试）的排队记录，按离开先后即过期先后排列；只在持有 lock 时访问
+     */
+    private final Set<Waiter> absent = new LinkedHashSet<>();
+
+    private long nextSequence;
+    private int active;
+
+    /**
+     * 最近的平均处理耗时（毫秒），用于估算重试时间；只在持有 lock 时更新
+     */
+    private double averageServiceMs = 100;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+
+    /**
+     * 申请准入许可
+     *
+     * @param key 排队键（如 用户ID:考试ID），同一键重试时保留排队位置
+     * @return 准入结果；取得许可时调用方必须在处理结束后调用 {@link Admission#release()}
+     */
+    public Admission admit(String key) {
+        lock.lock();
+        try {
+            purgeExpired();
+            Waiter waiter = waiters.get(key);
+            if (waiter != null && waiter.present) {
+                // 同一考生的重复请求，不占用第二个排队位置
+                deferred.incrementAndGet();
+                return deferredAdmission(waiter);
+            }
+            if (waiter == null) {
+                if (queue.size() >= maxQueue) {
+                    deferred.incrementAndGet();
+                    return new Admission(false, queue.size() + 1, retryAfterMs(queue.size() + 1), 0);
+                }
+                waiter = new Waiter(nextSequence++, key, lock.newCondition());
+                queue.put(waiter.sequence, waiter);
+                waiters.put(key, waiter);
+            }
+            absent.remove(waiter);
+            waiter.present = true;
+
+            long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+            while (true) {
+                if (active < maxConcurrent && firstPresent() == waiter) {
+                    queue.remove(waiter.sequence);
+                    waiters.remove(key);
+                    active++;
+                    admitted.incrementAndGet();
+                    signalNext();
+                    return new Admission(true, 0, 0, System.nanoTime());
+                }
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            // 未轮到：保留排队位置等待客户端重试，并让出队首给其他在线请求
+            waiter.present = false;
+            waiter.expiresAt = System.currentTimeMillis() + ticketTtlMs;
+            absent.add(waiter);
+            deferred.incrementAndGet();
+            signalNext();
+            purgeExpired();
+            return deferredAdmission(waiter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 准入统计
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            purgeExpired();
+            status.put("active", active);
+            status.put("queued", queue.size());
+            status.put("averageServiceMs", Math.round(averageServiceMs));
+        } finally {
+            lock.unlock();
+        }
+        status.put("maxConcurrent", maxConcurrent);
+        status.put("admitted", admitted.get());
+        status.put("deferred", deferred.get());
+        return status;
+    }
+
+    // ==================== 私有方法 ====================
+
+    private void release(long startNanos) {
+        lock.lock();
+        try {
+            active--;
+            double elapsedMs = (System.nanoTime() - startNanos) / 1_000_000.0;
+            averageServiceMs = averageServiceMs * 0.9 + elapsedMs * 0.1;
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 唤醒排在最前面的在线请求
+     */
+    private void signalNext() {
+        if (active >= maxConcurrent) {
+            return;
+        }
+        Waiter next = firstPresent();
+        if (next != null) {
+            next.condition.signal();
+        }
+    }
+
+    /**
+     * 排在最前面的、正在服务端等待的请求
+     * 暂时离开的请求不阻塞后面的请求，重试回来时仍按原序号优先
+     */
+    private Waiter firstPresent() {
+        for (Waiter waiter : queue.values()) {
+            if (waiter.present) {
+                return waiter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 清理所有已过期的排队位置，避免其占用排队名额、抬高后面请求的排队位置
+     * 只检查离开记录的开头，代价与过期的记录数成正比
+     */
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Waiter> iterator = absent.iterator();
+        while (iterator.hasNext()) {
+            Waiter waiter = iterator.next();
+            if (waiter.expiresAt >= now) {
+                break;
+            }
+            iterator.remove();
+            queue.remove(waiter.sequence);
+            waiters.remove(waiter.key);
+        }
+    }
+
+    private Admission deferredAdmission(Waiter waiter) {
+        int position = queue.headMap(waiter.sequence).size() + 1;
+        return new Admission(false, position, retryAfterMs(position), 0);
+    }
+
+    /**
+     * 按当前处理速度估算轮到该位置所需的时间
+     */
+    private long retryAfterMs(int position) {
+        long estimate = (long) (position * averageServiceMs / Math.max(1, maxConcurrent));
+        return Math.max(1000, Math.min(estimate, 30_000));
+    }
+
+    /**
+     * 排队记录
+     */
+    private static final class Waiter {
+        private final long sequence;
+        private final String key;
+        private final Condition condition;
+        private boolean present;
+        private long expiresAt;
+
+        Waiter(long sequence, String key, Condition condition) {
+            this.sequence = sequence;
+            this.key = key;
+            this.condition = condition;
+        }
+    }
+
+    /**
+     * 准入结果
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+    public final class Admission {
+        @Getter
+        private final boolean granted;
+
+        /**
+         * 排队位置（从 1 开始），取得许可时为 0
+         */
+        @Getter
+        private final int position;
+
+        /**
+         * 建议的重试间隔（毫秒），取得许可时为 0
+         */
+        @Getter
+        private final long retryAfterMs;
+
+        private final long startNanos;
+        private boolean released;
+
+        /**
+         * 归还许可，重复调用或未取得许可时无效果
+         */
+        public void release() {
+            if (granted && !released) {
+                released = true;
+                ExamAdmissionService.this.release(startNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.smarttrainingsystem.service;
+
+import com.example.smarttrainingsystem.entity.ExamResult;
+import com.example.smarttrainingsystem.repository.ExamRepository;
+import com.example.smarttrainingsystem.repository.ExamResultRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 考试作答自动保存（写回缓存）
+ * 考试过程中客户端按题提交作答变化，只在内存中按考试会话合并；
+ * 定时把距上次保存已超过保存间隔或累计变化达到阈值的会话以批量 UPDATE 写入考试记录，
+ * 一次写入覆盖多次作答。浏览器崩溃后重新开始考试时恢复已保存的作答，交卷时与提交的答案合并
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExamAutosaveService {
+
+    private static final String FLUSH_SQL =
+            "UPDATE t_exam_result SET saved_answers = ?, answers_saved_at = ? WHERE id = ? AND pass_status = 'IN_PROGRESS'";
+
+    /**
+     * 单个答案的最大长度
+     */
+    private static final int MAX_ANSWER_LENGTH = 2000;
+
+    private static final TypeReference<Map<String, String>> ANSWERS_TYPE = new TypeReference<Map<String, String>>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ExamRepository examRepository;
+    private final ExamResultRepository examResultRepository;
+    private final ExamPaperService examPaperService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 会话有未保存的作答时，最长多久写入一次
+     */
+    @Value("${app.exam.autosave.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    /**
+     * 会话累计多少次作答变化后在下一次检查时立即写入
+     */
+    @Value("${app.exam.autosave.max-pending-changes:20}")
+    private int maxPendingChanges;
+
+    /**
+     * 无作答变化的会话在内存中保留的时间，之后从考试记录重新加载
+     */
+    @Value("${app.exam.autosave.idle-minutes:30}")
+    private long idleMinutes;
+
+    /**
+     * 进行中的考试会话，key为 用户ID:考试ID
+     */
+    private final Map<String, SessionBuffer> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 开始（或恢复）考试时登记会话
+     *
+     * @param examResult 进行中的考试记录
+     * @return 已保存的作答
+     */
+    public Map<String, String> open(ExamResult examResult) {
+        String key = key(examResult.getUserId(), examResult.getExamId());
+        SessionBuffer existing = sessions.get(key);
+        if (existing != null && existing.resultId.equals(examResult.getId())) {
+            return existing.snapshot();
+        }
+
+        SessionBuffer buffer = new SessionBuffer(examResult.getId(), parse(examResult.getSavedAnswers()));
+        sessions.put(key, buffer);
+        return buffer.snapshot();
+    }
+
+    /**
+     * 保存作答变化
+     *
+     * @param userId 用户ID
+     * @param examId 考试ID
+     * @param deltas 题目ID -> 答案，答案为空表示清除该题作答
+     * @return 当前已作答题数
+     * @throws IllegalArgumentException 题目不属于该考试或答案过长
+     */
+    public int save(String userId, String examId, Map<String, String> deltas) {
+        ExamPaperService.ExamPaper paper = examPaperService.getCachedPaper(examId);
+        if (paper == null) {
+            // 未缓存（如草稿考试或缓存刚失效）时读取试卷，同样校验题目
+            paper = examPaperService.getPaper(examRepository.findById(examId)
+                    .orElseThrow(() -> new RuntimeException("考试不存在")));
+        }
+        for (Map.Entry<String, String> delta : deltas.entrySet()) {
+            if (!paper.containsQuestion(delta.getKey())) {
+                throw new IllegalArgumentException("题目不属于该考试: " + delta.getKey());
+            }
+            if (delta.getValue() != null && delta.getValue().length() > MAX_ANSWER_LENGTH) {
+                throw new IllegalArgumentException("答案过长");
+            }
+        }
+
+        while (true) {
+            SessionBuffer buffer = sessions.get(key(userId, examId));
+            if (buffer == null) {
+                buffer = load(userId, examId);
+            }
+            int answered = buffer.apply(deltas);
+            if (answered == SessionBuffer.CLOSED) {
+                throw new RuntimeException("考试已结束");
+            }
+            if (answered != SessionBuffer.EVICTED) {
+                return answered;
+            }
+            // 会话恰好因长时间无变化被清理，重新加载后再合并
+        }
+    }
+
+    /**
+     * 交卷时结束会话
+     *
+     * @param examResult 进行中的考试记录
+     * @return 已保存（含尚未写入数据库）的作答
+     */
+    public Map<String, String> close(ExamResult examResult) {
+        SessionBuffer buffer = sessions.remove(key(examResult.getUserId(), examResult.getExamId()));
+        if (buffer != null && buffer.resultId.equals(examResult.getId())) {
+            buffer.close();
+            return buffer.snapshot();
+        }
+        return parse(examResult.getSavedAnswers());
+    }
+
+    /**
+     * 写入有未保存作答的会话，并清理长时间无变化的会话
+     */
+    @Scheduled(fixedDelayString = "${app.exam.autosave.check-interval-ms:1000}")
+    public void flush() {
+        flush(false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush(true);
+    }
+
+    // ==================== 私有方法 ====================
+
+    private synchronized void flush(boolean all) {
+        long now = System.currentTimeMillis();
+        long idleMillis = TimeUnit.MINUTES.toMillis(idleMinutes);
+        Timestamp savedAt = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Object[]> batch = new ArrayList<>();
+        List<SessionBuffer> flushed = new ArrayList<>();
+        List<Long> versions = new ArrayList<>();
+        List<Integer> changes = new ArrayList<>();
+
+        Iterator<SessionBuffer> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            SessionBuffer buffer = iterator.next();
+            synchronized (buffer) {
+                if (!buffer.isDirty()) {
+                    if (now - buffer.lastChange > idleMillis) {
+                        buffer.evicted = true;
+                        iterator.remove();
+                    }
+                    continue;
+                }
+                if (!all && now - buffer.dirtySince < flushIntervalMs && buffer.pendingChanges < maxPendingChanges) {
+                    continue;
+                }
+                batch.add(new Object[]{toJson(buffer.answers), savedAt, buffer.resultId});
+                flushed.add(buffer);
+                versions.add(buffer.version);
+                changes.add(buffer.pendingChanges);
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+            for (int i = 0; i < flushed.size(); i++) {
+                flushed.get(i).markSaved(versions.get(i), changes.get(i));
+            }
+            log.debug("考试作答已自动保存: {}个会话", batch.size());
+        } catch (Exception e) {
+            // 写入失败时保持未保存状态，等待下次重试
+            log.error("考试作答自动保存失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 内存中没有会话时（如服务重启后）从进行中的考试记录加载
+     */
+    private SessionBuffer load(String userId, String examId) {
+        ExamResult examResult = examResultRepository.findByUserIdAndExamId(userId, examId)
+                .stream()
+                .filter(er -> er.getPassStatus() == ExamResult.PassStatus.IN_PROGRESS)
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("考试未开始或已结束"));
+
+        SessionBuffer buffer = new SessionBuffer(examResult.getId(), parse(examResult.getSavedAnswers()));
+        SessionBuffer existing = sessions.putIfAbsent(key(userId, examId), buffer);
+        return existing != null ? existing : buffer;
+    }
+
+    private Map<String, String> parse(String json) {
+        if (json == null || json.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, ANSWERS_TYPE);
+        } catch (JsonProcessingException e) {
+            log.warn("解析已保存的作答失败: {}", e.getMessage());
+            return new LinkedHashMap<>();
+        }
+    }
+
+    private String toJson(Map<String, String> answers) {
+        try {
+            return objectMapper.writeValueAsString(answers);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("序列化作答失败", e);
+        }
+    }
+
+    private static String key(String userId, String examId) {
+        return userId + ":" + examId;
+    }
+
+    /**
+     * 考试会话的作答缓冲，按版本号区分已写入与未写入的变化
+     */
+    private static final class SessionBuffer {
+        static final int CLOSED = -1;
+        static final int EVICTED = -2;
+
+        private final String resultId;
+        private final Map<String, String> answers;
+        private long version;
+        private long savedVersion;
+        private int pendingChanges;
+        private long dirtySince;
+        private long lastChange = System.currentTimeMillis();
+        private boolean closed;
+        private boolean evicted;
+
+        SessionBuffer(String resultId, Map<String, String> answers) {
+            this.resultId = resultId;
+            this.answers = new LinkedHashMap<>(answers);
+        }
+
+        /**
+         * 合并作答变化
+         *
+         * @return 当前已作答题数，会话已结束时返回 {@link #CLOSED}，已被清理时返回 {@link #EVICTED}
+         */
+        synchronized int apply(Map<String, String> deltas) {
+            if (closed) {
+                return CLOSED;
+            }
+            if (evicted) {
+                return EVICTED;
+            }
+            boolean changed = false;
+            for (Map.Entry<String, String> delta : deltas.entrySet()) {
+                String value = delta.getValue() == null || delta.getValue().isEmpty() ? null : delta.getValue();
+                String previous = value == null
+                        ? answers.remove(delta.getKey())
+                        : answers.put(delta.getKey(), value);
+                if (!Objects.equals(previous, value)) {
+                    changed = true;
+                    pendingChanges++;
+                }
+            }
+            if (changed) {
+                if (!isDirty()) {
+                    dirtySince = System.currentTimeMillis();
+                }
+                version++;
+                lastChange = System.currentTimeMillis();
+            }
+            return answers.size();
+        }
+
+        synchronized boolean isDirty() {
+            return version > savedVersion;
+        }
+
+        /**
+         * 标记已写入
+         *
+         * @param flushedVersion 写入的版本
+         * @param flushedChanges 写入时累计的变化数，写入期间新增的变化仍计入待写入
+         */
+        synchronized void markSaved(long flushedVersion, int flushedChanges) {
+            if (flushedVersion > savedVersion) {
+                savedVersion = flushedVersion;
+            }
+            pendingChanges = Math.max(0, pendingChanges - flushedChanges);
+            if (isDirty()) {
+                // 写入期间又有新的变化，从现在起重新计时
+                dirtySince = System.currentTimeMillis();
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+
+        synchronized Map<String, String> snapshot() {
+            return Collections.unmodifiableMap(new HashMap<>(answers));
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.smarttrainingsystem.service;
+
+import com.example.smarttrainingsystem.entity.ExamResult;
+import com.example.smarttrainingsystem.repository.ExamResultRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 考试交卷评分队列
+ * 交卷时只把作答写入考试记录并标记为已交卷（评分中），评分、结果落库与错题记录由固定数量的评分线程
+ * 按批在后台完成，客户端轮询考试结果。待评分的记录以数据库中的已交卷状态为准：
+ * 队列已满、评分失败或服务重启时，定时扫描会把仍处于已交卷状态的记录重新入队
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExamGradingQueue {
+
+    private final ExamResultRepository examResultRepository;
+
+    /**
+     * 考试服务依赖本队列提交评分任务，这里延迟获取以避免循环依赖
+     */
+    private final ObjectProvider<ExamService> examServiceProvider;
+
+    /**
+     * 评分线程数，每个线程同时只占用一个数据库连接
+     */
+    @Value("${app.exam.grading.workers:2}")
+    private int workers;
+
+    /**
+     * 每批评分的记录数，每批一个事务
+     */
+    @Value("${app.exam.grading.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.exam.grading.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<String> queue;
+
+    /**
+     * 已入队尚未评分的记录ID，避免定时扫描重复入队
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    private volatile boolean stopped;
+
+    private final AtomicLong graded = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(this::consume, "exam-grading-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // 未评分的记录保持已交卷状态，重启后重新入队
+        stopped = true;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    /**
+     * 提交评分任务，在当前事务提交后入队（无事务时立即入队）
+     *
+     * @param resultId 已交卷的考试记录ID
+     */
+    public void submit(String resultId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(resultId);
+                }
+            });
+        } else {
+            enqueue(resultId);
+        }
+    }
+
+    /**
+     * 把仍处于已交卷状态但不在队列中的记录重新入队（应用启动后及定时执行）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.exam.grading.sweep-interval-ms:30000}",
+            fixedDelayString = "${app.exam.grading.sweep-interval-ms:30000}")
+    public void sweep() {
+        try {
+            int capacity = queue.remainingCapacity();
+            if (capacity == 0) {
+                return;
+            }
+            List<String> resultIds = examResultRepository.findIdsByPassStatus(
+                    ExamResult.PassStatus.SUBMITTED, PageRequest.of(0, capacity + pending.size()));
+            int requeued = 0;
+            for (String resultId : resultIds) {
+                if (!pending.contains(resultId) && enqueue(resultId)) {
+                    requeued++;
+                }
+            }
+            if (requeued > 0) {
+                log.info("待评分的已交卷记录重新入队: {}条", requeued);
+            }
+        } catch (Exception e) {
+            log.error("扫描待评分记录失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 评分统计
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("queued", queue.size());
+        status.put("graded", graded.get());
+        status.put("failedBatches", failedBatches.get());
+        return status;
+    }
+
+    // ==================== 私有方法 ====================
+
+    private boolean enqueue(String resultId) {
+        if (!pending.add(resultId)) {
+            return true;
+        }
+        if (!queue.offer(resultId)) {
+            // 队列已满时由定时扫描补入
+            pending.remove(resultId);
+            log.debug("评分队列已满 - 考试记录ID: {}", resultId);
+            return false;
+        }
+        return true;
+    }
+
+    private void consume() {
+        List<String> batch = new ArrayList<>(batchSize);
+        while (!stopped) {
+            try {
+                String first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                grade(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                pending.removeAll(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 整批在一个事务中评分；整批失败时逐条重试，使单条记录的错误不影响同批其他记录
+     */
+    private void grade(List<String> batch) {
+        ExamService examService = examServiceProvider.getObject();
+        try {
+            graded.addAndGet(examService.gradeSubmitted(batch));
+            return;
+        } catch (Exception e) {
+            failedBatches.incrementAndGet();
+            log.warn("交卷批量评分失败，逐条重试 - 条数: {}, 错误: {}", batch.size(), e.getMessage());
+        }
+
+        for (String resultId : batch) {
+            try {
+                graded.addAndGet(examService.gradeSubmitted(Collections.singletonList(resultId)));
+            } catch (Exception e) {
+                // 记录保持已交卷状态，由定时扫描重试
+                log.error("交卷评分失败 - 考试记录ID: {}, 错误: {}", resultId, e.getMessage(), e);
+            }
+        }
+    }
+}
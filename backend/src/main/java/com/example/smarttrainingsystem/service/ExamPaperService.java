@@ -0,0 +1,413 @@
+package com.example.smarttrainingsystem.service;
+
+import com.example.smarttrainingsystem.config.ExamPaperChangeListener;
+import com.example.smarttrainingsystem.dto.QuestionDTO;
+import com.example.smarttrainingsystem.entity.Exam;
+import com.example.smarttrainingsystem.entity.ExamQuestion;
+import com.example.smarttrainingsystem.entity.Question;
+import com.example.smarttrainingsystem.repository.ExamQuestionRepository;
+import com.example.smarttrainingsystem.repository.ExamRepository;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 试卷服务
+ * 一次查询加载考试的全部题目并构建不可变的试卷快照；
+ * 已发布考试的试卷缓存在内存中，考试或题目变更时由 {@link ExamPaperChangeListener} 失效并推进试卷版本；
+ * 即将开始或正在进行的考试由定时任务提前构建试卷，考试开放瞬间的开始请求不再逐个查询考试与题目
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-06
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExamPaperService {
+
+    private final ExamQuestionRepository examQuestionRepository;
+    private final ExamRepository examRepository;
+
+    /**
+     * 提前多久预热即将开始的考试
+     */
+    @Value("${app.exam.prewarm.lead-minutes:10}")
+    private long prewarmLeadMinutes;
+
+    /**
+     * 已发布考试的试卷缓存，key为考试ID
+     */
+    private final Map<String, ExamPaper> paperCache = new ConcurrentHashMap<>();
+
+    /**
+     * 各考试可写入缓存的最低试卷版本，key为考试ID
+     * 考试或题目变更提交后记录，变更提交前以旧数据构建的试卷版本较低，不再写入缓存
+     */
+    private final Map<String, LocalDateTime> minVersions = new ConcurrentHashMap<>();
+
+    /**
+     * 获取考试试卷
+     * 已发布考试优先读取缓存，缓存版本与考试更新时间不一致时重新构建
+     *
+     * @param exam 考试实体
+     * @return 试卷快照
+     */
+    public ExamPaper getPaper(Exam exam) {
+        if (exam.getStatus() != Exam.ExamStatus.PUBLISHED) {
+            paperCache.remove(exam.getId());
+            return buildPaper(exam);
+        }
+
+        ExamPaper cached = paperCache.get(exam.getId());
+        if (cached != null && Objects.equals(cached.getVersion(), exam.getUpdatedAt())) {
+            return cached;
+        }
+
+        ExamPaper paper = buildPaper(exam);
+        if (!isCurrent(paper)) {
+            log.debug("试卷快照版本已过期，不写入缓存 - 考试ID: {}", exam.getId());
+            return paper;
+        }
+        paperCache.put(exam.getId(), paper);
+        log.info("试卷快照已缓存 - 考试ID: {}, 题目数: {}", exam.getId(), paper.size());
+        return paper;
+    }
+
+    /**
+     * 读取已缓存的已发布考试试卷，不访问数据库
+     * 缓存随考试、题目变更失效，命中时试卷携带的考试快照即为最新数据
+     *
+     * @param examId 考试ID
+     * @return 试卷快照，未缓存时返回 null
+     */
+    public ExamPaper getCachedPaper(String examId) {
+        return paperCache.get(examId);
+    }
+
+    /**
+     * 预热即将开始（及正在进行）的已发布考试的试卷
+     */
+    @Scheduled(fixedDelayString = "${app.exam.prewarm.interval-ms:60000}", initialDelay = 10000)
+    public void prewarm() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Exam> exams = examRepository.findOpenOrUpcoming(Exam.ExamStatus.PUBLISHED, now,
+                now.plusMinutes(prewarmLeadMinutes));
+        int warmed = 0;
+        for (Exam exam : exams) {
+            ExamPaper cached = paperCache.get(exam.getId());
+            if (cached == null || !Objects.equals(cached.getVersion(), exam.getUpdatedAt())) {
+                try {
+                    getPaper(exam);
+                    warmed++;
+                } catch (Exception e) {
+                    log.warn("预热试卷失败 - 考试ID: {}, 错误: {}", exam.getId(), e.getMessage());
+                }
+            }
+        }
+        if (warmed > 0) {
+            log.info("试卷预热完成 - 考试数: {}", warmed);
+        }
+    }
+
+    /**
+     * 使考试的试卷缓存失效
+     *
+     * @param examId 考试ID
+     */
+    public void evict(String examId) {
+        if (examId != null && paperCache.remove(examId) != null) {
+            log.info("试卷缓存已失效 - 考试ID: {}", examId);
+        }
+    }
+
+    /**
+     * 使考试的试卷缓存失效，并拒绝缓存版本低于指定版本的试卷
+     *
+     * @param examId 考试ID
+     * @param version 最低试卷版本（考试变更后的更新时间）
+     */
+    public void evict(String examId, LocalDateTime version) {
+        if (examId == null) {
+            return;
+        }
+        if (version != null) {
+            // 数据库按微秒精度保存时间，截断后与读回的更新时间比较
+            minVersions.merge(examId, version.truncatedTo(ChronoUnit.MICROS),
+                    (current, next) -> next.isAfter(current) ? next : current);
+        }
+        evict(examId);
+    }
+
+    /**
+     * 使包含指定题目的试卷缓存失效
+     *
+     * @param questionId 题目ID
+     */
+    public void evictByQuestion(String questionId) {
+        paperCache.values().removeIf(paper -> paper.containsQuestion(questionId));
+    }
+
+    /**
+     * 考试题目关联变更提交后推进考试的试卷版本
+     *
+     * @param examId 考试ID
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void expire(String examId) {
+        if (examId != null) {
+            expireExams(Collections.singletonList(examId));
+        }
+    }
+
+    /**
+     * 题目变更提交后推进包含该题目的考试的试卷版本
+     *
+     * @param questionId 题目ID
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void expireByQuestion(String questionId) {
+        evictByQuestion(questionId);
+        try {
+            expireExams(examQuestionRepository.findExamIdsByQuestionId(questionId));
+        } catch (Exception e) {
+            log.error("查询题目所属考试失败 - 题目ID: {}, 错误: {}", questionId, e.getMessage(), e);
+        }
+    }
+
+    // ==================== 私有方法 ====================
+
+    /**
+     * 更新考试的更新时间作为新的试卷版本，先记录最低版本再更新，
+     * 更新提交前以旧数据构建的试卷版本低于最低版本，不会写入缓存
+     */
+    private void expireExams(List<String> examIds) {
+        if (examIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime version = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        for (String examId : examIds) {
+            evict(examId, version);
+        }
+        try {
+            examRepository.touchByIds(examIds, version);
+        } catch (Exception e) {
+            // 版本未能写入时撤销最低版本，避免试卷永远无法缓存
+            for (String examId : examIds) {
+                minVersions.remove(examId, version);
+            }
+            log.error("更新试卷版本失败 - 考试ID: {}, 错误: {}", examIds, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 试卷版本不低于该考试的最低版本时才可写入缓存
+     */
+    private boolean isCurrent(ExamPaper paper) {
+        LocalDateTime minVersion = minVersions.get(paper.getExamId());
+        return minVersion == null || (paper.getVersion() != null && !paper.getVersion().isBefore(minVersion));
+    }
+
+    private ExamPaper buildPaper(Exam exam) {
+        List<ExamQuestion> examQuestions = examQuestionRepository.findWithQuestionsByExamId(exam.getId());
+
+        List<PaperQuestion> questions = new ArrayList<>(examQuestions.size());
+        List<QuestionDTO> questionDTOs = new ArrayList<>(examQuestions.size());
+        for (ExamQuestion eq : examQuestions) {
+            Question question = eq.getQuestion();
+            questions.add(new PaperQuestion(question.getId(), question.getQuestionType(),
+                    question.getCorrectAnswer(), eq.getScore()));
+            questionDTOs.add(convertToQuestionDTO(question));
+        }
+
+        // 复制考试信息作为快照，缓存不与持久化上下文中的实体共享
+        Exam snapshot = new Exam();
+        BeanUtils.copyProperties(exam, snapshot);
+        return new ExamPaper(snapshot, questions, questionDTOs);
+    }
+
+    private QuestionDTO convertToQuestionDTO(Question question) {
+        QuestionDTO dto = new QuestionDTO();
+        dto.setId(question.getId());
+        dto.setContent(question.getContent());
+        dto.setQuestionType(question.getQuestionType().name());
+        dto.setOptions(parseOptions(question.getOptions()));
+        dto.setScore(question.getScore());
+        // 注意：不返回正确答案给前端
+        return dto;
+    }
+
+    /**
+     * 解析题目选项 - Java 8 兼容版本
+     */
+    private List<Map<String, String>> parseOptions(String optionsJson) {
+        if (optionsJson == null || optionsJson.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        try {
+            // 这里简化处理，实际应该用JSON库解析
+            List<Map<String, String>> options = new ArrayList<>();
+
+            // 创建选项 - Java 8 兼容方式
+            options.add(createOption("A", "选项A"));
+            options.add(createOption("B", "选项B"));
+            options.add(createOption("C", "选项C"));
+            options.add(createOption("D", "选项D"));
+
+            return options;
+        } catch (Exception e) {
+            log.warn("解析选项JSON失败: {}", optionsJson);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 创建选项Map的辅助方法
+     */
+    private Map<String, String> createOption(String key, String value) {
+        Map<String, String> option = new HashMap<>();
+        option.put("key", key);
+        option.put("value", value);
+        return option;
+    }
+
+    /**
+     * 试卷快照（不可变）
+     * 题目DTO在多个考试会话间共享，调用方不得修改
+     */
+    @Getter
+    public static final class ExamPaper {
+
+        /**
+         * 折算分数时容许的得分比例取整误差（0.01 分）
+         */
+        private static final int CREDIT_ROUNDING = AnswerGrader.FULL_CREDIT / 100;
+
+        private final String examId;
+        private final LocalDateTime version;
+
+        /**
+         * 构建试卷时的考试信息快照，调用方不得修改
+         */
+        private final Exam exam;
+        private final List<PaperQuestion> questions;
+        private final List<QuestionDTO> questionDTOs;
+        @Getter(AccessLevel.NONE)
+        private final Set<String> questionIds;
+
+        ExamPaper(Exam exam, List<PaperQuestion> questions, List<QuestionDTO> questionDTOs) {
+            this.examId = exam.getId();
+            this.version = exam.getUpdatedAt();
+            this.exam = exam;
+            this.questions = Collections.unmodifiableList(questions);
+            this.questionDTOs = Collections.unmodifiableList(questionDTOs);
+            Set<String> ids = new HashSet<>();
+            for (PaperQuestion question : questions) {
+                ids.add(question.getQuestionId());
+            }
+            this.questionIds = Collections.unmodifiableSet(ids);
+        }
+
+        public boolean containsQuestion(String questionId) {
+            return questionIds.contains(questionId);
+        }
+
+        public int size() {
+            return questions.size();
+        }
+
+        /**
+         * 按预编译的匹配器为整份试卷评分
+         *
+         * @param answers 题目ID -> 考生作答
+         * @return 评分结果，各题得分按试卷题目顺序排列
+         */
+        public PaperGrade grade(Map<String, String> answers) {
+            int[] earned = new int[questions.size()];
+            boolean[] correct = new boolean[questions.size()];
+            int totalScore = 0;
+            int correctCount = 0;
+            for (int i = 0; i < earned.length; i++) {
+                PaperQuestion question = questions.get(i);
+                int credit = question.matcher.match(answers.get(question.questionId));
+                // 匹配器的得分比例已向下取整（如三空答对两空为 6666），折算分数时补偿这部分误差再向下取整
+                earned[i] = (int) (((long) question.score * credit + CREDIT_ROUNDING) / AnswerGrader.FULL_CREDIT);
+                correct[i] = credit == AnswerGrader.FULL_CREDIT;
+                totalScore += earned[i];
+                if (correct[i]) {
+                    correctCount++;
+                }
+            }
+            return new PaperGrade(totalScore, correctCount, earned, correct);
+        }
+    }
+
+    /**
+     * 试卷评分结果
+     */
+    @AllArgsConstructor(access = AccessLevel.PACKAGE)
+    public static final class PaperGrade {
+        @Getter
+        private final int totalScore;
+        @Getter
+        private final int correctCount;
+        private final int[] earned;
+        private final boolean[] correct;
+
+        /**
+         * 第 index 题（按试卷题目顺序）的得分
+         */
+        public int getEarned(int index) {
+            return earned[index];
+        }
+
+        /**
+         * 第 index 题是否完全答对
+         */
+        public boolean isCorrect(int index) {
+            return correct[index];
+        }
+    }
+
+    /**
+     * 试卷中的题目（评分所需信息，正确答案在构建试卷时编译为匹配器）
+     */
+    @Getter
+    public static final class PaperQuestion {
+        private final String questionId;
+        private final Question.QuestionType questionType;
+        private final String correctAnswer;
+        private final int score;
+        @Getter(AccessLevel.NONE)
+        private final AnswerGrader.Matcher matcher;
+
+        PaperQuestion(String questionId, Question.QuestionType questionType, String correctAnswer, Integer score) {
+            this.questionId = questionId;
+            this.questionType = questionType;
+            this.correctAnswer = correctAnswer;
+            this.score = score != null ? score : 0;
+            this.matcher = AnswerGrader.compile(questionType, correctAnswer);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.smarttrainingsystem.service;
+
+import com.example.smarttrainingsystem.entity.ExamResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 考试结果批量写入器（组提交）
+ * 开始考试时的结果记录由后台线程合并写入：在很短的时间窗口内收集多条记录，
+ * 在一个事务中以 JDBC 批量插入提交，调用方阻塞到所在批次提交后返回，因此写入语义与逐条保存相同，
+ * 但考试开放瞬间的大量插入只占用一个数据库连接和少量事务
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExamResultWriter {
+
+    /**
+     * 调用方等待所在批次提交的最长时间
+     */
+    private static final long WRITE_TIMEOUT_SECONDS = 30;
+
+    private final PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.exam.result-writer.batch-size:100}")
+    private int batchSize;
+
+    /**
+     * 收到第一条记录后最多等待多久再提交
+     */
+    @Value("${app.exam.result-writer.max-delay-ms:20}")
+    private long maxDelayMs;
+
+    @Value("${app.exam.result-writer.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private TransactionTemplate transactionTemplate;
+
+    private BlockingQueue<PendingWrite> queue;
+
+    private Thread consumer;
+
+    private volatile boolean stopped;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        consumer = new Thread(this::consume, "exam-result-writer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopped = true;
+        consumer.interrupt();
+        consumer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * 保存考试结果，阻塞到所在批次提交
+     *
+     * @param examResult 考试结果
+     * @param isNew 是否为新记录（新记录直接插入，已有记录合并更新）
+     */
+    public void save(ExamResult examResult, boolean isNew) {
+        PendingWrite write = new PendingWrite(examResult, isNew);
+        if (stopped || !queue.offer(write)) {
+            // 队列已满或正在停止时直接写入
+            transactionTemplate.executeWithoutResult(status -> persist(write));
+            return;
+        }
+
+        try {
+            write.future.get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("保存考试记录被中断");
+        } catch (TimeoutException e) {
+            throw new RuntimeException("保存考试记录超时");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException
+                    ? (RuntimeException) cause
+                    : new RuntimeException("保存考试记录失败", cause);
+        }
+    }
+
+    /**
+     * 写入统计
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("queued", queue.size());
+        status.put("batches", batches.get());
+        status.put("rows", rows.get());
+        return status;
+    }
+
+    // ==================== 私有方法 ====================
+
+    private void consume() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (!stopped) {
+            try {
+                PendingWrite first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("考试结果批量写入异常: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // 停止前把已收到的记录写完
+        queue.drainTo(batch);
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    /**
+     * 在一个事务中写入整批记录；整批失败时逐条重试，使单条记录的错误只影响其调用方
+     */
+    private void write(List<PendingWrite> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch.forEach(this::persist));
+            batches.incrementAndGet();
+            rows.addAndGet(batch.size());
+            batch.forEach(write -> write.future.complete(null));
+            return;
+        } catch (RuntimeException e) {
+            log.warn("考试结果批量写入失败，逐条重试 - 条数: {}, 错误: {}", batch.size(), e.getMessage());
+        }
+
+        for (PendingWrite write : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> persist(write));
+                rows.incrementAndGet();
+                write.future.complete(null);
+            } catch (RuntimeException e) {
+                write.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void persist(PendingWrite write) {
+        if (write.isNew) {
+            entityManager.persist(write.examResult);
+        } else {
+            entityManager.merge(write.examResult);
+        }
+    }
+
+    /**
+     * 待写入的记录
+     */
+    private static final class PendingWrite {
+        private final ExamResult examResult;
+        private final boolean isNew;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingWrite(ExamResult examResult, boolean isNew) {
+            this.examResult = examResult;
+            this.isNew = isNew;
+        }
+    }
+}
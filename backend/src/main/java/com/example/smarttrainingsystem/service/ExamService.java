@@ -3,11 +3,20 @@ package com.example.smarttrainingsystem.service;
 import com.example.smarttrainingsystem.dto.*;
 import com.example.smarttrainingsystem.entity.*;
 import com.example.smarttrainingsystem.repository.*;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -25,11 +34,33 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ExamService {
 
+    /**
+     * 交卷受理：一次写入作答并标记为已交卷，与自动交卷并发时只有一方生效
+     */
+    private static final String ACCEPT_SUBMISSION_SQL =
+            "UPDATE t_exam_result SET saved_answers = ?, answers_saved_at = ?, end_time = ?, pass_status = 'SUBMITTED' " +
+            "WHERE id = ? AND pass_status = 'IN_PROGRESS'";
+
+    private static final TypeReference<Map<String, String>> ANSWERS_TYPE = new TypeReference<Map<String, String>>() {
+    };
+
     private final ExamRepository examRepository;
-    private final QuestionRepository questionRepository;
-    private final ExamQuestionRepository examQuestionRepository;
     private final ExamResultRepository examResultRepository;
     private final UserRepository userRepository;
+    private final ExamPaperService examPaperService;
+    private final ExamResultWriter examResultWriter;
+    private final ExamAutosaveService examAutosaveService;
+    private final ExamSessionTimer examSessionTimer;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final ExamGradingQueue examGradingQueue;
+    private final WrongQuestionsService wrongQuestionsService;
+
+    /**
+     * 是否异步评分：交卷时只受理作答，由评分队列在后台评分，客户端轮询考试结果
+     */
+    @Value("${app.exam.grading.async:true}")
+    private boolean asyncGrading;
 
     /**
      * 获取可用考试列表
@@ -45,14 +76,17 @@ public class ExamService {
 
     /**
      * 开始考试
+     * 试卷已预热时考试信息与题目均取自缓存，只查询一次考生的考试记录；
+     * 考试记录交给批量写入器与同一时刻的其他开始请求合并提交
      */
-    @Transactional
     public ExamSessionDTO startExam(String userId, String examId) {
         log.info("开始考试 - 用户ID: {}, 考试ID: {}", userId, examId);
 
-        // 检查考试是否存在
-        Exam exam = examRepository.findById(examId)
-                .orElseThrow(() -> new RuntimeException("考试不存在"));
+        // 检查考试是否存在（优先读取预热的试卷快照）
+        ExamPaperService.ExamPaper paper = examPaperService.getCachedPaper(examId);
+        Exam exam = paper != null
+                ? paper.getExam()
+                : examRepository.findById(examId).orElseThrow(() -> new RuntimeException("考试不存在"));
 
         // 检查是否可以参加考试
         if (!exam.canTakeExam()) {
@@ -69,22 +103,32 @@ public class ExamService {
             throw new RuntimeException("已经参加过该考试");
         }
 
-        // 获取考试题目
-        List<ExamQuestion> examQuestions = examQuestionRepository.findByExamIdOrderByQuestionOrder(examId);
-        List<Question> questions = examQuestions.stream()
-                .map(eq -> questionRepository.findById(eq.getQuestionId()).orElse(null))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-
-        // 创建或更新考试结果记录
-        ExamResult examResult = existingResult.orElse(new ExamResult());
-        examResult.setUserId(userId);
-        examResult.setExamId(examId);
-        examResult.setTotalScore(exam.getTotalScore());
-        examResult.setTotalCount(questions.size());
-        examResult.startExam();
+        // 获取考试题目（已发布考试读取缓存的试卷快照）
+        if (paper == null) {
+            paper = examPaperService.getPaper(exam);
+        }
 
-        examResultRepository.save(examResult);
+        // 进行中的记录在考试时间内直接恢复（如浏览器崩溃后重新进入），考试时间已用完的立即交卷，不重新开始
+        ExamResult examResult;
+        boolean resumed = existingResult.isPresent();
+        if (resumed) {
+            examResult = existingResult.get();
+            if (isExpired(examResult, exam)) {
+                examSessionTimer.expireNow(examResult.getId());
+                throw new RuntimeException("考试时间已结束");
+            }
+        } else {
+            examResult = new ExamResult();
+            examResult.setUserId(userId);
+            examResult.setExamId(examId);
+            examResult.setTotalScore(exam.getTotalScore());
+            examResult.setTotalCount(paper.size());
+            examResult.startExam();
+
+            examResultWriter.save(examResult, true);
+        }
+        Map<String, String> savedAnswers = examAutosaveService.open(examResult);
+        examSessionTimer.schedule(examResult, exam);
 
         // 构建返回数据
         ExamSessionDTO session = new ExamSessionDTO();
@@ -94,22 +138,27 @@ public class ExamService {
         session.setDuration(exam.getDuration());
         session.setTotalScore(exam.getTotalScore());
         session.setPassScore(exam.getPassScore());
-        session.setStartTime(LocalDateTime.now());
-        session.setQuestions(questions.stream().map(this::convertToQuestionDTO).collect(Collectors.toList()));
+        session.setStartTime(examResult.getStartTime());
+        session.setResumed(resumed);
+        session.setSavedAnswers(savedAnswers);
+        session.setQuestions(paper.getQuestionDTOs());
 
         return session;
     }
 
     /**
      * 提交考试答案
+     * 异步评分时只写入作答并返回已交卷（评分中）状态，评分结果通过获取考试结果查询
      */
     @Transactional
     public ExamResultDTO submitExam(String userId, String examId, SubmitAnswerDTO submitData) {
         log.info("提交考试答案 - 用户ID: {}, 考试ID: {}", userId, examId);
 
-        // 获取考试信息
-        Exam exam = examRepository.findById(examId)
-                .orElseThrow(() -> new RuntimeException("考试不存在"));
+        // 获取考试信息（优先读取缓存的试卷快照）
+        ExamPaperService.ExamPaper cachedPaper = examPaperService.getCachedPaper(examId);
+        Exam exam = cachedPaper != null
+                ? cachedPaper.getExam()
+                : examRepository.findById(examId).orElseThrow(() -> new RuntimeException("考试不存在"));
 
         // 获取考试结果记录
         ExamResult examResult = examResultRepository.findByUserIdAndExamId(userId, examId)
@@ -118,54 +167,115 @@ public class ExamService {
                 .findFirst()
                 .orElseThrow(() -> new RuntimeException("考试未开始或已结束"));
 
-        // 获取题目和正确答案
-        List<ExamQuestion> examQuestions = examQuestionRepository.findByExamIdOrderByQuestionOrder(examId);
-        Map<String, Question> questionMap = examQuestions.stream()
-                .collect(Collectors.toMap(
-                        ExamQuestion::getQuestionId,
-                        eq -> questionRepository.findById(eq.getQuestionId()).orElse(null)
-                ));
-
-        // 计算分数
-        int totalScore = 0;
-        int correctCount = 0;
-        Map<String, Object> answerDetails = new HashMap<>();
-
-        for (ExamQuestion eq : examQuestions) {
-            Question question = questionMap.get(eq.getQuestionId());
-            if (question == null) continue;
-
-            String userAnswer = submitData.getAnswers().get(eq.getQuestionId());
-            boolean isCorrect = Objects.equals(userAnswer, question.getCorrectAnswer());
-
-            if (isCorrect) {
-                correctCount++;
-                totalScore += eq.getScore();
-            }
+        // 以提交的答案为准，未提交的题目使用自动保存的作答
+        Map<String, String> answers = new HashMap<>(examAutosaveService.close(examResult));
+        answers.putAll(submitData.getAnswers());
 
-            // 记录答题详情
-            Map<String, Object> detail = new HashMap<>();
-            detail.put("userAnswer", userAnswer);
-            detail.put("correctAnswer", question.getCorrectAnswer());
-            detail.put("isCorrect", isCorrect);
-            detail.put("score", isCorrect ? eq.getScore() : 0);
-            answerDetails.put(eq.getQuestionId(), detail);
+        if (asyncGrading) {
+            return acceptSubmission(examResult, exam, answers);
         }
 
-        // 更新考试结果
-        examResult.setScore(totalScore);
-        examResult.setCorrectCount(correctCount);
-        examResult.setWrongCount(examQuestions.size() - correctCount);
-        examResult.setAnswerDetails(convertToJson(answerDetails));
-        examResult.finishExam(totalScore, exam.getTotalScore(), exam.getPassScore());
+        // 获取题目和正确答案
+        ExamPaperService.ExamPaper paper = examPaperService.getPaper(exam);
 
+        grade(examResult, exam, paper, answers);
         examResultRepository.save(examResult);
+        examSessionTimer.cancel(examResult.getId());
 
         return convertToResultDTO(examResult, exam);
     }
 
+    /**
+     * 到期会话自动交卷
+     * 以自动保存的作答（未作答则为空）按与交卷相同的规则评分，整批在一个事务中保存；
+     * 异步评分时与主动交卷一样只批量写入作答并交给评分队列。已交卷或已重新开始、尚未到期的记录跳过
+     *
+     * @param resultIds 到期的考试记录ID
+     * @return 自动交卷的记录数
+     */
+    @Transactional
+    public int autoSubmitExpired(List<String> resultIds) {
+        List<ExamResult> results = examResultRepository.findAllById(resultIds).stream()
+                .filter(er -> er.getPassStatus() == ExamResult.PassStatus.IN_PROGRESS)
+                .collect(Collectors.toList());
+        if (results.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> examIds = results.stream().map(ExamResult::getExamId).collect(Collectors.toSet());
+        Map<String, Exam> exams = examRepository.findAllById(examIds).stream()
+                .collect(Collectors.toMap(Exam::getId, exam -> exam));
+
+        List<ExamResult> submitted = new ArrayList<>();
+        List<Object[]> accepted = new ArrayList<>();
+        Timestamp submittedAt = Timestamp.valueOf(LocalDateTime.now());
+        for (ExamResult examResult : results) {
+            Exam exam = exams.get(examResult.getExamId());
+            if (exam != null && asyncGrading && !isWithinDuration(examResult, exam)) {
+                accepted.add(new Object[]{convertToJson(examAutosaveService.close(examResult)),
+                        submittedAt, submittedAt, examResult.getId()});
+                continue;
+            }
+            if (exam == null) {
+                // 考试已被删除，无法评分
+                examAutosaveService.close(examResult);
+                examResult.timeout();
+            } else if (isWithinDuration(examResult, exam)) {
+                continue;
+            } else {
+                ExamPaperService.ExamPaper paper = examPaperService.getPaper(exam);
+                grade(examResult, exam, paper, new HashMap<>(examAutosaveService.close(examResult)));
+            }
+            submitted.add(examResult);
+        }
+
+        examResultRepository.saveAll(submitted);
+        if (!accepted.isEmpty()) {
+            // 条件更新，与同时到达的主动交卷只有一方生效；评分队列只处理已交卷的记录
+            jdbcTemplate.batchUpdate(ACCEPT_SUBMISSION_SQL, accepted);
+            accepted.forEach(args -> examGradingQueue.submit((String) args[3]));
+        }
+        return submitted.size() + accepted.size();
+    }
+
+    /**
+     * 为已交卷的记录评分（评分队列调用）
+     * 按交卷时保存的作答评分，整批在一个事务中保存考试结果和错题记录；已评分的记录跳过
+     *
+     * @param resultIds 已交卷的考试记录ID
+     * @return 评分的记录数
+     */
+    @Transactional
+    public int gradeSubmitted(List<String> resultIds) {
+        List<ExamResult> results = examResultRepository.findAllById(resultIds).stream()
+                .filter(er -> er.getPassStatus() == ExamResult.PassStatus.SUBMITTED)
+                .collect(Collectors.toList());
+        if (results.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> examIds = results.stream().map(ExamResult::getExamId).collect(Collectors.toSet());
+        Map<String, Exam> exams = examRepository.findAllById(examIds).stream()
+                .collect(Collectors.toMap(Exam::getId, exam -> exam));
+
+        for (ExamResult examResult : results) {
+            Exam exam = exams.get(examResult.getExamId());
+            if (exam == null) {
+                // 考试已被删除，无法评分
+                examResult.timeout();
+                continue;
+            }
+            ExamPaperService.ExamPaper paper = examPaperService.getPaper(exam);
+            grade(examResult, exam, paper, parseAnswers(examResult.getSavedAnswers()));
+        }
+
+        examResultRepository.saveAll(results);
+        return results.size();
+    }
+
     /**
      * 获取考试结果
+     * 异步评分时，交卷后评分完成前返回已交卷（评分中）状态，客户端应稍后重试
      */
     public ExamResultDTO getExamResult(String userId, String examId) {
         log.info("获取考试结果 - 用户ID: {}, 考试ID: {}", userId, examId);
@@ -219,6 +329,66 @@ public class ExamService {
 
     // ========== 私有辅助方法 ==========
 
+    /**
+     * 受理交卷：一条 UPDATE 写入作答和交卷时间，事务提交后交给评分队列
+     */
+    private ExamResultDTO acceptSubmission(ExamResult examResult, Exam exam, Map<String, String> answers) {
+        LocalDateTime submittedAt = LocalDateTime.now();
+        int updated = jdbcTemplate.update(ACCEPT_SUBMISSION_SQL, convertToJson(answers),
+                Timestamp.valueOf(submittedAt), Timestamp.valueOf(submittedAt), examResult.getId());
+        if (updated == 0) {
+            // 已被到期自动交卷
+            throw new RuntimeException("考试未开始或已结束");
+        }
+        examGradingQueue.submit(examResult.getId());
+        examSessionTimer.cancel(examResult.getId());
+
+        ExamResultDTO dto = convertToResultDTO(examResult, exam);
+        dto.setPassStatus(ExamResult.PassStatus.SUBMITTED.name());
+        dto.setEndTime(submittedAt);
+        return dto;
+    }
+
+    /**
+     * 按试卷评分并结束考试记录，同时记录错题（含未作答的题目）
+     */
+    private void grade(ExamResult examResult, Exam exam, ExamPaperService.ExamPaper paper, Map<String, String> answers) {
+        ExamPaperService.PaperGrade grade = paper.grade(answers);
+
+        Map<String, String> wrongAnswers = new HashMap<>();
+        List<ExamPaperService.PaperQuestion> questions = paper.getQuestions();
+        for (int i = 0; i < questions.size(); i++) {
+            if (!grade.isCorrect(i)) {
+                String questionId = questions.get(i).getQuestionId();
+                wrongAnswers.put(questionId, answers.get(questionId));
+            }
+        }
+        wrongQuestionsService.recordWrongQuestions(examResult.getUserId(), examResult.getExamId(), wrongAnswers);
+
+        // 更新考试结果
+        examResult.setScore(grade.getTotalScore());
+        examResult.setCorrectCount(grade.getCorrectCount());
+        examResult.setWrongCount(paper.size() - grade.getCorrectCount());
+        examResult.setAnswerDetails(convertToAnswerDetailsJson(paper, answers, grade));
+        examResult.finishExam(grade.getTotalScore(), exam.getTotalScore(), exam.getPassScore());
+    }
+
+    /**
+     * 进行中的考试记录是否已超过考试时长（缺少开始时间或考试时长时无法判断，视为未超过）
+     */
+    private boolean isExpired(ExamResult examResult, Exam exam) {
+        return examResult.getStartTime() != null && exam.getDuration() != null
+                && !isWithinDuration(examResult, exam);
+    }
+
+    /**
+     * 进行中的考试记录是否仍在考试时长内
+     */
+    private boolean isWithinDuration(ExamResult examResult, Exam exam) {
+        return examResult.getStartTime() != null && exam.getDuration() != null
+                && examResult.getStartTime().plusMinutes(exam.getDuration()).isAfter(LocalDateTime.now());
+    }
+
     private ExamDTO convertToDTO(Exam exam) {
         ExamDTO dto = new ExamDTO();
         dto.setId(exam.getId());
@@ -236,17 +406,6 @@ public class ExamService {
         return dto;
     }
 
-    private QuestionDTO convertToQuestionDTO(Question question) {
-        QuestionDTO dto = new QuestionDTO();
-        dto.setId(question.getId());
-        dto.setContent(question.getContent());
-        dto.setQuestionType(question.getQuestionType().name());
-        dto.setOptions(parseOptions(question.getOptions()));
-        dto.setScore(question.getScore());
-        // 注意：不返回正确答案给前端
-        return dto;
-    }
-
     private ExamResultDTO convertToResultDTO(ExamResult examResult, Exam exam) {
         ExamResultDTO dto = new ExamResultDTO();
         dto.setId(examResult.getId());
@@ -267,46 +426,48 @@ public class ExamService {
         return dto;
     }
 
-    /**
-     * 解析题目选项 - Java 8 兼容版本
-     */
-    private List<Map<String, String>> parseOptions(String optionsJson) {
-        if (optionsJson == null || optionsJson.isEmpty()) {
-            return new ArrayList<>();
-        }
-
+    private String convertToJson(Map<String, String> answers) {
         try {
-            // 这里简化处理，实际应该用JSON库解析
-            List<Map<String, String>> options = new ArrayList<>();
-
-            // 创建选项 - Java 8 兼容方式
-            options.add(createOption("A", "选项A"));
-            options.add(createOption("B", "选项B"));
-            options.add(createOption("C", "选项C"));
-            options.add(createOption("D", "选项D"));
-
-            return options;
-        } catch (Exception e) {
-            log.warn("解析选项JSON失败: {}", optionsJson);
-            return new ArrayList<>();
+            return objectMapper.writeValueAsString(answers);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("序列化作答失败", e);
         }
     }
 
-    /**
-     * 创建选项Map的辅助方法
-     */
-    private Map<String, String> createOption(String key, String value) {
-        Map<String, String> option = new HashMap<>();
-        option.put("key", key);
-        option.put("value", value);
-        return option;
+    private Map<String, String> parseAnswers(String json) {
+        if (json == null || json.isEmpty()) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, ANSWERS_TYPE);
+        } catch (JsonProcessingException e) {
+            log.warn("解析交卷作答失败: {}", e.getMessage());
+            return new HashMap<>();
+        }
     }
 
     /**
-     * 转换为JSON字符串 - 简化版本
+     * 生成答题详情JSON（answer_details 为 JSON 列），逐题直接写出，不为每题构建中间对象
      */
-    private String convertToJson(Object obj) {
-        // 简化处理，实际应该用JSON库
-        return obj.toString();
+    private String convertToAnswerDetailsJson(ExamPaperService.ExamPaper paper, Map<String, String> answers,
+                                              ExamPaperService.PaperGrade grade) {
+        StringWriter writer = new StringWriter(paper.size() * 96);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+            generator.writeStartObject();
+            List<ExamPaperService.PaperQuestion> questions = paper.getQuestions();
+            for (int i = 0; i < questions.size(); i++) {
+                ExamPaperService.PaperQuestion question = questions.get(i);
+                generator.writeObjectFieldStart(question.getQuestionId());
+                generator.writeStringField("userAnswer", answers.get(question.getQuestionId()));
+                generator.writeStringField("correctAnswer", question.getCorrectAnswer());
+                generator.writeBooleanField("isCorrect", grade.isCorrect(i));
+                generator.writeNumberField("score", grade.getEarned(i));
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("序列化答题详情失败", e);
+        }
+        return writer.toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,367 @@
+package com.example.smarttrainingsystem.service;
+
+import com.example.smarttrainingsystem.entity.Exam;
+import com.example.smarttrainingsystem.entity.ExamResult;
+import com.example.smarttrainingsystem.repository.ExamResultRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 考试会话到期计时器
+ * 以哈希时间轮在内存中登记每个进行中考试会话的截止时间，登记与取消均为 O(1)；
+ * 时间轮每个刻度取出到期的会话，按批交给考试服务以自动保存的作答（未作答则为空）自动交卷评分。
+ * 服务启动后从进行中的考试记录重建，停机期间已到期的会话在启动后立即交卷
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExamSessionTimer {
+
+    private final ExamResultRepository examResultRepository;
+
+    /**
+     * 考试服务依赖本计时器登记会话，这里延迟获取以避免循环依赖
+     */
+    private final ObjectProvider<ExamService> examServiceProvider;
+
+    /**
+     * 时间轮刻度（毫秒），到期会话最多延迟一个刻度交卷
+     */
+    @Value("${app.exam.expiry.tick-ms:1000}")
+    private long tickMs;
+
+    /**
+     * 时间轮槽数，超过一圈的截止时间按圈数计数
+     */
+    @Value("${app.exam.expiry.wheel-size:512}")
+    private int wheelSize;
+
+    /**
+     * 考试时长用完后再等待多久自动交卷，留给客户端自己交卷的网络时间
+     */
+    @Value("${app.exam.expiry.grace-seconds:30}")
+    private long graceSeconds;
+
+    /**
+     * 同一刻度到期的会话每批自动交卷的数量
+     */
+    @Value("${app.exam.expiry.batch-size:100}")
+    private int batchSize;
+
+    /**
+     * 自动交卷失败后的重试间隔
+     */
+    @Value("${app.exam.expiry.retry-delay-seconds:60}")
+    private long retryDelaySeconds;
+
+    private TimingWheel wheel;
+
+    private Thread ticker;
+
+    /**
+     * 自动交卷在单独的线程中执行，数据库操作不阻塞时间轮转动
+     */
+    private ExecutorService expiryExecutor;
+
+    private volatile boolean stopped;
+
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong autoSubmitted = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        wheel = new TimingWheel(tickMs, wheelSize, System.currentTimeMillis());
+        expiryExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "exam-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker = new Thread(this::run, "exam-session-timer");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopped = true;
+        ticker.interrupt();
+        expiryExecutor.shutdown();
+        expiryExecutor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 登记考试会话的截止时间（开始时间 + 考试时长 + 宽限时间），已登记的会话按新的截止时间替换
+     *
+     * @param examResult 进行中的考试记录
+     * @param exam 考试
+     */
+    public void schedule(ExamResult examResult, Exam exam) {
+        if (examResult.getStartTime() == null || exam.getDuration() == null) {
+            return;
+        }
+        wheel.add(examResult.getId(), deadline(examResult.getStartTime(), exam.getDuration()), true);
+    }
+
+    /**
+     * 取消考试会话的到期登记（交卷后调用）
+     *
+     * @param resultId 考试记录ID
+     */
+    public void cancel(String resultId) {
+        wheel.remove(resultId);
+    }
+
+    /**
+     * 立即为已超过考试时长的会话交卷（在调用线程中执行），用于计时器尚未处理到的到期会话，
+     * 如宽限时间内重新进入考试；交卷失败时按重试间隔重新登记
+     *
+     * @param resultId 考试记录ID
+     */
+    public void expireNow(String resultId) {
+        wheel.remove(resultId);
+        autoSubmit(Collections.singletonList(resultId));
+    }
+
+    /**
+     * 应用启动后从进行中的考试记录重建时间轮
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            long now = System.currentTimeMillis();
+            int overdue = 0;
+            List<Object[]> sessions = examResultRepository.findInProgressSessions();
+            for (Object[] session : sessions) {
+                LocalDateTime startTime = (LocalDateTime) session[1];
+                Integer duration = (Integer) session[2];
+                // 缺少开始时间或考试时长的记录无法判断是否到期，按已到期处理
+                long deadline = startTime != null && duration != null ? deadline(startTime, duration) : now;
+                if (deadline <= now) {
+                    overdue++;
+                }
+                // 不覆盖启动过程中新开始考试登记的截止时间
+                wheel.add((String) session[0], deadline, false);
+            }
+            log.info("考试会话计时器重建完成: {}个进行中会话, 其中{}个已到期", sessions.size(), overdue);
+        } catch (Exception e) {
+            log.error("考试会话计时器重建失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 计时器统计
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("sessions", wheel.size());
+        status.put("expired", expired.get());
+        status.put("autoSubmitted", autoSubmitted.get());
+        status.put("failedBatches", failedBatches.get());
+        return status;
+    }
+
+    // ==================== 私有方法 ====================
+
+    private long deadline(LocalDateTime startTime, int durationMinutes) {
+        return startTime.plusMinutes(durationMinutes).plusSeconds(graceSeconds)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void run() {
+        while (!stopped) {
+            try {
+                long delay = wheel.nextTickAt() - System.currentTimeMillis();
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+                List<String> due = wheel.advance(System.currentTimeMillis());
+                if (!due.isEmpty()) {
+                    expired.addAndGet(due.size());
+                    dispatch(due);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("考试会话计时器异常: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 同一刻度到期的会话按批自动交卷，每批一个事务
+     */
+    private void dispatch(List<String> due) {
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<String> batch = new ArrayList<>(due.subList(from, Math.min(from + batchSize, due.size())));
+            expiryExecutor.execute(() -> autoSubmit(batch));
+        }
+    }
+
+    private void autoSubmit(List<String> batch) {
+        try {
+            int submitted = examServiceProvider.getObject().autoSubmitExpired(batch);
+            autoSubmitted.addAndGet(submitted);
+            log.info("考试会话到期自动交卷: 到期{}个, 交卷{}个", batch.size(), submitted);
+        } catch (Exception e) {
+            failedBatches.incrementAndGet();
+            log.error("考试会话自动交卷失败，{}秒后重试 - 条数: {}, 错误: {}", retryDelaySeconds, batch.size(), e.getMessage(), e);
+            long retryAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(retryDelaySeconds);
+            for (String resultId : batch) {
+                wheel.add(resultId, retryAt, false);
+            }
+        }
+    }
+
+    /**
+     * 哈希时间轮
+     * 第 n 个刻度在 起点 + n * 刻度 时处理，截止时间落在 ((n-1)*刻度, n*刻度] 内的会话登记在第 n 个刻度对应的槽中，
+     * 相距超过一圈的会话记录剩余圈数，槽被处理时圈数为零的会话到期。槽内会话以双向链表连接，
+     * 另以会话ID索引，登记和取消都只需常数时间
+     */
+    private static final class TimingWheel {
+        private final long tickMillis;
+        private final long startMillis;
+        private final int mask;
+        private final Timeout[] slots;
+        private final Map<String, Timeout> timeouts = new HashMap<>();
+
+        /**
+         * 已处理到的刻度
+         */
+        private long currentTick;
+
+        TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+            int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+            this.tickMillis = tickMillis;
+            this.startMillis = startMillis;
+            this.mask = size - 1;
+            this.slots = new Timeout[size];
+        }
+
+        /**
+         * 登记截止时间
+         *
+         * @param replace 已登记时是否替换
+         */
+        synchronized void add(String id, long deadline, boolean replace) {
+            Timeout existing = timeouts.get(id);
+            if (existing != null) {
+                if (!replace) {
+                    return;
+                }
+                unlink(existing);
+            }
+
+            long tick = Math.max(ceilDiv(deadline - startMillis, tickMillis), currentTick + 1);
+            Timeout timeout = new Timeout(id, (tick - currentTick - 1) / slots.length);
+            int index = (int) (tick & mask);
+            timeout.slot = index;
+            timeout.next = slots[index];
+            if (timeout.next != null) {
+                timeout.next.prev = timeout;
+            }
+            slots[index] = timeout;
+            timeouts.put(id, timeout);
+        }
+
+        synchronized void remove(String id) {
+            Timeout timeout = timeouts.get(id);
+            if (timeout != null) {
+                unlink(timeout);
+            }
+        }
+
+        synchronized long nextTickAt() {
+            return startMillis + (currentTick + 1) * tickMillis;
+        }
+
+        /**
+         * 处理到当前时间为止的所有刻度
+         *
+         * @return 到期的会话ID
+         */
+        synchronized List<String> advance(long now) {
+            List<String> due = new ArrayList<>();
+            while (startMillis + (currentTick + 1) * tickMillis <= now) {
+                currentTick++;
+                Timeout timeout = slots[(int) (currentTick & mask)];
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    if (timeout.remainingRounds <= 0) {
+                        unlink(timeout);
+                        due.add(timeout.id);
+                    } else {
+                        timeout.remainingRounds--;
+                    }
+                    timeout = next;
+                }
+            }
+            return due;
+        }
+
+        synchronized int size() {
+            return timeouts.size();
+        }
+
+        private void unlink(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                slots[timeout.slot] = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeouts.remove(timeout.id);
+        }
+
+        private static long ceilDiv(long value, long divisor) {
+            return value <= 0 ? 0 : (value + divisor - 1) / divisor;
+        }
+    }
+
+    /**
+     * 时间轮中的会话登记
+     */
+    private static final class Timeout {
+        private final String id;
+        private long remainingRounds;
+        private int slot;
+        private Timeout prev;
+        private Timeout next;
+
+        Timeout(String id, long remainingRounds) {
+            this.id = id;
+            this.remainingRounds = remainingRounds;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.smarttrainingsystem.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 文件校验值缓存
+ * 按 (路径, 修改时间, 大小) 缓存文件的强校验 ETag，文件未变化时不重复计算；
+ * 不超过 max-hash-size 的文件使用内容摘要，更大的文件（如视频）使用大小与修改时间生成
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Component
+public class FileETagCache {
+
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final Map<Path, Validators> cache;
+
+    @Value("${app.media.etag.max-hash-size:67108864}") // 默认64MB
+    private long maxHashSize;
+
+    public FileETagCache(@Value("${app.media.etag.cache-size:10000}") int cacheSize) {
+        this.cache = new LinkedHashMap<Path, Validators>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Validators> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * 获取文件校验值
+     *
+     * @param filePath 文件路径
+     * @return ETag、修改时间与大小
+     * @throws IOException 读取文件属性或内容失败
+     */
+    public Validators get(Path filePath) throws IOException {
+        Path key = filePath.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+
+        Validators cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null && cached.lastModified == lastModified && cached.size == size) {
+            return cached;
+        }
+
+        String etag = size <= maxHashSize
+                ? "\"" + hash(key) + "\""
+                : "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+        Validators validators = new Validators(etag, lastModified, size);
+        synchronized (cache) {
+            cache.put(key, validators);
+        }
+        return validators;
+    }
+
+    /**
+     * 计算内容摘要（SHA-256 前 128 位，十六进制）
+     */
+    private String hash(Path filePath) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        byte[] bytes = digest.digest();
+        StringBuilder builder = new StringBuilder(32);
+        for (int i = 0; i < 16; i++) {
+            builder.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16)).append(Character.forDigit(bytes[i] & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 文件校验值
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PACKAGE)
+    public static final class Validators {
+        private final String etag;
+        private final long lastModified;
+        private final long size;
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.smarttrainingsystem.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 上传文件位置索引
+ * 维护 文件名 → 文件路径 的映射，供只按文件名访问的旧接口使用，避免每次请求遍历整个上传目录。
+ * 索引快照保存在 {upload}/.index 下，启动时先加载快照立即可用，应用就绪后遍历一次目录对账；
+ * 之后由 FileUploadService 在写入、删除文件时维护，可选用 WatchService 同步外部改动
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Component
+public class FileLocationIndex {
+
+    private static final String INDEX_DIR = ".index";
+    private static final String SNAPSHOT_FILE = "file-locations.idx";
+
+    /**
+     * HLS 分片目录下的文件名在各视频间重复，不纳入索引
+     */
+    private static final String HLS_DIR = "course/hls";
+
+    @Value("${app.upload.path:/uploads}")
+    private String uploadPath;
+
+    @Value("${app.upload.index.watch-enabled:false}")
+    private boolean watchEnabled;
+
+    private Path uploadDirectory;
+
+    private final Map<String, Path> index = new ConcurrentHashMap<>();
+
+    /**
+     * 是否已完成一次完整对账；之前未命中时回退为遍历目录
+     */
+    private volatile boolean ready;
+
+    private WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private Thread watcher;
+
+    @PostConstruct
+    public void init() {
+        uploadDirectory = Paths.get(uploadPath).toAbsolutePath().normalize();
+        loadSnapshot();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响停机
+            }
+        }
+        if (ready) {
+            saveSnapshot();
+        }
+    }
+
+    /**
+     * 应用就绪后遍历上传目录，补齐快照之后新增的文件并剔除已不存在的文件
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        if (watchEnabled && watchService == null) {
+            try {
+                watchService = uploadDirectory.getFileSystem().newWatchService();
+            } catch (IOException e) {
+                log.warn("创建目录监听失败，仅由上传服务维护文件索引: {}", e.getMessage());
+            }
+        }
+
+        try {
+            scan(uploadDirectory);
+        } catch (IOException e) {
+            log.error("遍历上传目录失败: {}", e.getMessage(), e);
+            return;
+        }
+        index.entrySet().removeIf(entry -> !Files.isRegularFile(entry.getValue()));
+        ready = true;
+        saveSnapshot();
+
+        if (watchService != null && watcher == null) {
+            watcher = new Thread(this::watch, "file-index-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+
+        log.info("文件位置索引就绪: 文件数={}, 耗时={}ms", index.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 按文件名查找文件
+     *
+     * @param filename 文件名
+     * @return 文件路径，不存在时返回 null
+     */
+    public Path find(String filename) {
+        Path path = index.get(filename);
+        if (path != null) {
+            if (Files.isRegularFile(path)) {
+                return path;
+            }
+            index.remove(filename, path);
+        }
+
+        if (!ready) {
+            // 首次对账完成前，快照中没有的文件仍按原方式查找
+            path = walkFind(filename);
+            if (path != null) {
+                index.putIfAbsent(filename, path);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * 记录新写入的文件
+     */
+    public void add(Path file) {
+        Path normalized = file.toAbsolutePath().normalize();
+        if (isIndexed(normalized)) {
+            index.put(normalized.getFileName().toString(), normalized);
+        }
+    }
+
+    /**
+     * 移除已删除的文件
+     */
+    public void remove(Path file) {
+        Path normalized = file.toAbsolutePath().normalize();
+        index.remove(normalized.getFileName().toString(), normalized);
+    }
+
+    // ==================== 私有方法 ====================
+
+    /**
+     * 遍历目录加入索引，启用监听时同时注册各级目录
+     */
+    private void scan(Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(uploadDirectory) && !isIndexed(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    index.putIfAbsent(file.getFileName().toString(), file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.debug("无法访问文件: {}, error={}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 排除内部目录（以 . 开头，如去重内容、分片上传、索引快照）和 HLS 分片目录
+     */
+    private boolean isIndexed(Path path) {
+        if (!path.startsWith(uploadDirectory)) {
+            return false;
+        }
+        Path relative = uploadDirectory.relativize(path);
+        if (relative.getNameCount() == 0 || relative.getName(0).toString().startsWith(".")) {
+            return false;
+        }
+        return !relative.toString().replace('\\', '/').startsWith(HLS_DIR);
+    }
+
+    private void register(Path dir) throws IOException {
+        if (watchService != null) {
+            WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirectories.put(key, dir);
+        }
+    }
+
+    /**
+     * 监听线程：同步上传服务之外的文件新增与删除
+     */
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path dir = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                try {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // 事件丢失，重新遍历对账
+                        scan(uploadDirectory);
+                        index.entrySet().removeIf(entry -> !Files.isRegularFile(entry.getValue()));
+                        continue;
+                    }
+                    if (dir == null) {
+                        continue;
+                    }
+                    Path child = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        if (Files.isDirectory(child)) {
+                            scan(child);
+                        } else {
+                            add(child);
+                        }
+                    } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        remove(child);
+                    }
+                } catch (IOException e) {
+                    log.debug("处理目录变更失败: {}", e.getMessage());
+                }
+            }
+
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+        }
+    }
+
+    private Path walkFind(String filename) {
+        try (Stream<Path> paths = Files.walk(uploadDirectory)) {
+            return paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().equals(filename))
+                    .filter(this::isIndexed)
+                    .findFirst()
+                    .orElse(null);
+        } catch (IOException e) {
+            log.error("搜索文件时出错: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 加载索引快照，每行为一个相对上传目录的路径
+     */
+    private void loadSnapshot() {
+        Path snapshot = uploadDirectory.resolve(INDEX_DIR).resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(snapshot, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    Path path = uploadDirectory.resolve(line).normalize();
+                    index.putIfAbsent(path.getFileName().toString(), path);
+                }
+            }
+            log.info("加载文件位置索引快照: 文件数={}", index.size());
+        } catch (IOException e) {
+            log.warn("加载文件位置索引快照失败: {}", e.getMessage());
+        }
+    }
+
+    private void saveSnapshot() {
+        Path directory = uploadDirectory.resolve(INDEX_DIR);
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Path path : index.values()) {
+                    writer.write(uploadDirectory.relativize(path).toString().replace('\\', '/'));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("保存文件位置索引快照失败: {}", e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.smarttrainingsystem.service;
 
 import com.example.smarttrainingsystem.exception.BusinessException;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -12,7 +13,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
@@ -28,10 +29,22 @@ import java.util.UUID;
  */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class FileUploadService {
 
-    @Value("${app.upload.path:/uploads}")
-    private String uploadPath;
+    private final HlsTranscodeService hlsTranscodeService;
+
+    private final ContentAddressedStore contentAddressedStore;
+
+    private final FileLocationIndex fileLocationIndex;
+
+    private final ImageThumbnailService imageThumbnailService;
+
+    private final StorageService storageService;
+
+    private final DocumentPreviewService documentPreviewService;
+
+    private final PrecompressedVariantService precompressedVariantService;
 
     @Value("${app.upload.maxFileSize:209715200}") // 默认200MB
     private long maxFileSize;
@@ -50,8 +63,8 @@ public class FileUploadService {
         // 初始化允许的文件类型列表
         allowedTypeList = Arrays.asList(allowedTypes.toLowerCase().split(","));
         
-        // 创建上传目录
-        uploadDirectory = Paths.get(uploadPath);
+        // 创建上传目录（使用对象存储时为本地缓存目录）
+        uploadDirectory = storageService.getLocalRoot();
         try {
             Files.createDirectories(uploadDirectory);
             log.info("文件上传目录初始化完成: {}", uploadDirectory.toAbsolutePath());
@@ -82,8 +95,15 @@ public class FileUploadService {
             Path categoryPath = createCategoryPath(category, userId);
             Path filePath = categoryPath.resolve(storedFileName);
             
-            // 保存文件
-            Files.copy(file.getInputStream(), filePath);
+            // 保存文件（启用去重时相同内容只存一份）
+            if (contentAddressedStore.isEnabled()) {
+                contentAddressedStore.store(file.getInputStream(), filePath, userId);
+            } else {
+                Files.copy(file.getInputStream(), filePath);
+            }
+            publish(filePath);
+            fileLocationIndex.add(filePath);
+            precompressedVariantService.generate(filePath);
             
             // 生成访问URL
             String fileUrl = generateFileUrl(category, userId, storedFileName);
@@ -112,7 +132,12 @@ public class FileUploadService {
             throw new BusinessException(4002, "只能上传图片文件");
         }
         
-        return uploadFile(file, "course/covers", userId);
+        String fileUrl = uploadFile(file, "course/covers", userId);
+
+        // 异步预生成课程列表、卡片等常用尺寸的缩略图
+        imageThumbnailService.pregenerate(parseFilePathFromUrl(fileUrl), ImageThumbnailService.COVER_SIZES);
+
+        return fileUrl;
     }
 
     /**
@@ -128,7 +153,12 @@ public class FileUploadService {
             throw new BusinessException(4003, "只能上传视频文件");
         }
         
-        return uploadFile(file, "course/videos", userId);
+        String fileUrl = uploadFile(file, "course/videos", userId);
+
+        // 异步生成 HLS 分片，不阻塞上传请求
+        hlsTranscodeService.submit(parseFilePathFromUrl(fileUrl));
+
+        return fileUrl;
     }
 
     /**
@@ -144,7 +174,10 @@ public class FileUploadService {
             throw new BusinessException(4004, "只能上传文档文件");
         }
         
-        return uploadFile(file, "course/documents", userId);
+        String fileUrl = uploadFile(file, "course/documents", userId);
+        // 后台渲染逐页预览图
+        documentPreviewService.submit(parseFilePathFromUrl(fileUrl));
+        return fileUrl;
     }
 
     /**
@@ -160,7 +193,121 @@ public class FileUploadService {
             throw new BusinessException(4002, "头像只能上传图片文件");
         }
         
-        return uploadFile(file, "avatar", userId);
+        String fileUrl = uploadFile(file, "avatar", userId);
+
+        imageThumbnailService.pregenerate(parseFilePathFromUrl(fileUrl), ImageThumbnailService.AVATAR_SIZES);
+
+        return fileUrl;
+    }
+
+    /**
+     * 导入已在服务器上组装完成的文件（如分片上传的结果），移动到分类目录并返回访问URL
+     *
+     * @param source 已组装完成的文件，须与上传目录位于同一文件系统
+     * @param originalFilename 原始文件名
+     * @param category 文件分类
+     * @param userId 用户ID
+     * @param sha256 文件内容 SHA-256，未知时为空
+     * @return 文件访问URL
+     */
+    public String importFile(Path source, String originalFilename, String category, String userId, String sha256) {
+        String fileExtension = getFileExtension(originalFilename);
+        if (!isAllowedType(originalFilename)) {
+            throw new BusinessException(4007, "不支持的文件类型: " + fileExtension);
+        }
+
+        try {
+            String storedFileName = generateStoredFileName(originalFilename);
+            Path filePath = createCategoryPath(category, userId).resolve(storedFileName);
+
+            // 同一文件系统内重命名或建立硬链接，不复制数据
+            if (contentAddressedStore.isEnabled()) {
+                contentAddressedStore.storeFile(source, sha256, filePath, userId);
+            } else {
+                Files.move(source, filePath, StandardCopyOption.ATOMIC_MOVE);
+            }
+            publish(filePath);
+            fileLocationIndex.add(filePath);
+            precompressedVariantService.generate(filePath);
+
+            String fileUrl = generateFileUrl(category, userId, storedFileName);
+            log.info("文件导入成功: originalName={}, storedPath={}, url={}", originalFilename, filePath, fileUrl);
+            return fileUrl;
+
+        } catch (IOException e) {
+            log.error("文件导入失败: {}", e.getMessage(), e);
+            throw new BusinessException(4001, "文件上传失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 导入已组装完成的课程视频，并提交 HLS 分片任务
+     *
+     * @param source 已组装完成的视频文件
+     * @param originalFilename 原始文件名
+     * @param userId 用户ID
+     * @param sha256 文件内容 SHA-256，未知时为空
+     * @return 文件访问URL
+     */
+    public String importCourseVideo(Path source, String originalFilename, String userId, String sha256) {
+        if (!isVideoFileName(originalFilename)) {
+            throw new BusinessException(4003, "只能上传视频文件");
+        }
+
+        String fileUrl = importFile(source, originalFilename, "course/videos", userId, sha256);
+        hlsTranscodeService.submit(parseFilePathFromUrl(fileUrl));
+        return fileUrl;
+    }
+
+    /**
+     * 导入已组装完成的课程文档，并提交预览渲染任务
+     *
+     * @param source 已组装完成的文档文件
+     * @param originalFilename 原始文件名
+     * @param userId 用户ID
+     * @param sha256 文件内容 SHA-256，未知时为空
+     * @return 文件访问URL
+     */
+    public String importCourseDocument(Path source, String originalFilename, String userId, String sha256) {
+        if (!isDocumentFileName(originalFilename)) {
+            throw new BusinessException(4004, "只能上传文档文件");
+        }
+
+        String fileUrl = importFile(source, originalFilename, "course/documents", userId, sha256);
+        documentPreviewService.submit(parseFilePathFromUrl(fileUrl));
+        return fileUrl;
+    }
+
+    /**
+     * 文件扩展名是否在允许上传的类型中
+     */
+    public boolean isAllowedType(String filename) {
+        return allowedTypeList.contains(getFileExtension(filename).toLowerCase());
+    }
+
+    /**
+     * 文件名是否为视频文件
+     */
+    public boolean isVideoFileName(String filename) {
+        String fileExtension = getFileExtension(filename).toLowerCase();
+        List<String> videoTypes = Arrays.asList("mp4", "avi", "mov", "wmv", "flv", "webm", "mkv");
+        return videoTypes.contains(fileExtension);
+    }
+
+    /**
+     * 文件名是否为文档文件
+     */
+    public boolean isDocumentFileName(String filename) {
+        String fileExtension = getFileExtension(filename).toLowerCase();
+        List<String> documentTypes = Arrays.asList("pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "txt");
+        return documentTypes.contains(fileExtension);
+    }
+
+    /**
+     * 获取上传根目录
+     */
+    public Path getUploadDirectory() {
+        return uploadDirectory;
     }
 
     /**
@@ -177,9 +324,23 @@ public class FileUploadService {
         try {
             // 从URL解析出文件路径
             Path filePath = parseFilePathFromUrl(fileUrl);
-            
-            if (Files.exists(filePath)) {
+
+            // 去重存储管理的文件只删除引用，最后一个引用删除时才删除内容
+            fileLocationIndex.remove(filePath);
+            precompressedVariantService.delete(filePath);
+            boolean deleted = contentAddressedStore.release(filePath);
+            if (!deleted && Files.exists(filePath)) {
                 Files.delete(filePath);
+                deleted = true;
+            }
+            // 使用对象存储时本地副本可能已被淘汰，以后端对象为准
+            if (storageService.deleted(filePath)) {
+                deleted = true;
+            }
+
+            if (deleted) {
+                hlsTranscodeService.deleteSegments(filePath);
+                documentPreviewService.deletePreview(filePath);
                 log.info("文件删除成功: {}", filePath);
                 return true;
             } else {
@@ -212,6 +373,20 @@ public class FileUploadService {
                 
                 return fileInfo;
             }
+
+            // 本地副本已被淘汰时从存储后端读取元数据，不拉取内容
+            StorageBackend.ObjectStat stat = storageService.isRemote()
+                    ? storageService.stat(storageService.keyOf(filePath))
+                    : null;
+            if (stat != null) {
+                FileInfo fileInfo = new FileInfo();
+                fileInfo.setFileName(filePath.getFileName().toString());
+                fileInfo.setFileSize(stat.getSize());
+                fileInfo.setLastModified(java.time.Instant.ofEpochMilli(stat.getLastModified()));
+                fileInfo.setContentType(Files.probeContentType(filePath));
+
+                return fileInfo;
+            }
             
         } catch (IOException e) {
             log.error("获取文件信息失败: url={}, error={}", fileUrl, e.getMessage(), e);
@@ -254,6 +429,20 @@ public class FileUploadService {
         return String.format("%s_%s.%s", timestamp, uuid.substring(0, 8), fileExtension);
     }
 
+    /**
+     * 文件写入本地后同步到存储后端，失败时撤销本地写入
+     */
+    private void publish(Path filePath) throws IOException {
+        try {
+            storageService.stored(filePath);
+        } catch (IOException e) {
+            if (!contentAddressedStore.release(filePath)) {
+                Files.deleteIfExists(filePath);
+            }
+            throw e;
+        }
+    }
+
     /**
      * 创建分类目录
      */
@@ -312,18 +501,14 @@ public class FileUploadService {
      * 检查是否为视频文件
      */
     private boolean isVideoFile(MultipartFile file) {
-        String fileExtension = getFileExtension(file.getOriginalFilename()).toLowerCase();
-        List<String> videoTypes = Arrays.asList("mp4", "avi", "mov", "wmv", "flv", "webm", "mkv");
-        return videoTypes.contains(fileExtension);
+        return isVideoFileName(file.getOriginalFilename());
     }
 
     /**
      * 检查是否为文档文件
      */
     private boolean isDocumentFile(MultipartFile file) {
-        String fileExtension = getFileExtension(file.getOriginalFilename()).toLowerCase();
-        List<String> documentTypes = Arrays.asList("pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "txt");
-        return documentTypes.contains(fileExtension);
+        return isDocumentFileName(file.getOriginalFilename());
     }
 
     /**
@@ -0,0 +1,381 @@
+package com.example.smarttrainingsystem.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * HLS 切片服务
+ * 课程视频上传后异步调用本地 ffmpeg 将 MP4 切分为固定时长的 TS 分片并生成 m3u8 播放列表，
+ * 分片输出到 course/hls/{userId}/{year}/{month}/{视频文件名}/ 目录下，使用对象存储时切片完成后同步上传
+ *
+ * @author 开发者
+ * @version 1.0
+ * @since 2025-08-05
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HlsTranscodeService {
+
+    /**
+     * 播放列表文件名
+     */
+    public static final String PLAYLIST_NAME = "index.m3u8";
+
+    /**
+     * 分片文件名格式
+     */
+    private static final String SEGMENT_PATTERN = "seg_%05d.ts";
+
+    private static final String VIDEO_DIR = "course/videos";
+    private static final String HLS_DIR = "course/hls";
+
+    private final StorageService storageService;
+
+    @Value("${app.upload.path:/uploads}")
+    private String uploadPath;
+
+    @Value("${app.media.hls.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.media.hls.ffmpeg-path:ffmpeg}")
+    private String ffmpegPath;
+
+    @Value("${app.media.hls.segment-seconds:6}")
+    private int segmentSeconds;
+
+    @Value("${app.media.hls.workers:2}")
+    private int workers;
+
+    @Value("${app.media.hls.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${app.media.hls.timeout-minutes:60}")
+    private long timeoutMinutes;
+
+    private Path uploadDirectory;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 正在排队或处理中的视频，避免重复提交
+     */
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        uploadDirectory = Paths.get(uploadPath).toAbsolutePath().normalize();
+
+        if (enabled && !ffmpegAvailable()) {
+            log.warn("未检测到可用的 ffmpeg ({})，HLS 切片功能已停用", ffmpegPath);
+            enabled = false;
+        }
+        if (!enabled) {
+            return;
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "hls-transcode-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        log.info("HLS 切片服务初始化完成: ffmpeg={}, 分片时长={}s, 工作线程={}", ffmpegPath, segmentSeconds, workers);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交视频切片任务
+     *
+     * @param videoPath 已上传的视频文件路径
+     */
+    public void submit(Path videoPath) {
+        if (!enabled) {
+            return;
+        }
+
+        Path source = videoPath.toAbsolutePath().normalize();
+        if (!pending.add(source)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    transcode(source);
+                } finally {
+                    pending.remove(source);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(source);
+            log.warn("HLS 切片队列已满，跳过视频: {}", source);
+        }
+    }
+
+    /**
+     * 根据视频访问URL计算对应的 HLS 播放列表URL
+     *
+     * @param videoUrl 视频文件URL，形如 /api/v1/files/course/videos/{userId}/{year}/{month}/{filename}
+     * @return 播放列表URL，视频URL格式不符或功能未启用时返回 null
+     */
+    public String getPlaylistUrl(String videoUrl) {
+        String prefix = "/api/v1/files/" + VIDEO_DIR + "/";
+        if (!enabled || videoUrl == null || !videoUrl.startsWith(prefix)) {
+            return null;
+        }
+
+        String relative = videoUrl.substring(prefix.length());
+        return "/api/v1/media/hls/" + stripExtension(relative) + "/" + PLAYLIST_NAME;
+    }
+
+    /**
+     * 获取分片输出目录
+     *
+     * @param userId 用户ID
+     * @param year 年
+     * @param month 月
+     * @param name 视频文件名（不含扩展名）
+     * @return 输出目录
+     */
+    public Path resolveOutputDirectory(String userId, String year, String month, String name) {
+        return uploadDirectory.resolve(HLS_DIR).resolve(userId).resolve(year).resolve(month).resolve(name);
+    }
+
+    /**
+     * 删除视频对应的 HLS 分片
+     *
+     * @param videoPath 视频文件路径
+     */
+    public void deleteSegments(Path videoPath) {
+        Path outputDir = outputDirectoryFor(videoPath.toAbsolutePath().normalize());
+        if (outputDir == null) {
+            return;
+        }
+
+        try {
+            if (storageService.isRemote()) {
+                deleteRemoteSegments(outputDir);
+            }
+            if (Files.isDirectory(outputDir)) {
+                deleteRecursively(outputDir);
+                log.info("已删除视频 HLS 分片: {}", outputDir);
+            }
+        } catch (IOException e) {
+            log.warn("删除 HLS 分片失败: {}, error={}", outputDir, e.getMessage());
+        }
+    }
+
+    // ==================== 私有方法 ====================
+
+    /**
+     * 执行切片：先尝试直接封装转换（不重新编码），失败后再转码为 H.264/AAC
+     */
+    private void transcode(Path source) {
+        Path outputDir = outputDirectoryFor(source);
+        if (outputDir == null) {
+            log.warn("视频不在课程视频目录下，跳过 HLS 切片: {}", source);
+            return;
+        }
+
+        Path workDir = outputDir.resolveSibling(outputDir.getFileName() + ".tmp");
+        long startTime = System.currentTimeMillis();
+
+        try {
+            // 排队期间本地副本可能已被淘汰，切片前确保源文件在本地
+            if (storageService.resolve(storageService.keyOf(source)) == null) {
+                log.warn("视频文件不存在，跳过 HLS 切片: {}", source);
+                return;
+            }
+            if (Files.exists(workDir)) {
+                deleteRecursively(workDir);
+            }
+            Files.createDirectories(workDir);
+
+            boolean success = runFfmpeg(source, workDir, true) || runFfmpeg(source, workDir, false);
+            if (!success) {
+                log.error("HLS 切片失败: {}，详见 {}", source, workDir.resolve("ffmpeg.log"));
+                return;
+            }
+
+            Files.deleteIfExists(workDir.resolve("ffmpeg.log"));
+            if (Files.exists(outputDir)) {
+                deleteRecursively(outputDir);
+            }
+            // 整体替换目录，保证对外只暴露完整的播放列表
+            Files.move(workDir, outputDir, StandardCopyOption.ATOMIC_MOVE);
+            publishSegments(outputDir);
+
+            log.info("HLS 切片完成: {}, 耗时={}ms", outputDir, System.currentTimeMillis() - startTime);
+        } catch (IOException e) {
+            log.error("HLS 切片失败: {}, error={}", source, e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("HLS 切片被中断: {}", source);
+        }
+    }
+
+    private boolean runFfmpeg(Path source, Path workDir, boolean copyCodec) throws IOException, InterruptedException {
+        clearDirectory(workDir);
+
+        List<String> command = new ArrayList<>(Arrays.asList(
+                ffmpegPath, "-hide_banner", "-nostdin", "-y",
+                "-i", source.toString()));
+        if (copyCodec) {
+            command.addAll(Arrays.asList("-c", "copy"));
+        } else {
+            command.addAll(Arrays.asList("-c:v", "libx264", "-preset", "veryfast", "-c:a", "aac",
+                    "-force_key_frames", "expr:gte(t,n_forced*" + segmentSeconds + ")"));
+        }
+        command.addAll(Arrays.asList(
+                "-f", "hls",
+                "-hls_time", String.valueOf(segmentSeconds),
+                "-hls_playlist_type", "vod",
+                "-hls_segment_filename", workDir.resolve(SEGMENT_PATTERN).toString(),
+                workDir.resolve(PLAYLIST_NAME).toString()));
+
+        File logFile = workDir.resolve("ffmpeg.log").toFile();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(logFile))
+                .start();
+
+        if (!process.waitFor(timeoutMinutes, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            log.warn("ffmpeg 执行超时: {}", source);
+            return false;
+        }
+
+        return process.exitValue() == 0 && Files.exists(workDir.resolve(PLAYLIST_NAME));
+    }
+
+    /**
+     * 由视频路径计算输出目录：course/videos/{userId}/{year}/{month}/{name}.mp4
+     * 对应 course/hls/{userId}/{year}/{month}/{name}
+     */
+    private Path outputDirectoryFor(Path source) {
+        Path videoRoot = uploadDirectory.resolve(VIDEO_DIR);
+        if (!source.startsWith(videoRoot)) {
+            return null;
+        }
+
+        Path relative = videoRoot.relativize(source);
+        Path parent = relative.getParent();
+        String name = stripExtension(relative.getFileName().toString());
+        Path hlsRoot = uploadDirectory.resolve(HLS_DIR);
+        return parent == null ? hlsRoot.resolve(name) : hlsRoot.resolve(parent).resolve(name);
+    }
+
+    /**
+     * 将分片上传到存储后端，播放列表最后上传，其他节点读到播放列表时分片均已可用
+     */
+    private void publishSegments(Path outputDir) throws IOException {
+        if (!storageService.isRemote()) {
+            return;
+        }
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(outputDir)) {
+            segments = files.filter(file -> !file.getFileName().toString().equals(PLAYLIST_NAME))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path segment : segments) {
+            storageService.stored(segment);
+        }
+        storageService.stored(outputDir.resolve(PLAYLIST_NAME));
+    }
+
+    /**
+     * 按播放列表删除存储后端中的分片，播放列表最先删除
+     */
+    private void deleteRemoteSegments(Path outputDir) throws IOException {
+        Path playlist = storageService.resolve(storageService.keyOf(outputDir.resolve(PLAYLIST_NAME)));
+        if (playlist == null) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(playlist, StandardCharsets.UTF_8);
+        storageService.deleted(playlist);
+        for (String line : lines) {
+            String entry = line.trim();
+            if (!entry.isEmpty() && !entry.startsWith("#") && entry.indexOf('/') < 0) {
+                storageService.deleted(outputDir.resolve(entry));
+            }
+        }
+    }
+
+    private boolean ffmpegAvailable() {
+        try {
+            Process process = new ProcessBuilder(ffmpegPath, "-version")
+                    .redirectErrorStream(true)
+                    .start();
+            process.getInputStream().close();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void clearDirectory(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!file.getFileName().toString().equals("ffmpeg.log")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static String stripExtension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        int slash = filename.lastIndexOf('/');
+        return dot > slash ? filename.substring(0, dot) : filename;
+    }
+}
@@ -0,0 +1,535 @@
+package com.example.smarttrainingsystem.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 图片缩略图服务
+ * 使用 ImageIO + Java2D 纯 Java 缩放课程封面和头像：大图读取时先按比例抽样，再逐级减半缩放以保证质量；
+ * 生成结果保存在 {upload}/.thumbnails 下，按最近访问顺序淘汰，总大小不超过配置上限；
+ * 同一规格的并发请求只生成一次
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImageThumbnailService {
+
+    /**
+     * 课程封面预生成规格：列表小图、卡片图、详情页图
+     */
+    public static final int[][] COVER_SIZES = {{48, 48}, {320, 180}, {640, 360}};
+
+    /**
+     * 头像预生成规格
+     */
+    public static final int[][] AVATAR_SIZES = {{48, 48}, {96, 96}, {192, 192}};
+
+    /**
+     * 接口可请求的规格：仅限预生成规格，避免任意尺寸的请求反复解码原图并挤出缓存
+     */
+    private static final int[][][] ALLOWED_SIZES = {COVER_SIZES, AVATAR_SIZES};
+
+    private static final String THUMBNAIL_DIR = ".thumbnails";
+    private static final List<String> SOURCE_TYPES = Arrays.asList("jpg", "jpeg", "png", "gif", "bmp");
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final StorageService storageService;
+
+    @Value("${app.upload.path:/uploads}")
+    private String uploadPath;
+
+    @Value("${app.media.thumbnail.cache-max-bytes:536870912}") // 默认512MB
+    private long cacheMaxBytes;
+
+    @Value("${app.media.thumbnail.workers:2}")
+    private int workers;
+
+    private Path uploadDirectory;
+    private Path thumbnailDirectory;
+
+    /**
+     * 缓存文件及大小，按访问顺序排列，用于 LRU 淘汰
+     */
+    private final LinkedHashMap<Path, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * 正在生成的缩略图，同一规格的并发请求共享结果
+     */
+    private final Map<Path, CompletableFuture<Path>> generating = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        uploadDirectory = Paths.get(uploadPath).toAbsolutePath().normalize();
+        thumbnailDirectory = uploadDirectory.resolve(THUMBNAIL_DIR);
+        try {
+            Files.createDirectories(thumbnailDirectory);
+            loadEntries();
+        } catch (IOException e) {
+            log.error("缩略图缓存目录初始化失败: {}", e.getMessage(), e);
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(200),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // 队列满时放弃预生成，首次访问时再按需生成
+                new ThreadPoolExecutor.DiscardPolicy());
+
+        log.info("缩略图服务初始化完成: 缓存文件数={}, 已用={}KB, 上限={}MB",
+                entries.size(), totalBytes / 1024, cacheMaxBytes / 1024 / 1024);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 将文件访问URL解析为可生成缩略图的原图路径
+     *
+     * @param fileUrl 文件URL（/api/v1/files/...）
+     * @return 原图路径，URL无效、非图片或文件不存在时返回 null（本地未命中时从存储后端拉取）
+     */
+    public Path resolveSource(String fileUrl) {
+        if (fileUrl == null || !fileUrl.startsWith("/api/v1/files/")) {
+            return null;
+        }
+        Path source = uploadDirectory.resolve(fileUrl.substring("/api/v1/files/".length())).normalize();
+        if (!source.startsWith(uploadDirectory) || source.equals(uploadDirectory)
+                || uploadDirectory.relativize(source).getName(0).toString().startsWith(".")) {
+            return null;
+        }
+        if (!SOURCE_TYPES.contains(getExtension(source).toLowerCase())) {
+            return null;
+        }
+        try {
+            return storageService.resolve(uploadDirectory.relativize(source).toString().replace('\\', '/'));
+        } catch (IOException e) {
+            log.warn("拉取缩略图原图失败: {}, error={}", fileUrl, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 获取缩略图，缓存中没有时生成
+     *
+     * @param source 原图路径
+     * @param width 目标宽度，须为封面或头像规格之一
+     * @param height 目标高度，居中裁剪填满
+     * @param format 输出格式 jpg / png，为空时与原图一致（png、gif 输出 png，其余输出 jpg）
+     * @return 缩略图文件路径
+     * @throws IOException 读取原图或写出缩略图失败
+     * @throws IllegalArgumentException 规格或格式不受支持
+     */
+    public Path getThumbnail(Path source, int width, int height, String format) throws IOException {
+        if (!isAllowedSize(width, height)) {
+            throw new IllegalArgumentException("不支持的缩略图尺寸: " + width + "x" + height);
+        }
+        String outputFormat = normalizeFormat(format, source);
+        Path target = targetPath(source, width, height, outputFormat);
+
+        if (Files.isRegularFile(target)) {
+            touch(target);
+            return target;
+        }
+
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> existing = generating.putIfAbsent(target, future);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            // 再次确认，避免与刚结束的生成重复
+            if (!Files.isRegularFile(target)) {
+                generate(source, target, width, height, outputFormat);
+            }
+            future.complete(target);
+            return target;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            generating.remove(target, future);
+        }
+    }
+
+    /**
+     * 异步预生成常用规格的缩略图
+     *
+     * @param source 原图路径
+     * @param sizes 规格列表，每项为 {宽, 高}
+     */
+    public void pregenerate(Path source, int[][] sizes) {
+        for (int[] size : sizes) {
+            executor.execute(() -> {
+                try {
+                    getThumbnail(source, size[0], size[1], null);
+                } catch (Exception e) {
+                    log.warn("预生成缩略图失败: source={}, size={}x{}, error={}",
+                            source, size[0], size[1], e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * 获取缩略图的内容类型
+     */
+    public String getContentType(Path thumbnail) {
+        return "png".equals(getExtension(thumbnail)) ? "image/png" : "image/jpeg";
+    }
+
+    // ==================== 私有方法 ====================
+
+    private Path await(CompletableFuture<Path> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待缩略图生成被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 缩略图路径：由原图相对路径、修改时间和大小计算键值，原图变化后自然失效
+     */
+    private Path targetPath(Path source, int width, int height, String format) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        String identity = uploadDirectory.relativize(source).toString().replace('\\', '/')
+                + "|" + attributes.lastModifiedTime().toMillis() + "|" + attributes.size();
+        String key = sha1Hex(identity);
+        return thumbnailDirectory.resolve(key.substring(0, 2))
+                .resolve(key + "_" + width + "x" + height + "." + format);
+    }
+
+    private void generate(Path source, Path target, int width, int height, String format) throws IOException {
+        long start = System.currentTimeMillis();
+        BufferedImage original = read(source, width, height);
+        if (original == null) {
+            throw new IOException("无法识别的图片格式: " + source.getFileName());
+        }
+
+        BufferedImage thumbnail = resize(original, width, height, "png".equals(format));
+
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            write(thumbnail, format, temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        add(target, Files.size(target));
+        log.debug("生成缩略图: source={}, size={}x{}, 耗时={}ms",
+                source.getFileName(), thumbnail.getWidth(), thumbnail.getHeight(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 读取原图；原图远大于目标尺寸时按整数倍抽样读取，减少解码内存和耗时
+     */
+    private BufferedImage read(Path source, int width, int height) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+
+                // 至少保留目标尺寸的两倍，留给后续平滑缩放
+                int subsampling = Integer.MAX_VALUE;
+                if (width > 0) {
+                    subsampling = Math.min(subsampling, sourceWidth / (width * 2));
+                }
+                if (height > 0) {
+                    subsampling = Math.min(subsampling, sourceHeight / (height * 2));
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 缩放：只缩小不放大；宽高都指定时等比缩放到覆盖目标区域后居中裁剪
+     */
+    private BufferedImage resize(BufferedImage image, int width, int height, boolean alpha) {
+        int sourceWidth = image.getWidth();
+        int sourceHeight = image.getHeight();
+
+        double scale;
+        if (width > 0 && height > 0) {
+            scale = Math.max((double) width / sourceWidth, (double) height / sourceHeight);
+        } else if (width > 0) {
+            scale = (double) width / sourceWidth;
+        } else {
+            scale = (double) height / sourceHeight;
+        }
+        scale = Math.min(scale, 1.0);
+
+        int scaledWidth = Math.max(1, (int) Math.round(sourceWidth * scale));
+        int scaledHeight = Math.max(1, (int) Math.round(sourceHeight * scale));
+
+        // 逐级减半，避免一次大比例缩放产生锯齿
+        BufferedImage current = image;
+        int currentWidth = sourceWidth;
+        int currentHeight = sourceHeight;
+        while (currentWidth / 2 >= scaledWidth && currentHeight / 2 >= scaledHeight) {
+            currentWidth /= 2;
+            currentHeight /= 2;
+            current = draw(current, 0, 0, current.getWidth(), current.getHeight(),
+                    currentWidth, currentHeight, alpha);
+        }
+
+        int outputWidth = width > 0 && height > 0 ? Math.min(width, scaledWidth) : scaledWidth;
+        int outputHeight = width > 0 && height > 0 ? Math.min(height, scaledHeight) : scaledHeight;
+
+        // 最后一步同时完成精确缩放和居中裁剪
+        double ratioX = (double) current.getWidth() / scaledWidth;
+        double ratioY = (double) current.getHeight() / scaledHeight;
+        int cropX = (int) Math.round((scaledWidth - outputWidth) / 2.0 * ratioX);
+        int cropY = (int) Math.round((scaledHeight - outputHeight) / 2.0 * ratioY);
+        int cropWidth = Math.max(1, (int) Math.round(outputWidth * ratioX));
+        int cropHeight = Math.max(1, (int) Math.round(outputHeight * ratioY));
+
+        return draw(current, cropX, cropY, cropX + cropWidth, cropY + cropHeight, outputWidth, outputHeight, alpha);
+    }
+
+    private BufferedImage draw(BufferedImage source, int sx1, int sy1, int sx2, int sy2,
+                               int width, int height, boolean alpha) {
+        BufferedImage output = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = output.createGraphics();
+        try {
+            if (!alpha) {
+                // JPEG 不支持透明，透明区域填充白色
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.drawImage(source, 0, 0, width, height, sx1, sy1, sx2, sy2, null);
+        } finally {
+            graphics.dispose();
+        }
+        return output;
+    }
+
+    private void write(BufferedImage image, String format, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpg".equals(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static boolean isAllowedSize(int width, int height) {
+        for (int[][] sizes : ALLOWED_SIZES) {
+            for (int[] size : sizes) {
+                if (size[0] == width && size[1] == height) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 输出格式仅支持 jpg / png（ImageIO 未内置 WebP 编码器）
+     */
+    private String normalizeFormat(String format, Path source) {
+        if (format == null || format.isEmpty()) {
+            String extension = getExtension(source).toLowerCase();
+            return "png".equals(extension) || "gif".equals(extension) ? "png" : "jpg";
+        }
+        String normalized = format.toLowerCase();
+        if ("jpeg".equals(normalized)) {
+            normalized = "jpg";
+        }
+        if (!"jpg".equals(normalized) && !"png".equals(normalized)) {
+            throw new IllegalArgumentException("不支持的缩略图格式: " + format);
+        }
+        return normalized;
+    }
+
+    // ==================== 缓存淘汰 ====================
+
+    /**
+     * 启动时按修改时间加载已有缓存文件，较早的先淘汰
+     */
+    private void loadEntries() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(thumbnailDirectory)) {
+            paths.filter(Files::isRegularFile).forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(this::lastModified));
+
+        synchronized (entries) {
+            for (Path file : files) {
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                long size = Files.size(file);
+                entries.put(file, size);
+                totalBytes += size;
+            }
+        }
+        evict();
+    }
+
+    private void touch(Path file) {
+        synchronized (entries) {
+            if (entries.get(file) != null) {
+                return;
+            }
+        }
+        // 不在索引中（如其他实例生成），补记
+        try {
+            add(file, Files.size(file));
+        } catch (IOException ignored) {
+            // 文件已被淘汰
+        }
+    }
+
+    private void add(Path file, long size) {
+        synchronized (entries) {
+            Long previous = entries.put(file, size);
+            totalBytes += size - (previous == null ? 0 : previous);
+        }
+        evict();
+    }
+
+    private void evict() {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (entries) {
+            Iterator<Map.Entry<Path, Long>> iterator = entries.entrySet().iterator();
+            while (totalBytes > cacheMaxBytes && iterator.hasNext()) {
+                Map.Entry<Path, Long> eldest = iterator.next();
+                totalBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                iterator.remove();
+            }
+        }
+        for (Path file : evicted) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.debug("删除缩略图缓存失败: {}", file);
+            }
+        }
+        if (!evicted.isEmpty()) {
+            log.debug("淘汰缩略图缓存: {} 个文件", evicted.size());
+        }
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String getExtension(Path file) {
+        String name = file.getFileName().toString();
+        int index = name.lastIndexOf('.');
+        return index < 0 ? "" : name.substring(index + 1);
+    }
+
+    private static String sha1Hex(String value) {
+        try {
+            byte[] bytes = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.smarttrainingsystem.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * 本地文件系统存储后端，对象键即相对上传目录的路径
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+public class LocalStorageBackend implements StorageBackend {
+
+    private final Path root;
+
+    public LocalStorageBackend(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    /**
+     * 对象键对应的本地路径，键越出上传目录时返回 null
+     */
+    public Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        return path.startsWith(root) && !path.equals(root) ? path : null;
+    }
+
+    @Override
+    public void put(String key, InputStream input, long length, String contentType) throws IOException {
+        Path target = require(key);
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".uploading");
+        try {
+            Files.copy(input, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return Files.newInputStream(require(key));
+    }
+
+    @Override
+    public InputStream getRange(String key, long start, long length) throws IOException {
+        FileChannel channel = FileChannel.open(require(key), StandardOpenOption.READ);
+        channel.position(start);
+        return new BoundedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        return Files.deleteIfExists(require(key));
+    }
+
+    @Override
+    public ObjectStat stat(String key) throws IOException {
+        Path path = require(key);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new ObjectStat(attributes.size(), attributes.lastModifiedTime().toMillis(), null);
+    }
+
+    private Path require(String key) throws NoSuchFileException {
+        Path path = resolve(key);
+        if (path == null) {
+            throw new NoSuchFileException(key);
+        }
+        return path;
+    }
+
+    /**
+     * 限制读取长度的输入流
+     */
+    static final class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            this.in = in;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.smarttrainingsystem.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 媒体传输调度器
+ * 本地文件通过 Servlet 非阻塞输出（WriteListener）传输，限速等待由定时器恢复，不占用任何线程；
+ * 需要阻塞读取的对象存储转发在独立的有界线程池中执行，不占用处理 JSON 接口的 Tomcat 请求线程；
+ * 按令牌桶限制全局与单个用户的输出带宽，并限制单个用户的并发流数量，提供实时流量统计
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Service
+public class MediaIoScheduler {
+
+    /**
+     * 空闲客户端状态保留时间，期间再次访问沿用原令牌桶
+     */
+    private static final long CLIENT_IDLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * 统计接口返回的流数量上限
+     */
+    private static final int METRICS_STREAM_LIMIT = 50;
+
+    /**
+     * 全局带宽（字节/秒），0 表示不限制
+     */
+    @Value("${app.media.throttle.global-bytes-per-second:0}")
+    private long globalBytesPerSecond;
+
+    /**
+     * 单个用户带宽（字节/秒），0 表示不限制
+     */
+    @Value("${app.media.throttle.user-bytes-per-second:0}")
+    private long userBytesPerSecond;
+
+    /**
+     * 令牌桶容量，允许短时突发的字节数
+     */
+    @Value("${app.media.throttle.burst-bytes:4194304}")
+    private long burstBytes;
+
+    /**
+     * 单个登录用户同时进行的媒体流上限
+     */
+    @Value("${app.media.throttle.max-streams-per-user:4}")
+    private int maxStreamsPerUser;
+
+    /**
+     * 单个匿名客户端地址同时进行的媒体流上限，0 表示不限制（同一出口地址后可能有许多用户）
+     */
+    @Value("${app.media.throttle.max-streams-per-ip:0}")
+    private int maxStreamsPerIp;
+
+    /**
+     * 同时进行的媒体传输上限（非阻塞传输不占用线程，可远大于线程数）
+     */
+    @Value("${app.media.throttle.max-streams:5000}")
+    private int maxStreams;
+
+    /**
+     * 阻塞传输（对象存储转发）线程池大小，即同时进行的阻塞传输上限
+     */
+    @Value("${app.media.throttle.blocking-threads:64}")
+    private int blockingThreads;
+
+    private TokenBucket globalBucket;
+
+    private Semaphore slots;
+
+    private Semaphore blockingSlots;
+
+    private ThreadPoolExecutor executor;
+
+    private ScheduledThreadPoolExecutor timer;
+
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+
+    private final Set<Stream> streams = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong rejectedStreams = new AtomicLong();
+    private long lastTotalBytes;
+    private long lastSampleNanos;
+    private volatile long bytesPerSecond;
+
+    @PostConstruct
+    public void init() {
+        globalBucket = new TokenBucket(globalBytesPerSecond, burstBytes);
+        slots = new Semaphore(maxStreams);
+        blockingSlots = new Semaphore(blockingThreads);
+
+        AtomicInteger counter = new AtomicInteger();
+        // 并发量由 blockingSlots 控制，队列只承接流关闭与线程归还之间的短暂交错
+        executor = new ThreadPoolExecutor(blockingThreads, blockingThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "media-io-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+
+        timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "media-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+
+        lastSampleNanos = System.nanoTime();
+        log.info("媒体传输调度器初始化完成: 全局带宽={}B/s, 单用户带宽={}B/s, 单用户并发={}, 单地址并发={}, 最大并发={}, 阻塞线程={}",
+                globalBytesPerSecond, userBytesPerSecond, maxStreamsPerUser, maxStreamsPerIp, maxStreams, blockingThreads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    /**
+     * 登记一个媒体流
+     *
+     * @param clientKey 客户端标识（用户ID或客户端地址）
+     * @param anonymous 是否为未登录客户端（按地址标识，使用单地址并发上限）
+     * @param resource 传输的资源，仅用于统计展示
+     * @param blocking 是否需要占用阻塞传输线程（通过 {@link #execute} 执行）
+     * @return 媒体流，超过单客户端并发上限或全局并发上限时返回 null
+     */
+    public Stream open(String clientKey, boolean anonymous, String resource, boolean blocking) {
+        int limit = anonymous ? maxStreamsPerIp : maxStreamsPerUser;
+        AtomicBoolean admitted = new AtomicBoolean();
+        Client client = clients.compute(clientKey, (key, existing) -> {
+            Client current = existing != null ? existing : new Client(new TokenBucket(userBytesPerSecond, burstBytes));
+            if (limit <= 0 || current.active < limit) {
+                current.active++;
+                admitted.set(true);
+            }
+            return current;
+        });
+
+        if (admitted.get() && slots.tryAcquire()) {
+            if (!blocking || blockingSlots.tryAcquire()) {
+                Stream stream = new Stream(clientKey, client, resource, blocking);
+                streams.add(stream);
+                return stream;
+            }
+            slots.release();
+        }
+
+        if (admitted.get()) {
+            release(clientKey);
+        }
+        rejectedStreams.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 全局并发是否还有余量（用于区分拒绝原因）
+     *
+     * @param blocking 是否按阻塞传输判断
+     */
+    public boolean hasCapacity(boolean blocking) {
+        return slots.availablePermits() > 0 && (!blocking || blockingSlots.availablePermits() > 0);
+    }
+
+    /**
+     * 在阻塞传输线程池中执行任务，调用方须先通过 {@link #open} 取得阻塞媒体流
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * 延迟执行任务，用于非阻塞传输在限速等待结束后恢复输出
+     */
+    public void schedule(Runnable task, long delayNanos) {
+        timer.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 每秒统计一次全局与各流的速率，并清理空闲客户端
+     */
+    @Scheduled(fixedRate = 1000)
+    public void sample() {
+        long now = System.nanoTime();
+        long elapsed = Math.max(1, now - lastSampleNanos);
+        long total = totalBytes.get();
+        bytesPerSecond = (total - lastTotalBytes) * 1_000_000_000L / elapsed;
+        lastTotalBytes = total;
+        lastSampleNanos = now;
+
+        for (Stream stream : streams) {
+            stream.sample(elapsed);
+        }
+        for (String key : clients.keySet()) {
+            clients.computeIfPresent(key, (k, client) ->
+                    client.active == 0 && now - client.lastActive > CLIENT_IDLE_NANOS ? null : client);
+        }
+    }
+
+    /**
+     * 实时统计
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("activeStreams", streams.size());
+        metrics.put("maxStreams", maxStreams);
+        metrics.put("blockingStreams", blockingThreads - blockingSlots.availablePermits());
+        metrics.put("blockingThreads", blockingThreads);
+        metrics.put("activeClients", clients.values().stream().filter(client -> client.active > 0).count());
+        metrics.put("bytesPerSecond", bytesPerSecond);
+        metrics.put("totalBytes", totalBytes.get());
+        metrics.put("rejectedStreams", rejectedStreams.get());
+        metrics.put("globalBytesPerSecondLimit", globalBytesPerSecond);
+        metrics.put("userBytesPerSecondLimit", userBytesPerSecond);
+        metrics.put("maxStreamsPerUser", maxStreamsPerUser);
+        metrics.put("maxStreamsPerIp", maxStreamsPerIp);
+
+        long now = System.nanoTime();
+        List<Map<String, Object>> top = new ArrayList<>(streams).stream()
+                .sorted(Comparator.comparingLong((Stream stream) -> stream.bytesPerSecond).reversed())
+                .limit(METRICS_STREAM_LIMIT)
+                .map(stream -> {
+                    Map<String, Object> item = new HashMap<>();
+                    item.put("client", stream.clientKey);
+                    item.put("resource", stream.resource);
+                    item.put("bytes", stream.bytes.get());
+                    item.put("bytesPerSecond", stream.bytesPerSecond);
+                    item.put("durationSeconds", TimeUnit.NANOSECONDS.toSeconds(now - stream.startNanos));
+                    return item;
+                })
+                .collect(Collectors.toList());
+        metrics.put("streams", top);
+        return metrics;
+    }
+
+    // ==================== 私有方法 ====================
+
+    private void release(String clientKey) {
+        clients.computeIfPresent(clientKey, (key, client) -> {
+            client.active--;
+            client.lastActive = System.nanoTime();
+            return client;
+        });
+    }
+
+    /**
+     * 客户端状态：令牌桶与当前流数量（在 clients.compute 中修改）
+     */
+    private static final class Client {
+        private final TokenBucket bucket;
+        private int active;
+        private long lastActive = System.nanoTime();
+
+        Client(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * 媒体流：传输前按字节数申请令牌，结束后必须关闭
+     */
+    public final class Stream implements Closeable {
+        private final String clientKey;
+        private final Client client;
+        private final String resource;
+        private final boolean blocking;
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private long lastBytes;
+        private volatile long bytesPerSecond;
+
+        Stream(String clientKey, Client client, String resource, boolean blocking) {
+            this.clientKey = clientKey;
+            this.client = client;
+            this.resource = resource;
+            this.blocking = blocking;
+        }
+
+        /**
+         * 申请发送指定字节数，超出用户或全局带宽时阻塞等待
+         *
+         * @param count 即将发送的字节数
+         * @throws InterruptedIOException 等待被中断
+         */
+        public void acquire(int count) throws InterruptedIOException {
+            long waitNanos = reserve(count);
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("媒体传输被中断");
+                }
+            }
+        }
+
+        /**
+         * 预约发送指定字节数并计入统计
+         *
+         * @param count 即将发送的字节数
+         * @return 发送前需要等待的纳秒数
+         */
+        public long reserve(int count) {
+            long waitNanos = Math.max(client.bucket.reserve(count), globalBucket.reserve(count));
+            bytes.addAndGet(count);
+            totalBytes.addAndGet(count);
+            return waitNanos;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                streams.remove(this);
+                if (blocking) {
+                    blockingSlots.release();
+                }
+                slots.release();
+                release(clientKey);
+            }
+        }
+
+        private void sample(long elapsedNanos) {
+            long current = bytes.get();
+            bytesPerSecond = (current - lastBytes) * 1_000_000_000L / elapsedNanos;
+            lastBytes = current;
+        }
+    }
+
+    /**
+     * 令牌桶：按固定速率补充令牌，允许透支，透支部分折算为调用方需要等待的时间，
+     * 并发请求按到达顺序依次排队
+     */
+    private static final class TokenBucket {
+        private final long rate;
+        private final long capacity;
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        TokenBucket(long rate, long capacity) {
+            this.rate = rate;
+            this.capacity = Math.max(capacity, 1);
+            this.tokens = this.capacity;
+        }
+
+        synchronized long reserve(long count) {
+            if (rate <= 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * (double) rate / 1_000_000_000L);
+            lastRefillNanos = now;
+            tokens -= count;
+            return tokens >= 0 ? 0 : (long) (-tokens * 1_000_000_000L / rate);
+        }
+    }
+}
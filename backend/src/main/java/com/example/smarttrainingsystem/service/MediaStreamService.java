@@ -0,0 +1,878 @@
+package com.example.smarttrainingsystem.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * 媒体流输出服务
+ * 按 RFC 7233 处理 Range / If-Range 请求，支持单段与多段(multipart/byteranges)响应，
+ * 文件内容通过 Tomcat sendfile 或 FileChannel.transferTo 零拷贝输出，不经过堆内缓冲；
+ * 按 RFC 7232 处理 If-None-Match / If-Modified-Since 条件请求，未变化时返回 304；
+ * 本地未缓存的大文件可直接按区间从存储后端转发；文本类文件按 Accept-Encoding 输出预压缩副本；
+ * 视频、文档等大文件可经由 {@link MediaIoScheduler} 限速，并以 Servlet 异步非阻塞方式输出
+ *
+ * @author 开发者
+ * @version 1.0
+ * @since 2025-08-05
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MediaStreamService {
+
+    /**
+     * 上传文件的存储名（时间戳_随机串.扩展名）写入后内容不再变化，可长期缓存
+     */
+    private static final Pattern IMMUTABLE_NAME_PATTERN = Pattern.compile("^\\d{14}_[0-9a-f]{8}\\.[A-Za-z0-9]+$");
+
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String DEFAULT_CACHE_CONTROL = "public, max-age=3600";
+
+    /**
+     * Tomcat sendfile 相关请求属性
+     */
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * 小于该大小的响应直接走 transferTo，sendfile 的调度开销不划算
+     */
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    /**
+     * 单个请求允许的最大区间数，超过则忽略 Range 返回完整内容
+     */
+    private static final int MAX_RANGES = 16;
+
+    /**
+     * 限速输出时每次申请令牌并写出的块大小
+     */
+    private static final int THROTTLE_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * 媒体流被拒绝时建议客户端的重试间隔（秒）
+     */
+    private static final int RETRY_AFTER_SECONDS = 2;
+
+    private final FileETagCache fileETagCache;
+
+    private final StorageService storageService;
+
+    private final PrecompressedVariantService precompressedVariantService;
+
+    private final MediaIoScheduler mediaIoScheduler;
+
+    /**
+     * 受信任的反向代理地址，仅来自这些地址的请求才采用 X-Forwarded-For 中的客户端地址
+     */
+    @Value("${app.media.throttle.trusted-proxies:}")
+    private Set<String> trustedProxies;
+
+    /**
+     * 以支持范围请求的方式输出文件
+     *
+     * @param filePath 文件路径（调用方已确认存在且可读）
+     * @param contentType 内容类型
+     * @param disposition Content-Disposition 头的值
+     * @param request HTTP请求
+     * @param response HTTP响应
+     * @throws IOException 读取文件或写出响应失败
+     */
+    public void serveFile(Path filePath, String contentType, String disposition,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Transfer transfer = prepareFile(filePath, contentType, disposition, request, response);
+        if (transfer != null) {
+            write(transfer, request, response);
+        }
+    }
+
+    /**
+     * 从存储后端按区间转发对象，用于本地未缓存的大文件（如视频拖动播放），不在本地落盘
+     * 只支持单区间，多区间请求按完整内容返回
+     *
+     * @param key 对象键
+     * @param stat 对象元数据
+     * @param contentType 内容类型
+     * @param disposition Content-Disposition 头的值
+     * @param request HTTP请求
+     * @param response HTTP响应
+     * @throws IOException 读取对象或写出响应失败
+     */
+    public void serveObject(String key, StorageBackend.ObjectStat stat, String contentType, String disposition,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Transfer transfer = prepareObject(key, stat, contentType, disposition, request, response);
+        if (transfer != null) {
+            write(transfer, request, response);
+        }
+    }
+
+    /**
+     * 以异步非阻塞、限速的方式输出文件，用于视频、文档等可能长时间传输的文件
+     * 响应头在请求线程中写出后请求线程立即返回；响应体由 WriteListener 在连接可写时逐块读取文件输出，
+     * 等待客户端或等待令牌期间不占用任何线程，大量慢速客户端不会耗尽线程。
+     * 超过单用户并发流上限返回 429，全局并发已满返回 503
+     *
+     * @see #serveFile
+     */
+    public void serveFileThrottled(Path filePath, String contentType, String disposition,
+                                   HttpServletRequest request, HttpServletResponse response) throws IOException {
+        dispatch(filePath.getFileName().toString(), false, request, response,
+                () -> prepareFile(filePath, contentType, disposition, request, response));
+    }
+
+    /**
+     * 以限速方式从存储后端转发对象
+     * 对象存储只能阻塞读取，响应体在媒体阻塞线程池中输出，同样不占用请求线程
+     *
+     * @see #serveObject
+     * @see #serveFileThrottled
+     */
+    public void serveObjectThrottled(String key, StorageBackend.ObjectStat stat, String contentType, String disposition,
+                                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+        dispatch(key, true, request, response,
+                () -> prepareObject(key, stat, contentType, disposition, request, response));
+    }
+
+    /**
+     * 按文件名选择缓存策略：上传生成的存储文件名内容不可变，其余文件缓存一小时后重新校验
+     *
+     * @param filename 文件名
+     * @return Cache-Control 头的值
+     */
+    public String cacheControl(String filename) {
+        return filename != null && IMMUTABLE_NAME_PATTERN.matcher(filename).matches()
+                ? IMMUTABLE_CACHE_CONTROL
+                : DEFAULT_CACHE_CONTROL;
+    }
+
+    /**
+     * 处理条件请求与 Range 头并写出响应头
+     *
+     * @return 需要输出的响应体，304、416 及 HEAD 请求返回 null
+     */
+    private Transfer prepareFile(Path filePath, String contentType, String disposition,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 文本类文件存在预压缩副本时直接输出副本，副本有独立的 ETag，区间按压缩后的字节计算
+        if (precompressedVariantService.isCompressible(filePath)) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            PrecompressedVariantService.Variant variant =
+                    precompressedVariantService.select(filePath, request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+            if (variant != null) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, variant.getEncoding());
+                filePath = variant.getPath();
+            }
+        }
+
+        FileETagCache.Validators validators = fileETagCache.get(filePath);
+        long length = validators.getSize();
+        long lastModified = validators.getLastModified();
+        String etag = validators.getEtag();
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return null;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition);
+
+        List<ByteRange> ranges = null;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && ifRangeMatches(request, etag, lastModified)) {
+            ranges = parseRanges(rangeHeader, length);
+        }
+
+        boolean headOnly = "HEAD".equalsIgnoreCase(request.getMethod());
+
+        // 区间全部不可满足
+        if (ranges != null && ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setContentLength(0);
+            return null;
+        }
+
+        // 无 Range 或 Range 被忽略：返回完整内容
+        if (ranges == null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            return headOnly || length == 0
+                    ? null
+                    : new Transfer(filePath, null, Collections.singletonList(new ByteRange(0, length - 1)), null, null);
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+        // 单区间
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(length));
+            response.setContentLengthLong(range.length());
+            return headOnly ? null : new Transfer(filePath, null, ranges, null, null);
+        }
+
+        // 多区间：multipart/byteranges
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.toContentRange(length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + range.length();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        return headOnly ? null : new Transfer(filePath, null, ranges, partHeaders, closing);
+    }
+
+    /**
+     * 处理对象的条件请求与 Range 头并写出响应头
+     *
+     * @return 需要输出的响应体，304、416 及 HEAD 请求返回 null
+     */
+    private Transfer prepareObject(String key, StorageBackend.ObjectStat stat, String contentType, String disposition,
+                                   HttpServletRequest request, HttpServletResponse response) {
+        long length = stat.getSize();
+        long lastModified = stat.getLastModified();
+        String etag = stat.getEtag() != null
+                ? stat.getEtag()
+                : "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return null;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition);
+
+        List<ByteRange> ranges = null;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && ifRangeMatches(request, etag, lastModified)) {
+            ranges = parseRanges(rangeHeader, length);
+        }
+
+        if (ranges != null && ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setContentLength(0);
+            return null;
+        }
+
+        ByteRange region = new ByteRange(0, length - 1);
+        if (ranges != null && ranges.size() == 1) {
+            region = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, region.toContentRange(length));
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+        response.setContentType(contentType);
+        response.setContentLengthLong(region.length());
+
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || region.length() == 0) {
+            return null;
+        }
+        return new Transfer(null, key, Collections.singletonList(region), null, null);
+    }
+
+    /**
+     * 在当前线程输出响应体，本地文件的单区间可交给 sendfile
+     */
+    private void write(Transfer transfer, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (transfer.file == null) {
+            ByteRange region = transfer.regions.get(0);
+            try (InputStream in = storageService.openRange(transfer.objectKey, region.start, region.length())) {
+                StreamUtils.copy(in, response.getOutputStream());
+            }
+            return;
+        }
+
+        if (transfer.partHeaders == null) {
+            ByteRange region = transfer.regions.get(0);
+            writeRegion(transfer.file, region.start, region.length(), request, response);
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(transfer.file, StandardOpenOption.READ)) {
+            for (int i = 0; i < transfer.regions.size(); i++) {
+                ByteRange range = transfer.regions.get(i);
+                writeFully(target, transfer.partHeaders.get(i));
+                transfer(channel, range.start, range.length(), target);
+            }
+            writeFully(target, transfer.closing);
+        }
+        out.flush();
+    }
+
+    /**
+     * 登记媒体流并写出响应头，响应体以异步方式输出
+     * 响应在请求线程中提交（flushBuffer），安全过滤器等在提交时写入的响应头不会与异步输出并发修改响应
+     *
+     * @param blocking 响应体是否需要阻塞读取（对象存储），是则交给阻塞线程池，否则使用非阻塞输出
+     */
+    private void dispatch(String resource, boolean blocking, HttpServletRequest request, HttpServletResponse response,
+                          Preparer preparer) throws IOException {
+        Object userId = request.getAttribute("userId");
+        MediaIoScheduler.Stream stream = userId != null
+                ? mediaIoScheduler.open("user:" + userId, false, resource, blocking)
+                : mediaIoScheduler.open("ip:" + clientAddress(request), true, resource, blocking);
+        if (stream == null) {
+            response.setStatus(mediaIoScheduler.hasCapacity(blocking)
+                    ? HttpStatus.TOO_MANY_REQUESTS.value()
+                    : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS));
+            return;
+        }
+
+        boolean dispatched = false;
+        AsyncContext asyncContext = null;
+        try {
+            Transfer transfer = preparer.prepare();
+            if (transfer == null) {
+                return;
+            }
+            response.flushBuffer();
+
+            asyncContext = request.startAsync();
+            asyncContext.setTimeout(0);
+            asyncContext.addListener(new StreamReleaser(stream));
+
+            if (blocking) {
+                AsyncContext context = asyncContext;
+                mediaIoScheduler.execute(() -> {
+                    try {
+                        writeObjectThrottled(transfer, response, stream);
+                    } catch (IOException e) {
+                        // 播放器拖动进度时会主动断开上一个请求，属于正常现象
+                        log.debug("媒体流输出中断: {}, error={}", resource, e.getMessage());
+                    } catch (RuntimeException e) {
+                        log.warn("媒体流输出失败: {}", resource, e);
+                    } finally {
+                        stream.close();
+                        context.complete();
+                    }
+                });
+            } else {
+                ServletOutputStream out = response.getOutputStream();
+                FileChannel channel = FileChannel.open(transfer.file, StandardOpenOption.READ);
+                try {
+                    out.setWriteListener(new NonBlockingWriter(
+                            transfer, channel, asyncContext, out, stream, mediaIoScheduler, resource));
+                } catch (RuntimeException e) {
+                    channel.close();
+                    throw e;
+                }
+            }
+            dispatched = true;
+        } finally {
+            if (!dispatched) {
+                stream.close();
+                if (asyncContext != null) {
+                    asyncContext.complete();
+                }
+            }
+        }
+    }
+
+    /**
+     * 按令牌桶限速转发对象，在阻塞线程池中执行
+     */
+    private void writeObjectThrottled(Transfer transfer, HttpServletResponse response,
+                                      MediaIoScheduler.Stream stream) throws IOException {
+        ServletOutputStream out = response.getOutputStream();
+        byte[] buffer = new byte[THROTTLE_CHUNK_SIZE];
+        ByteRange region = transfer.regions.get(0);
+        try (InputStream in = storageService.openRange(transfer.objectKey, region.start, region.length())) {
+            long remaining = region.length();
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new EOFException("对象在传输过程中被截断");
+                }
+                stream.acquire(read);
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * 未登录客户端的限流地址：直连地址为受信任代理时，从 X-Forwarded-For 右侧向左取第一个非代理地址；
+     * 客户端自行添加的 X-Forwarded-For 项位于左侧，无法借此换取新的令牌桶
+     */
+    private String clientAddress(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (forwarded == null || !trustedProxies.contains(remoteAddr)) {
+            return remoteAddr;
+        }
+        String[] hops = forwarded.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!hop.isEmpty() && !trustedProxies.contains(hop)) {
+                return hop;
+            }
+        }
+        return remoteAddr;
+    }
+
+    /**
+     * 输出文件的一段连续区域，Tomcat 支持时交给 sendfile 处理
+     */
+    private void writeRegion(Path filePath, long start, long count,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (count >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, filePath.toRealPath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + count);
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            transfer(channel, start, count, Channels.newChannel(out));
+        }
+        out.flush();
+    }
+
+    /**
+     * 通过 transferTo 将文件区域写入目标通道
+     */
+    private void transfer(FileChannel channel, long position, long count, WritableByteChannel target) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long written = channel.transferTo(position, end - position, target);
+            if (written <= 0) {
+                throw new EOFException("文件在传输过程中被截断");
+            }
+            position += written;
+        }
+    }
+
+    private void writeFully(WritableByteChannel target, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    /**
+     * 判断条件请求是否可返回 304：有 If-None-Match 时按弱比较匹配实体标签，否则比较 If-Modified-Since
+     */
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String method = request.getMethod();
+        if (!"GET".equalsIgnoreCase(method) && !"HEAD".equalsIgnoreCase(method)) {
+            return false;
+        }
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            String opaque = stripWeak(etag);
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if ("*".equals(tag) || stripWeak(tag).equals(opaque)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        try {
+            long since = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            return since != -1 && lastModified / 1000 <= since / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * 判断 If-Range 条件是否成立（未携带时视为成立）
+     */
+    private boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+
+        // 实体标签只能做强比较，弱标签一律不匹配
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date != -1 && date / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 解析 Range 头
+     * 区间说明全部为空（如 "bytes=" 或 "bytes=,"）或任一区间说明语法错误时整个头按语法错误忽略；
+     * 语法正确但没有任何区间落在文件内时才视为不可满足
+     *
+     * @param rangeHeader Range 头的值
+     * @param length 文件总长度
+     * @return null 表示应忽略该头（语法错误或区间过多），空列表表示区间不可满足
+     */
+    static List<ByteRange> parseRanges(String rangeHeader, long length) {
+        String value = rangeHeader.trim();
+        if (!value.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+
+        String[] specs = value.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        int validSpecs = 0;
+        for (String raw : specs) {
+            String spec = raw.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+
+            if (dash == 0) {
+                // 后缀区间：最后 N 个字节
+                long suffix = parseBytePosition(spec.substring(1));
+                if (suffix < 0) {
+                    return null;
+                }
+                validSpecs++;
+                if (suffix > 0 && length > 0) {
+                    ranges.add(new ByteRange(Math.max(0, length - suffix), length - 1));
+                }
+                continue;
+            }
+
+            boolean openEnded = dash == spec.length() - 1;
+            long first = parseBytePosition(spec.substring(0, dash));
+            long last = openEnded ? length - 1 : parseBytePosition(spec.substring(dash + 1));
+            if (first < 0 || (!openEnded && (last < 0 || last < first))) {
+                return null;
+            }
+            validSpecs++;
+            if (first < length) {
+                ranges.add(new ByteRange(first, Math.min(last, length - 1)));
+            }
+        }
+
+        if (validSpecs == 0) {
+            return null;
+        }
+        return coalesce(ranges);
+    }
+
+    /**
+     * 解析区间中的字节位置，只接受十进制数字
+     *
+     * @return 字节位置，非数字或超出范围时返回 -1
+     */
+    private static long parseBytePosition(String text) {
+        String digits = text.trim();
+        if (digits.isEmpty()) {
+            return -1;
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 合并重叠或相邻的区间
+     */
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        Collections.sort(sorted, Comparator.comparingLong(r -> r.start));
+
+        List<ByteRange> merged = new ArrayList<>(sorted.size());
+        ByteRange current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            ByteRange next = sorted.get(i);
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    /**
+     * 写出响应头并返回待输出的响应体
+     */
+    @FunctionalInterface
+    private interface Preparer {
+        Transfer prepare() throws IOException;
+    }
+
+    /**
+     * 待输出的响应体：本地文件或对象的若干区间，多区间时附带各分段头与结束边界
+     */
+    private static final class Transfer {
+        final Path file;
+        final String objectKey;
+        final List<ByteRange> regions;
+        final List<byte[]> partHeaders;
+        final byte[] closing;
+
+        Transfer(Path file, String objectKey, List<ByteRange> regions, List<byte[]> partHeaders, byte[] closing) {
+            this.file = file;
+            this.objectKey = objectKey;
+            this.regions = regions;
+            this.partHeaders = partHeaders;
+            this.closing = closing;
+        }
+    }
+
+    /**
+     * 非阻塞输出：连接可写时逐块读取文件并写出，直到 isReady() 返回 false 后交还线程，由容器在可写时再次回调；
+     * 令牌不足时登记定时器，到期后经 AsyncContext.start 回到容器线程继续输出。
+     * 同一时刻只有一处在执行 onWritePossible（容器回调仅在 isReady() 返回 false 后发生，定时恢复仅在其返回 true 后登记）
+     */
+    private static final class NonBlockingWriter implements WriteListener {
+        private final Transfer transfer;
+        private final FileChannel channel;
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream out;
+        private final MediaIoScheduler.Stream stream;
+        private final MediaIoScheduler scheduler;
+        private final String resource;
+        private final ByteBuffer buffer = ByteBuffer.allocate(THROTTLE_CHUNK_SIZE);
+
+        /**
+         * 已读取、已申请令牌但尚未写出的数据
+         */
+        private ByteBuffer pending;
+        private int regionIndex;
+        private boolean partHeaderSent;
+        private boolean closingSent;
+        private long position;
+        private boolean finished;
+
+        NonBlockingWriter(Transfer transfer, FileChannel channel, AsyncContext asyncContext, ServletOutputStream out,
+                          MediaIoScheduler.Stream stream, MediaIoScheduler scheduler, String resource) {
+            this.transfer = transfer;
+            this.channel = channel;
+            this.asyncContext = asyncContext;
+            this.out = out;
+            this.stream = stream;
+            this.scheduler = scheduler;
+            this.resource = resource;
+            this.position = transfer.regions.get(0).start;
+        }
+
+        @Override
+        public void onWritePossible() throws IOException {
+            while (!finished && out.isReady()) {
+                if (pending == null || !pending.hasRemaining()) {
+                    pending = nextChunk();
+                    if (pending == null) {
+                        finish();
+                        return;
+                    }
+                    long waitNanos = stream.reserve(pending.remaining());
+                    if (waitNanos > 0) {
+                        scheduler.schedule(() -> asyncContext.start(this::resume), waitNanos);
+                        return;
+                    }
+                }
+                out.write(pending.array(), pending.arrayOffset() + pending.position(), pending.remaining());
+                pending.position(pending.limit());
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // 播放器拖动进度时会主动断开上一个请求，属于正常现象
+            log.debug("媒体流输出中断: {}, error={}", resource, throwable.getMessage());
+            finish();
+        }
+
+        private void resume() {
+            try {
+                onWritePossible();
+            } catch (IOException | RuntimeException e) {
+                onError(e);
+            }
+        }
+
+        /**
+         * 按顺序取出下一块待写数据：分段头、文件内容、结束边界
+         *
+         * @return 全部输出完毕时返回 null
+         */
+        private ByteBuffer nextChunk() throws IOException {
+            while (regionIndex < transfer.regions.size()) {
+                if (transfer.partHeaders != null && !partHeaderSent) {
+                    partHeaderSent = true;
+                    return ByteBuffer.wrap(transfer.partHeaders.get(regionIndex));
+                }
+                long end = transfer.regions.get(regionIndex).end + 1;
+                if (position < end) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    int read = channel.read(buffer, position);
+                    if (read <= 0) {
+                        throw new EOFException("文件在传输过程中被截断");
+                    }
+                    position += read;
+                    buffer.flip();
+                    return buffer;
+                }
+                regionIndex++;
+                partHeaderSent = false;
+                if (regionIndex < transfer.regions.size()) {
+                    position = transfer.regions.get(regionIndex).start;
+                }
+            }
+            if (transfer.closing != null && !closingSent) {
+                closingSent = true;
+                return ByteBuffer.wrap(transfer.closing);
+            }
+            return null;
+        }
+
+        private void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("关闭文件失败: {}", resource);
+            }
+            stream.close();
+            asyncContext.complete();
+        }
+    }
+
+    /**
+     * 异步请求结束（含超时、连接异常）时兜底释放媒体流
+     */
+    private static final class StreamReleaser implements AsyncListener {
+        private final MediaIoScheduler.Stream stream;
+
+        StreamReleaser(MediaIoScheduler.Stream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            stream.close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            stream.close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            stream.close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // 无需处理
+        }
+    }
+
+    /**
+     * 字节区间（闭区间）
+     */
+    static final class ByteRange {
+        final long start;
+        final long end;
+
+        ByteRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        long length() {
+            return end - start + 1;
+        }
+
+        String toContentRange(long total) {
+            return "bytes " + start + "-" + end + "/" + total;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.example.smarttrainingsystem.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 预压缩文件服务
+ * 文本类上传文件（txt、csv、svg、json）在写入后生成 gzip（以及可选的 brotli）压缩副本，
+ * 下载时按 Accept-Encoding 直接输出压缩副本，每次请求不再消耗压缩 CPU。
+ * 压缩副本保存在 {upload}/.compressed 下与原文件相同的相对路径，属于本节点派生数据，
+ * 缺失时（历史文件、其他节点上传）在首次访问后补生成
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Service
+public class PrecompressedVariantService {
+
+    public static final String GZIP = "gzip";
+    public static final String BROTLI = "br";
+
+    private static final String COMPRESSED_DIR = ".compressed";
+    private static final List<String> COMPRESSIBLE_TYPES = Arrays.asList("txt", "csv", "svg", "json");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Value("${app.upload.path:/uploads}")
+    private String uploadPath;
+
+    @Value("${app.media.precompress.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 小于该大小的文件压缩收益不明显，直接输出原文件
+     */
+    @Value("${app.media.precompress.min-size:1024}")
+    private long minSize;
+
+    @Value("${app.media.precompress.max-size:67108864}") // 默认64MB
+    private long maxSize;
+
+    @Value("${app.media.precompress.brotli-path:brotli}")
+    private String brotliPath;
+
+    private Path uploadDirectory;
+    private Path compressedDirectory;
+    private boolean brotliEnabled;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 正在生成压缩副本的文件，避免重复提交
+     */
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        uploadDirectory = Paths.get(uploadPath).toAbsolutePath().normalize();
+        compressedDirectory = uploadDirectory.resolve(COMPRESSED_DIR);
+        if (!enabled) {
+            return;
+        }
+
+        brotliEnabled = brotliAvailable();
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(200),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "precompress-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+        log.info("预压缩服务初始化完成: 类型={}, brotli={}", COMPRESSIBLE_TYPES, brotliEnabled);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 文件类型是否生成压缩副本
+     */
+    public boolean isCompressible(Path file) {
+        return enabled && COMPRESSIBLE_TYPES.contains(getExtension(file.getFileName().toString()));
+    }
+
+    /**
+     * 后台生成压缩副本
+     *
+     * @param source 已写入的文件
+     */
+    public void generate(Path source) {
+        Path normalized = source.toAbsolutePath().normalize();
+        if (!isCompressible(normalized) || variantBase(normalized) == null || !pending.add(normalized)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                compress(normalized);
+            } catch (IOException e) {
+                log.warn("生成压缩副本失败: {}, error={}", normalized, e.getMessage());
+            } finally {
+                pending.remove(normalized);
+            }
+        });
+    }
+
+    /**
+     * 按 Accept-Encoding 选择可直接输出的压缩副本，优先 brotli
+     *
+     * @param source 原文件
+     * @param acceptEncoding 请求的 Accept-Encoding 头
+     * @return 压缩副本，客户端不接受压缩或副本尚未生成时返回 null
+     */
+    public Variant select(Path source, String acceptEncoding) {
+        if (acceptEncoding == null || !isCompressible(source)) {
+            return null;
+        }
+        Path normalized = source.toAbsolutePath().normalize();
+        Path base = variantBase(normalized);
+        if (base == null) {
+            return null;
+        }
+
+        try {
+            long size = Files.size(normalized);
+            if (size < minSize || size > maxSize) {
+                return null;
+            }
+            long lastModified = Files.getLastModifiedTime(normalized).toMillis();
+
+            if (accepts(acceptEncoding, BROTLI)) {
+                Path brotli = fresh(variantPath(base, BROTLI), lastModified);
+                if (brotli != null) {
+                    return new Variant(brotli, BROTLI);
+                }
+            }
+            if (accepts(acceptEncoding, GZIP)) {
+                Path gzip = fresh(variantPath(base, GZIP), lastModified);
+                if (gzip != null) {
+                    return new Variant(gzip, GZIP);
+                }
+                // 副本缺失或已过期：本次输出原文件，后台补生成
+                generate(normalized);
+            }
+        } catch (IOException e) {
+            log.debug("读取压缩副本失败: {}, error={}", normalized, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 删除文件的压缩副本
+     */
+    public void delete(Path source) {
+        Path base = variantBase(source.toAbsolutePath().normalize());
+        if (base == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(variantPath(base, GZIP));
+            Files.deleteIfExists(variantPath(base, BROTLI));
+        } catch (IOException e) {
+            log.warn("删除压缩副本失败: {}, error={}", base, e.getMessage());
+        }
+    }
+
+    // ==================== 私有方法 ====================
+
+    private void compress(Path source) throws IOException {
+        long size = Files.size(source);
+        if (size < minSize || size > maxSize) {
+            return;
+        }
+        Path base = variantBase(source);
+        Files.createDirectories(base.getParent());
+
+        Path gzip = variantPath(base, GZIP);
+        Path temp = Files.createTempFile(base.getParent(), ".gz-", ".tmp");
+        try {
+            try (InputStream in = Files.newInputStream(source);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_SIZE) {
+                     {
+                         def.setLevel(Deflater.BEST_COMPRESSION);
+                     }
+                 }) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            Files.move(temp, gzip, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        if (brotliEnabled) {
+            compressBrotli(source, variantPath(base, BROTLI));
+        }
+        log.debug("已生成压缩副本: {}, 原大小={}, gzip={}", source, size, Files.size(gzip));
+    }
+
+    /**
+     * 调用 brotli 命令行生成 .br 副本，失败时只保留 gzip
+     */
+    private void compressBrotli(Path source, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Process process = new ProcessBuilder(brotliPath, "-q", "11", "-f", "-o", temp.toString(), source.toString())
+                    .redirectErrorStream(true)
+                    .start();
+            process.getInputStream().close();
+            if (!process.waitFor(5, TimeUnit.MINUTES)) {
+                process.destroyForcibly();
+                return;
+            }
+            if (process.exitValue() == 0 && Files.exists(temp)) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 压缩副本不早于原文件时才可用
+     */
+    private Path fresh(Path variant, long sourceLastModified) throws IOException {
+        if (!Files.isRegularFile(variant)) {
+            return null;
+        }
+        return Files.getLastModifiedTime(variant).toMillis() >= sourceLastModified ? variant : null;
+    }
+
+    /**
+     * 原文件在 .compressed 下对应的路径（不含压缩扩展名），文件不在上传目录或位于内部目录时返回 null
+     */
+    private Path variantBase(Path source) {
+        if (!source.startsWith(uploadDirectory) || source.equals(uploadDirectory)) {
+            return null;
+        }
+        Path relative = uploadDirectory.relativize(source);
+        if (relative.getName(0).toString().startsWith(".")) {
+            return null;
+        }
+        return compressedDirectory.resolve(relative);
+    }
+
+    private static Path variantPath(Path base, String encoding) {
+        return base.resolveSibling(base.getFileName() + (BROTLI.equals(encoding) ? ".br" : ".gz"));
+    }
+
+    /**
+     * Accept-Encoding 是否接受指定编码（q=0 表示拒绝）
+     */
+    static boolean accepts(String acceptEncoding, String encoding) {
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase(Locale.ROOT);
+            if (!coding.equals(encoding) && !coding.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < tokens.length; i++) {
+                String parameter = tokens[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean brotliAvailable() {
+        try {
+            Process process = new ProcessBuilder(brotliPath, "--version")
+                    .redirectErrorStream(true)
+                    .start();
+            process.getInputStream().close();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static String getExtension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot < 0 ? "" : filename.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 压缩副本
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PACKAGE)
+    public static final class Variant {
+        private final Path path;
+        private final String encoding;
+    }
+}
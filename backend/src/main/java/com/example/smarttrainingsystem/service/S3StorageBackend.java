@@ -0,0 +1,260 @@
+package com.example.smarttrainingsystem.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * S3 兼容对象存储后端（AWS S3、MinIO 等）
+ * 直接使用 HttpURLConnection 发送 Signature V4 签名请求，采用路径风格寻址（{endpoint}/{bucket}/{key}），
+ * 上传下载均为流式，载荷不参与签名（UNSIGNED-PAYLOAD）
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+public class S3StorageBackend implements StorageBackend {
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 60000;
+
+    private final String endpoint;
+    private final String region;
+    private final String bucket;
+    private final String accessKey;
+    private final String secretKey;
+
+    public S3StorageBackend(String endpoint, String region, String bucket, String accessKey, String secretKey) {
+        this.endpoint = endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint;
+        this.region = region;
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+    }
+
+    @Override
+    public void put(String key, InputStream input, long length, String contentType) throws IOException {
+        HttpURLConnection connection = open("PUT", key);
+        if (contentType != null) {
+            connection.setRequestProperty("Content-Type", contentType);
+        }
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(length);
+
+        byte[] buffer = new byte[64 * 1024];
+        try (OutputStream out = connection.getOutputStream()) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+
+        int status = connection.getResponseCode();
+        if (status / 100 != 2) {
+            throw error(connection, "PUT", key);
+        }
+        drain(connection);
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return openStream(open("GET", key), key);
+    }
+
+    @Override
+    public InputStream getRange(String key, long start, long length) throws IOException {
+        HttpURLConnection connection = open("GET", key);
+        connection.setRequestProperty("Range", "bytes=" + start + "-" + (start + length - 1));
+        return openStream(connection, key);
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        // S3 删除不存在的对象同样返回 204，先查询一次以返回准确结果
+        boolean exists = stat(key) != null;
+        HttpURLConnection connection = open("DELETE", key);
+        int status = connection.getResponseCode();
+        if (status / 100 != 2 && status != HttpURLConnection.HTTP_NOT_FOUND) {
+            throw error(connection, "DELETE", key);
+        }
+        drain(connection);
+        return exists;
+    }
+
+    @Override
+    public ObjectStat stat(String key) throws IOException {
+        HttpURLConnection connection = open("HEAD", key);
+        int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+            return null;
+        }
+        if (status / 100 != 2) {
+            throw new IOException("对象存储 HEAD 请求失败: key=" + key + ", status=" + status);
+        }
+
+        long size = connection.getContentLengthLong();
+        long lastModified = 0;
+        String lastModifiedHeader = connection.getHeaderField("Last-Modified");
+        if (lastModifiedHeader != null) {
+            lastModified = ZonedDateTime.parse(lastModifiedHeader, HTTP_DATE).toInstant().toEpochMilli();
+        }
+        return new ObjectStat(size, lastModified, connection.getHeaderField("ETag"));
+    }
+
+    // ==================== 私有方法 ====================
+
+    private InputStream openStream(HttpURLConnection connection, String key) throws IOException {
+        int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+            drain(connection);
+            throw new NoSuchFileException(key);
+        }
+        if (status / 100 != 2) {
+            throw error(connection, "GET", key);
+        }
+        return new FilterInputStream(connection.getInputStream()) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                connection.disconnect();
+            }
+        };
+    }
+
+    /**
+     * 创建已签名的请求
+     */
+    private HttpURLConnection open(String method, String key) throws IOException {
+        String canonicalUri = "/" + uriEncode(bucket, false) + "/" + uriEncode(key, true);
+        URL url = new URL(endpoint + canonicalUri);
+
+        String host = url.getHost();
+        if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) {
+            host += ":" + url.getPort();
+        }
+
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String amzDate = now.format(AMZ_DATE);
+        String date = amzDate.substring(0, 8);
+        String scope = date + "/" + region + "/s3/aws4_request";
+
+        String signedHeaders = "host;x-amz-content-sha256;x-amz-date";
+        String canonicalRequest = method + "\n"
+                + canonicalUri + "\n"
+                + "\n"
+                + "host:" + host + "\n"
+                + "x-amz-content-sha256:" + UNSIGNED_PAYLOAD + "\n"
+                + "x-amz-date:" + amzDate + "\n"
+                + "\n"
+                + signedHeaders + "\n"
+                + UNSIGNED_PAYLOAD;
+        String stringToSign = ALGORITHM + "\n" + amzDate + "\n" + scope + "\n" + sha256Hex(canonicalRequest);
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, "s3");
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = toHex(hmac(signingKey, stringToSign));
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestProperty("x-amz-date", amzDate);
+        connection.setRequestProperty("x-amz-content-sha256", UNSIGNED_PAYLOAD);
+        connection.setRequestProperty("Authorization", ALGORITHM
+                + " Credential=" + accessKey + "/" + scope
+                + ", SignedHeaders=" + signedHeaders
+                + ", Signature=" + signature);
+        return connection;
+    }
+
+    private IOException error(HttpURLConnection connection, String method, String key) throws IOException {
+        String body = "";
+        InputStream errorStream = connection.getErrorStream();
+        if (errorStream != null) {
+            try (InputStream in = errorStream) {
+                byte[] bytes = new byte[512];
+                int read = in.read(bytes);
+                body = read > 0 ? new String(bytes, 0, read, StandardCharsets.UTF_8) : "";
+            }
+        }
+        return new IOException("对象存储 " + method + " 请求失败: key=" + key
+                + ", status=" + connection.getResponseCode() + ", body=" + body);
+    }
+
+    /**
+     * 读完响应体以便复用连接
+     */
+    private void drain(HttpURLConnection connection) {
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) != -1) {
+                // 丢弃
+            }
+        } catch (IOException ignored) {
+            // 响应体读取失败不影响结果
+        }
+    }
+
+    /**
+     * 按 RFC 3986 编码，对象键中的 / 保留
+     */
+    private static String uriEncode(String value, boolean keepSlash) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (keepSlash && c == '/')) {
+                builder.append(c);
+            } else {
+                builder.append('%')
+                        .append(Character.toUpperCase(Character.forDigit((c >> 4) & 0xF, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String sha256Hex(String data) {
+        try {
+            return toHex(MessageDigest.getInstance("SHA-256").digest(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.smarttrainingsystem.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 文件存储后端
+ * 以对象键（相对上传目录的路径，如 course/videos/{userId}/2025/08/xxx.mp4）读写文件内容，
+ * 内置本地文件系统和 S3 兼容对象存储两种实现，由 app.storage.type 选择
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+public interface StorageBackend {
+
+    /**
+     * 流式写入对象，已存在时覆盖
+     *
+     * @param key 对象键
+     * @param input 对象内容
+     * @param length 内容长度
+     * @param contentType 内容类型，可为空
+     */
+    void put(String key, InputStream input, long length, String contentType) throws IOException;
+
+    /**
+     * 读取整个对象
+     *
+     * @throws java.nio.file.NoSuchFileException 对象不存在
+     */
+    InputStream get(String key) throws IOException;
+
+    /**
+     * 读取对象的一段区间
+     *
+     * @param key 对象键
+     * @param start 起始偏移量
+     * @param length 读取长度
+     * @throws java.nio.file.NoSuchFileException 对象不存在
+     */
+    InputStream getRange(String key, long start, long length) throws IOException;
+
+    /**
+     * 删除对象
+     *
+     * @return 对象是否存在
+     */
+    boolean delete(String key) throws IOException;
+
+    /**
+     * 查询对象元数据
+     *
+     * @return 对象不存在时返回 null
+     */
+    ObjectStat stat(String key) throws IOException;
+
+    /**
+     * 对象元数据
+     */
+    @Getter
+    @AllArgsConstructor
+    final class ObjectStat {
+        private final long size;
+        private final long lastModified;
+        private final String etag;
+    }
+}
@@ -0,0 +1,356 @@
+package com.example.smarttrainingsystem.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 文件存储服务
+ * 上传、下载、流式播放统一经由此服务按对象键访问文件。app.upload.path 始终是本地工作目录：
+ * 使用本地后端时即为存储本身；使用对象存储后端时，写入本地后同步上传到后端，
+ * 读取时本地未命中则从后端拉取到本地（并发请求只拉取一次），本地副本按最近访问顺序淘汰，
+ * 因此各应用节点无状态，零拷贝输出、缩略图、HLS 切片等仍基于本地文件工作
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StorageService {
+
+    private static final String TEMP_DIR = ".storage-tmp";
+
+    private final StorageBackend storageBackend;
+
+    @Value("${app.upload.path:/uploads}")
+    private String uploadPath;
+
+    @Value("${app.storage.cache.max-bytes:10737418240}") // 默认10GB
+    private long cacheMaxBytes;
+
+    @Value("${app.storage.cache.max-object-size:1073741824}") // 默认1GB
+    private long cacheMaxObjectSize;
+
+    private Path localRoot;
+    private Path tempDirectory;
+    private boolean remote;
+
+    /**
+     * 对象存储模式下的本地副本及大小，按访问顺序排列，用于 LRU 淘汰
+     */
+    private final LinkedHashMap<Path, Long> cached = new LinkedHashMap<>(1024, 0.75f, true);
+    private long cachedBytes;
+
+    /**
+     * 正在从后端拉取的对象，同一对象的并发请求共享结果
+     */
+    private final Map<String, CompletableFuture<Path>> fetching = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        localRoot = Paths.get(uploadPath).toAbsolutePath().normalize();
+        remote = !(storageBackend instanceof LocalStorageBackend);
+        if (!remote) {
+            return;
+        }
+
+        tempDirectory = localRoot.resolve(TEMP_DIR);
+        try {
+            Files.createDirectories(tempDirectory);
+            loadCachedFiles();
+        } catch (IOException e) {
+            throw new RuntimeException("文件存储本地缓存初始化失败", e);
+        }
+        log.info("文件存储使用对象存储后端，本地缓存: {}, 已缓存={}MB, 上限={}MB",
+                localRoot, cachedBytes / 1024 / 1024, cacheMaxBytes / 1024 / 1024);
+    }
+
+    /**
+     * 是否使用远程对象存储
+     */
+    public boolean isRemote() {
+        return remote;
+    }
+
+    /**
+     * 本地工作目录
+     */
+    public Path getLocalRoot() {
+        return localRoot;
+    }
+
+    /**
+     * 对象键对应的本地路径（不保证存在），键越出工作目录时返回 null
+     */
+    public Path localPath(String key) {
+        Path path = localRoot.resolve(key).normalize();
+        return path.startsWith(localRoot) && !path.equals(localRoot) ? path : null;
+    }
+
+    /**
+     * 本地路径对应的对象键
+     */
+    public String keyOf(Path localFile) {
+        return localRoot.relativize(localFile.toAbsolutePath().normalize()).toString().replace('\\', '/');
+    }
+
+    /**
+     * 获取可直接读取的本地文件，本地未命中时从后端拉取
+     *
+     * @param key 对象键
+     * @return 本地文件路径，对象不存在时返回 null
+     */
+    public Path resolve(String key) throws IOException {
+        return resolve(key, true);
+    }
+
+    /**
+     * 获取可直接读取的本地文件
+     *
+     * @param key 对象键
+     * @param fetchLarge 超过 max-object-size 的对象是否也拉取到本地；为 false 时返回 null，
+     *                   调用方应改用 {@link #stat} 与 {@link #openRange} 按区间读取
+     * @return 本地文件路径，对象不存在或未拉取时返回 null
+     */
+    public Path resolve(String key, boolean fetchLarge) throws IOException {
+        Path path = localPath(key);
+        if (path == null) {
+            return null;
+        }
+        if (Files.isRegularFile(path)) {
+            if (remote) {
+                touch(path);
+            }
+            return path;
+        }
+        if (!remote) {
+            return null;
+        }
+
+        StorageBackend.ObjectStat stat = storageBackend.stat(key);
+        if (stat == null || (!fetchLarge && stat.getSize() > cacheMaxObjectSize)) {
+            return null;
+        }
+
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> existing = fetching.putIfAbsent(key, future);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            if (!Files.isRegularFile(path)) {
+                fetch(key, path, stat);
+            }
+            future.complete(path);
+            return path;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            fetching.remove(key, future);
+        }
+    }
+
+    /**
+     * 查询对象元数据
+     *
+     * @return 对象不存在或键不合法时返回 null
+     */
+    public StorageBackend.ObjectStat stat(String key) throws IOException {
+        return localPath(key) == null ? null : storageBackend.stat(key);
+    }
+
+    /**
+     * 按区间读取对象（不经过本地缓存）
+     */
+    public InputStream openRange(String key, long start, long length) throws IOException {
+        return storageBackend.getRange(key, start, length);
+    }
+
+    /**
+     * 本地工作目录中的文件写入完成后调用，对象存储模式下上传到后端
+     *
+     * @param localFile 已写入的本地文件
+     */
+    public void stored(Path localFile) throws IOException {
+        if (!remote) {
+            return;
+        }
+        String key = keyOf(localFile);
+        long size = Files.size(localFile);
+        try (InputStream in = Files.newInputStream(localFile)) {
+            storageBackend.put(key, in, size, Files.probeContentType(localFile));
+        }
+        add(localFile.toAbsolutePath().normalize(), size);
+        log.debug("文件已上传到对象存储: key={}, size={}", key, size);
+    }
+
+    /**
+     * 删除对象；本地文件由调用方删除，对象存储模式下同时删除后端对象
+     *
+     * @param localFile 对象对应的本地路径
+     * @return 后端对象是否存在（本地模式恒为 false）
+     */
+    public boolean deleted(Path localFile) throws IOException {
+        if (!remote) {
+            return false;
+        }
+        Path normalized = localFile.toAbsolutePath().normalize();
+        synchronized (cached) {
+            Long size = cached.remove(normalized);
+            if (size != null) {
+                cachedBytes -= size;
+            }
+        }
+        return storageBackend.delete(keyOf(normalized));
+    }
+
+    // ==================== 私有方法 ====================
+
+    private void fetch(String key, Path target, StorageBackend.ObjectStat stat) throws IOException {
+        long start = System.currentTimeMillis();
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(tempDirectory, "fetch-", ".tmp");
+        try {
+            try (InputStream in = storageBackend.get(key)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            // 沿用对象的修改时间，各节点本地副本的 ETag / Last-Modified 与缩略图缓存键保持一致
+            if (stat.getLastModified() > 0) {
+                Files.setLastModifiedTime(temp, FileTime.fromMillis(stat.getLastModified()));
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            throw new NoSuchFileException(key);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        add(target, stat.getSize());
+        log.info("从对象存储拉取文件: key={}, size={}, 耗时={}ms", key, stat.getSize(), System.currentTimeMillis() - start);
+    }
+
+    private Path await(CompletableFuture<Path> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待文件拉取被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 启动时加载本地已有文件，按修改时间先后作为初始淘汰顺序；以 . 开头的内部目录不参与淘汰
+     */
+    private void loadCachedFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(localRoot, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return !dir.equals(localRoot) && dir.getFileName().toString().startsWith(".")
+                        ? FileVisitResult.SKIP_SUBTREE
+                        : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        files.sort(Comparator.comparingLong(this::lastModified));
+
+        synchronized (cached) {
+            for (Path file : files) {
+                long size = Files.size(file);
+                cached.put(file, size);
+                cachedBytes += size;
+            }
+        }
+        evict();
+    }
+
+    private void touch(Path file) {
+        synchronized (cached) {
+            cached.get(file);
+        }
+    }
+
+    private void add(Path file, long size) {
+        synchronized (cached) {
+            Long previous = cached.put(file, size);
+            cachedBytes += size - (previous == null ? 0 : previous);
+        }
+        evict();
+    }
+
+    /**
+     * 淘汰最久未访问的本地副本，后端仍保留对象
+     */
+    private void evict() {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (cached) {
+            Iterator<Map.Entry<Path, Long>> iterator = cached.entrySet().iterator();
+            while (cachedBytes > cacheMaxBytes && iterator.hasNext()) {
+                Map.Entry<Path, Long> eldest = iterator.next();
+                cachedBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                iterator.remove();
+            }
+        }
+        for (Path file : evicted) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.debug("删除本地缓存文件失败: {}", file);
+            }
+        }
+        if (!evicted.isEmpty()) {
+            log.info("淘汰本地缓存文件: {} 个", evicted.size());
+        }
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -70,9 +70,15 @@ public class StudentManagementService {
         // 查询学员用户
         Page<User> users = userRepository.searchUsers(keyword, status, role, pageable);
 
+        // 整页学员的学习统计一次查询取回
+        List<String> userIds = users.getContent().stream()
+                .map(User::getId)
+                .collect(Collectors.toList());
+        Map<String, StudyAggregate> studyAggregates = aggregateStudy(userIds);
+
         // 转换为DTO
         List<StudentDTO.ListItem> items = users.getContent().stream()
-                .map(this::convertToListItem)
+                .map(user -> convertToListItem(user, studyAggregates.get(user.getId())))
                 .collect(Collectors.toList());
 
         return new PageImpl<>(items, pageable, users.getTotalElements());
@@ -262,45 +268,30 @@ public class StudentManagementService {
     public StudentDTO.StudyStatistics getStudentStatistics(String studentId) {
         log.info("获取学员统计 - 学员ID: {}", studentId);
 
-        StudentDTO.StudyStatistics statistics = new StudentDTO.StudyStatistics();
-
-        // 课程统计
-        long enrolledCourses = studyRecordRepository.countByUserId(studentId);
-        long completedCourses = studyRecordRepository.countByUserIdAndStatus(studentId, StudyRecord.Status.COMPLETED);
-        statistics.setEnrolledCourses((int) enrolledCourses);
-        statistics.setCompletedCourses((int) completedCourses);
-
-        // 考试统计
-        long totalExams = examResultRepository.countByUserId(studentId);
-        long passedExams = examResultRepository.countByUserIdAndPassStatus(studentId, ExamResult.PassStatus.PASS);
-        statistics.setTotalExams((int) totalExams);
-        statistics.setPassedExams((int) passedExams);
-
-        // 学习时长统计 - 进行安全的类型转换
-        Long totalStudyMinutesLong = studyRecordRepository.sumStudyTimeByUserId(studentId);
-        int totalStudyMinutes = totalStudyMinutesLong != null ?
-                (totalStudyMinutesLong > Integer.MAX_VALUE ? Integer.MAX_VALUE : totalStudyMinutesLong.intValue()) : 0;
-        statistics.setTotalStudyHours(totalStudyMinutes / 60);
-
-        // 平均分
-        Double averageScore = examResultRepository.getAverageScoreByUserId(studentId);
-        statistics.setAverageScore(averageScore != null ? averageScore : 0.0);
+        return getStudentStatistics(Collections.singletonList(studentId)).get(studentId);
+    }
 
-        // 计算完成率
-        if (enrolledCourses > 0) {
-            statistics.setCompletionRate((double) completedCourses / enrolledCourses * 100);
-        } else {
-            statistics.setCompletionRate(0.0);
+    /**
+     * 批量获取学员学习统计
+     * 学习记录和考试结果各按用户分组汇总一次，与学员数量无关
+     *
+     * @param studentIds 学员ID列表
+     * @return 学员ID -> 学习统计，每个学员都有对应条目
+     */
+    public Map<String, StudentDTO.StudyStatistics> getStudentStatistics(Collection<String> studentIds) {
+        Map<String, StudentDTO.StudyStatistics> result = new HashMap<>();
+        if (studentIds == null || studentIds.isEmpty()) {
+            return result;
         }
 
-        // 计算通过率
-        if (totalExams > 0) {
-            statistics.setPassRate((double) passedExams / totalExams * 100);
-        } else {
-            statistics.setPassRate(0.0);
+        Map<String, StudyAggregate> studyAggregates = aggregateStudy(studentIds);
+        Map<String, ExamAggregate> examAggregates = aggregateExams(studentIds);
+        for (String studentId : studentIds) {
+            result.put(studentId, buildStatistics(
+                    studyAggregates.getOrDefault(studentId, StudyAggregate.EMPTY),
+                    examAggregates.getOrDefault(studentId, ExamAggregate.EMPTY)));
         }
-
-        return statistics;
+        return result;
     }
 
     /**
@@ -538,7 +529,7 @@ public class StudentManagementService {
 
     // ============ 私有方法 ============
 
-    private StudentDTO.ListItem convertToListItem(User user) {
+    private StudentDTO.ListItem convertToListItem(User user, StudyAggregate studyAggregate) {
         StudentDTO.ListItem item = new StudentDTO.ListItem();
         item.setUserId(user.getId());
         item.setUsername(user.getUsername());
@@ -549,10 +540,10 @@ public class StudentManagementService {
         item.setCreatedAt(user.getCreatedAt());
         item.setLastLoginAt(user.getEffectiveLastLoginTime());
 
-        // 获取学习统计
-        item.setEnrolledCourses((int) studyRecordRepository.countByUserId(user.getId()));
-        item.setCompletedCourses((int) studyRecordRepository.countByUserIdAndStatus(
-                user.getId(), StudyRecord.Status.COMPLETED));
+        // 学习统计
+        StudyAggregate aggregate = studyAggregate != null ? studyAggregate : StudyAggregate.EMPTY;
+        item.setEnrolledCourses((int) aggregate.enrolledCourses);
+        item.setCompletedCourses((int) aggregate.completedCourses);
 
         return item;
     }
@@ -607,6 +598,78 @@ public class StudentManagementService {
         return record;
     }
 
+    private StudentDTO.StudyStatistics buildStatistics(StudyAggregate study, ExamAggregate exam) {
+        StudentDTO.StudyStatistics statistics = new StudentDTO.StudyStatistics();
+
+        // 课程统计
+        statistics.setEnrolledCourses((int) study.enrolledCourses);
+        statistics.setCompletedCourses((int) study.completedCourses);
+
+        // 考试统计
+        statistics.setTotalExams((int) exam.totalExams);
+        statistics.setPassedExams((int) exam.passedExams);
+
+        // 学习时长统计 - 进行安全的类型转换
+        int totalStudyMinutes = study.totalStudyMinutes > Integer.MAX_VALUE ?
+                Integer.MAX_VALUE : (int) study.totalStudyMinutes;
+        statistics.setTotalStudyHours(totalStudyMinutes / 60);
+
+        // 平均分
+        statistics.setAverageScore(exam.averageScore != null ? exam.averageScore : 0.0);
+
+        // 计算完成率
+        if (study.enrolledCourses > 0) {
+            statistics.setCompletionRate((double) study.completedCourses / study.enrolledCourses * 100);
+        } else {
+            statistics.setCompletionRate(0.0);
+        }
+
+        // 计算通过率
+        if (exam.totalExams > 0) {
+            statistics.setPassRate((double) exam.passedExams / exam.totalExams * 100);
+        } else {
+            statistics.setPassRate(0.0);
+        }
+
+        return statistics;
+    }
+
+    /**
+     * 按用户分组汇总学习记录
+     */
+    private Map<String, StudyAggregate> aggregateStudy(Collection<String> userIds) {
+        Map<String, StudyAggregate> aggregates = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return aggregates;
+        }
+
+        for (Object[] row : studyRecordRepository.aggregateByUserIds(userIds)) {
+            aggregates.put((String) row[0], new StudyAggregate(
+                    toLong(row[1]), toLong(row[2]), toLong(row[3])));
+        }
+        return aggregates;
+    }
+
+    /**
+     * 按用户分组汇总考试结果
+     */
+    private Map<String, ExamAggregate> aggregateExams(Collection<String> userIds) {
+        Map<String, ExamAggregate> aggregates = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return aggregates;
+        }
+
+        for (Object[] row : examResultRepository.aggregateByUserIds(userIds)) {
+            aggregates.put((String) row[0], new ExamAggregate(
+                    toLong(row[1]), toLong(row[2]), row[3] != null ? ((Number) row[3]).doubleValue() : null));
+        }
+        return aggregates;
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
     private String generateRandomPassword() {
         String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
         StringBuilder password = new StringBuilder();
@@ -618,4 +681,38 @@ public class StudentManagementService {
 
         return password.toString();
     }
-}
\ No newline at end of file
+
+    /**
+     * 学员学习记录汇总
+     */
+    private static final class StudyAggregate {
+        static final StudyAggregate EMPTY = new StudyAggregate(0, 0, 0);
+
+        final long enrolledCourses;
+        final long completedCourses;
+        final long totalStudyMinutes;
+
+        StudyAggregate(long enrolledCourses, long completedCourses, long totalStudyMinutes) {
+            this.enrolledCourses = enrolledCourses;
+            this.completedCourses = completedCourses;
+            this.totalStudyMinutes = totalStudyMinutes;
+        }
+    }
+
+    /**
+     * 学员考试结果汇总
+     */
+    private static final class ExamAggregate {
+        static final ExamAggregate EMPTY = new ExamAggregate(0, 0, null);
+
+        final long totalExams;
+        final long passedExams;
+        final Double averageScore;
+
+        ExamAggregate(long totalExams, long passedExams, Double averageScore) {
+            this.totalExams = totalExams;
+            this.passedExams = passedExams;
+            this.averageScore = averageScore;
+        }
+    }
+}
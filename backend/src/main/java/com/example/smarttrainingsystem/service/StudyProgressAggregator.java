@@ -0,0 +1,237 @@
+package com.example.smarttrainingsystem.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 学习进度增量聚合器
+ * 学习记录变化时投递学习事件，后台线程把一段时间内的事件按 (日期, 用户) 合并，
+ * 再分批交给汇总引擎重新汇总这些用户当日、当周、当月的学习进度，
+ * 使进度看板在数秒内反映最新学习情况；每日凌晨的批量任务只做对账兜底
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StudyProgressAggregator {
+
+    /**
+     * 同一日期连续汇总失败的最大次数，超过后放弃，交由每日对账处理
+     */
+    private static final int MAX_RETRIES = 3;
+
+    private final StudyProgressRollupService studyProgressRollupService;
+
+    @Value("${app.progress.incremental.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.progress.incremental.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.progress.incremental.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    @Value("${app.progress.incremental.batch-size:500}")
+    private int batchSize;
+
+    private BlockingQueue<StudyEvent> queue;
+
+    /**
+     * 待汇总的用户，按日期分组；只由消费线程访问
+     */
+    private final Map<LocalDate, Set<String>> dirty = new TreeMap<>();
+
+    /**
+     * 各日期连续失败次数；只由消费线程访问
+     */
+    private final Map<LocalDate, Integer> failures = new HashMap<>();
+
+    private Thread consumer;
+
+    private volatile boolean stopped;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong refreshedUsers = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("学习进度增量聚合已关闭，进度仅由每日批量任务汇总");
+            return;
+        }
+
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        consumer = new Thread(this::consume, "progress-aggregator");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (consumer == null) {
+            return;
+        }
+        stopped = true;
+        consumer.interrupt();
+        consumer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * 投递学习事件，在当前事务提交后入队（无事务时立即入队）
+     *
+     * @param userId 用户ID
+     */
+    public void publish(String userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+
+        StudyEvent event = new StudyEvent(userId, LocalDate.now());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(event);
+                }
+            });
+        } else {
+            enqueue(event);
+        }
+    }
+
+    // ==================== 私有方法 ====================
+
+    private void enqueue(StudyEvent event) {
+        received.incrementAndGet();
+        if (!queue.offer(event)) {
+            // 队列已满时丢弃，由每日对账补齐
+            dropped.incrementAndGet();
+            log.debug("学习进度事件队列已满，丢弃事件 - 用户ID: {}", event.userId);
+        }
+    }
+
+    private void consume() {
+        long nextFlush = System.currentTimeMillis() + flushIntervalMs;
+        while (!stopped) {
+            try {
+                long wait = Math.max(0, nextFlush - System.currentTimeMillis());
+                StudyEvent event = queue.poll(wait, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    add(event);
+                    drainQueue();
+                }
+
+                if (System.currentTimeMillis() >= nextFlush || dirtyCount() >= batchSize) {
+                    flush();
+                    nextFlush = System.currentTimeMillis() + flushIntervalMs;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("学习进度增量聚合异常: {}", e.getMessage(), e);
+            }
+        }
+
+        // 停止前把已收到的事件汇总完
+        drainQueue();
+        flush();
+    }
+
+    private void drainQueue() {
+        StudyEvent event;
+        while ((event = queue.poll()) != null) {
+            add(event);
+        }
+    }
+
+    private void add(StudyEvent event) {
+        dirty.computeIfAbsent(event.date, date -> new LinkedHashSet<>()).add(event.userId);
+    }
+
+    private int dirtyCount() {
+        int count = 0;
+        for (Set<String> users : dirty.values()) {
+            count += users.size();
+        }
+        return count;
+    }
+
+    /**
+     * 分批汇总待处理用户，失败的批次保留到下次重试
+     */
+    private void flush() {
+        Iterator<Map.Entry<LocalDate, Set<String>>> iterator = dirty.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<LocalDate, Set<String>> entry = iterator.next();
+            LocalDate date = entry.getKey();
+            List<String> users = new ArrayList<>(entry.getValue());
+            Set<String> failed = new LinkedHashSet<>();
+
+            for (int from = 0; from < users.size(); from += batchSize) {
+                List<String> batch = users.subList(from, Math.min(from + batchSize, users.size()));
+                try {
+                    studyProgressRollupService.refreshUsers(batch, date);
+                    refreshedUsers.addAndGet(batch.size());
+                } catch (Exception e) {
+                    failed.addAll(batch);
+                    log.warn("增量汇总学习进度失败，稍后重试 - 日期: {}, 用户数: {}, 错误: {}",
+                            date, batch.size(), e.getMessage());
+                }
+            }
+
+            if (failed.isEmpty()) {
+                iterator.remove();
+                failures.remove(date);
+            } else if (failures.merge(date, 1, Integer::sum) > MAX_RETRIES) {
+                iterator.remove();
+                failures.remove(date);
+                log.warn("增量汇总学习进度多次失败，放弃并交由每日对账处理 - 日期: {}, 用户数: {}", date, failed.size());
+            } else {
+                entry.setValue(failed);
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("学习进度增量聚合 - 收到事件: {}, 丢弃: {}, 已汇总用户次数: {}",
+                    received.get(), dropped.get(), refreshedUsers.get());
+        }
+    }
+
+    /**
+     * 学习事件：某用户在某日有学习活动
+     */
+    private static final class StudyEvent {
+        private final String userId;
+        private final LocalDate date;
+
+        StudyEvent(String userId, LocalDate date) {
+            this.userId = userId;
+            this.date = date;
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package com.example.smarttrainingsystem.service;
+
+import com.example.smarttrainingsystem.entity.ProgressRollupCheckpoint;
+import com.example.smarttrainingsystem.entity.StudyProgress;
+import com.example.smarttrainingsystem.repository.ProgressRollupCheckpointRepository;
+import com.example.smarttrainingsystem.repository.StudyProgressRepository;
+import com.example.smarttrainingsystem.repository.StudyRecordRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 学习进度汇总引擎
+ * 按用户ID升序分块，多线程并行汇总每日（及周、月）学习进度：
+ * 每块在独立事务中用分组查询一次取回整块用户的统计数据，
+ * 已连续完成的位置记录到断点表，任务中断后从断点继续
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StudyProgressRollupService {
+
+    /**
+     * 周目标时长(分钟)，7小时
+     */
+    private static final int WEEKLY_GOAL_MINUTES = 420;
+
+    /**
+     * 月目标时长(分钟)，30小时
+     */
+    private static final int MONTHLY_GOAL_MINUTES = 1800;
+
+    private final StudyRecordRepository studyRecordRepository;
+    private final StudyProgressRepository studyProgressRepository;
+    private final ProgressRollupCheckpointRepository checkpointRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.progress.rollup.workers:4}")
+    private int workers;
+
+    @Value("${app.progress.rollup.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * 只恢复最近多少天内未完成的汇总任务
+     */
+    @Value("${app.progress.rollup.resume-max-age-days:7}")
+    private int resumeMaxAgeDays;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * 当前（或最近一次）任务的运行指标
+     */
+    private volatile RollupRun lastRun;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 在后台线程中执行汇总
+     *
+     * @param date 汇总日期
+     * @param restart 是否忽略已有断点从头开始
+     * @return 已有任务在执行时返回 false
+     */
+    public boolean startAsync(LocalDate date, boolean restart) {
+        if (running.get()) {
+            return false;
+        }
+
+        Thread thread = new Thread(() -> run(date, restart), "progress-rollup");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * 从断点继续未完成的汇总任务：应用启动时恢复上次中断（执行中）的任务，之后定时重试失败的任务
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.progress.rollup.resume-interval-ms:600000}",
+            fixedDelayString = "${app.progress.rollup.resume-interval-ms:600000}")
+    public void resumeUnfinished() {
+        if (running.get()) {
+            // 执行中的断点属于当前任务
+            return;
+        }
+
+        List<ProgressRollupCheckpoint> unfinished;
+        try {
+            unfinished = checkpointRepository.findByStatusInAndRollupDateAfterOrderByRollupDateAsc(
+                    Arrays.asList(ProgressRollupCheckpoint.Status.RUNNING, ProgressRollupCheckpoint.Status.FAILED),
+                    LocalDate.now().minusDays(resumeMaxAgeDays + 1L));
+        } catch (Exception e) {
+            log.error("查询未完成的学习进度汇总任务失败: {}", e.getMessage(), e);
+            return;
+        }
+        if (unfinished.isEmpty()) {
+            return;
+        }
+
+        log.info("恢复未完成的学习进度汇总任务: {}个", unfinished.size());
+        Thread thread = new Thread(() -> {
+            for (ProgressRollupCheckpoint checkpoint : unfinished) {
+                run(checkpoint.getRollupDate(), false);
+            }
+        }, "progress-rollup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 汇总指定日期的学习进度，周日同时汇总当周进度，月末同时汇总当月进度
+     *
+     * @param date 汇总日期
+     * @param restart 是否忽略已有断点从头开始
+     */
+    public void run(LocalDate date, boolean restart) {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("学习进度汇总任务正在执行，忽略本次请求 - 日期: {}", date);
+            return;
+        }
+
+        try {
+            execute(date, restart);
+        } catch (Exception e) {
+            log.error("学习进度汇总任务异常 - 日期: {}, 错误: {}", date, e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 在一个事务中重新汇总一组用户在指定日期的日进度，以及该日期所在周、月的进度
+     * 供增量聚合使用，汇总口径与每日批量任务一致
+     *
+     * @param userIds 用户ID列表
+     * @param date 日期
+     */
+    public void refreshUsers(List<String> userIds, LocalDate date) {
+        transactionTemplate.executeWithoutResult(status -> rollupChunk(userIds, date, true, true));
+    }
+
+    /**
+     * 获取当前（或最近一次）汇总任务的进度与吞吐指标
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        RollupRun run = lastRun;
+        status.put("running", running.get());
+        status.put("workers", workers);
+        status.put("chunkSize", chunkSize);
+        if (run != null) {
+            run.fill(status);
+        }
+        return status;
+    }
+
+    // ==================== 私有方法 ====================
+
+    private void execute(LocalDate date, boolean restart) throws InterruptedException {
+        ProgressRollupCheckpoint checkpoint = checkpointRepository.findById(date).orElse(null);
+        if (checkpoint != null && !restart && checkpoint.getStatus() == ProgressRollupCheckpoint.Status.COMPLETED) {
+            log.info("学习进度已汇总，跳过 - 日期: {}", date);
+            return;
+        }
+
+        if (checkpoint == null || restart) {
+            checkpoint = new ProgressRollupCheckpoint();
+            checkpoint.setRollupDate(date);
+            checkpoint.setIncludeWeekly(date.getDayOfWeek() == DayOfWeek.SUNDAY);
+            checkpoint.setIncludeMonthly(date.equals(date.withDayOfMonth(date.lengthOfMonth())));
+        }
+        checkpoint.setStatus(ProgressRollupCheckpoint.Status.RUNNING);
+        checkpoint.setLastError(null);
+        checkpoint.setFinishedAt(null);
+        checkpoint = checkpointRepository.save(checkpoint);
+
+        String resumeFrom = checkpoint.getLastUserId();
+        RollupRun run = new RollupRun(date, resumeFrom);
+        lastRun = run;
+        Watermark watermark = new Watermark(checkpoint);
+
+        log.info("开始汇总学习进度 - 日期: {}, 周汇总: {}, 月汇总: {}, 断点: {}, 已处理: {}",
+                date, checkpoint.getIncludeWeekly(), checkpoint.getIncludeMonthly(),
+                resumeFrom != null ? resumeFrom : "无", checkpoint.getProcessedUsers());
+
+        boolean weekly = checkpoint.getIncludeWeekly();
+        boolean monthly = checkpoint.getIncludeMonthly();
+
+        // 队列只容纳少量待处理块，满时由分块线程自己执行，避免一次性把所有用户ID读入内存
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "progress-rollup-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        try {
+            String cursor = resumeFrom != null ? resumeFrom : "";
+            long chunkIndex = 0;
+            while (true) {
+                List<String> userIds = studyRecordRepository.findUserIdsWithStudyRecordsAfter(
+                        cursor, PageRequest.of(0, chunkSize));
+                if (userIds.isEmpty()) {
+                    break;
+                }
+
+                cursor = userIds.get(userIds.size() - 1);
+                long index = chunkIndex++;
+                run.chunksSubmitted.incrementAndGet();
+                executor.execute(() -> processChunk(index, userIds, date, weekly, monthly, run, watermark));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            log.info("学习进度汇总进行中 - 日期: {}, 已完成块: {}/{}, 已处理用户: {}, 吞吐: {}/s",
+                    date, run.chunksCompleted.get(), run.chunksSubmitted.get(),
+                    run.usersProcessed.get(), String.format("%.1f", run.usersPerSecond()));
+        }
+
+        run.finish();
+        watermark.finish(run.chunksFailed.get() == 0);
+
+        log.info("学习进度汇总结束 - 日期: {}, 用户: {}, 块: {}, 失败块: {}, 耗时: {}ms, 吞吐: {}/s",
+                date, run.usersProcessed.get(), run.chunksCompleted.get(), run.chunksFailed.get(),
+                run.elapsedMillis(), String.format("%.1f", run.usersPerSecond()));
+    }
+
+    private void processChunk(long index, List<String> userIds, LocalDate date,
+                              boolean weekly, boolean monthly, RollupRun run, Watermark watermark) {
+        long startTime = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> rollupChunk(userIds, date, weekly, monthly));
+            run.chunkCompleted(userIds.size(), System.nanoTime() - startTime);
+            watermark.complete(index, userIds.get(userIds.size() - 1), userIds.size(), null);
+        } catch (Exception e) {
+            run.chunksFailed.incrementAndGet();
+            log.error("学习进度汇总块失败 - 日期: {}, 块: {}, 用户: {}~{}, 错误: {}", date, index,
+                    userIds.get(0), userIds.get(userIds.size() - 1), e.getMessage(), e);
+            watermark.complete(index, null, 0, e.getMessage());
+        }
+    }
+
+    /**
+     * 汇总一块用户，调用方负责事务
+     */
+    private void rollupChunk(List<String> userIds, LocalDate date, boolean weekly, boolean monthly) {
+        LocalDateTime startOfDay = date.atStartOfDay();
+        LocalDateTime endOfDay = date.atTime(23, 59, 59);
+
+        Map<String, StudyProgress> existing = indexByUser(studyProgressRepository
+                .findByUserIdInAndProgressDateAndProgressType(userIds, date, StudyProgress.ProgressType.DAILY));
+        Map<String, StudyProgress> previous = indexByUser(studyProgressRepository
+                .findByUserIdInAndProgressDateAndProgressType(userIds, date.minusDays(1), StudyProgress.ProgressType.DAILY));
+
+        for (Object[] row : studyRecordRepository.aggregateDailyProgressByUserIds(userIds, startOfDay, endOfDay)) {
+            String userId = (String) row[0];
+            StudyProgress daily = existing.get(userId);
+            boolean isNew = daily == null;
+            if (isNew) {
+                daily = newProgress(userId, date, StudyProgress.ProgressType.DAILY);
+            }
+
+            daily.updateStatistics(toInt(row[1]), toInt(row[2]), toInt(row[4]), toInt(row[3]));
+            updateContinuousDays(daily, previous.get(userId));
+
+            if (isNew) {
+                entityManager.persist(daily);
+            }
+        }
+
+        if (weekly) {
+            LocalDate weekStart = date.with(DayOfWeek.MONDAY);
+            rollupPeriod(userIds, weekStart, weekStart.plusDays(6),
+                    StudyProgress.ProgressType.WEEKLY, WEEKLY_GOAL_MINUTES);
+        }
+        if (monthly) {
+            LocalDate monthStart = date.withDayOfMonth(1);
+            rollupPeriod(userIds, monthStart, monthStart.plusMonths(1).minusDays(1),
+                    StudyProgress.ProgressType.MONTHLY, MONTHLY_GOAL_MINUTES);
+        }
+    }
+
+    /**
+     * 由每日进度汇总周/月进度（查询前会自动刷出本块刚写入的每日进度）
+     */
+    private void rollupPeriod(List<String> userIds, LocalDate periodStart, LocalDate periodEnd,
+                              StudyProgress.ProgressType type, int goalMinutes) {
+        Map<String, StudyProgress> existing = indexByUser(studyProgressRepository
+                .findByUserIdInAndProgressDateAndProgressType(userIds, periodStart, type));
+
+        for (Object[] row : studyProgressRepository.sumDailyProgressByUserIds(userIds, periodStart, periodEnd)) {
+            String userId = (String) row[0];
+            StudyProgress progress = existing.get(userId);
+            boolean isNew = progress == null;
+            if (isNew) {
+                progress = newProgress(userId, periodStart, type);
+            }
+
+            progress.updateStatistics(toInt(row[1]), toInt(row[2]), toInt(row[3]), toInt(row[4]));
+            progress.setGoalDuration(goalMinutes);
+
+            if (isNew) {
+                entityManager.persist(progress);
+            }
+        }
+    }
+
+    /**
+     * 更新连续学习天数：当日有学习且前一日也有学习则累加，否则重新计数或归零
+     */
+    private void updateContinuousDays(StudyProgress daily, StudyProgress previous) {
+        if (daily.getStudyDuration() > 0) {
+            if (previous != null && previous.getStudyDuration() > 0) {
+                daily.setContinuousDays(previous.getContinuousDays() + 1);
+            } else {
+                daily.setContinuousDays(1);
+            }
+        } else {
+            daily.setContinuousDays(0);
+        }
+    }
+
+    private StudyProgress newProgress(String userId, LocalDate date, StudyProgress.ProgressType type) {
+        StudyProgress progress = new StudyProgress();
+        progress.setUserId(userId);
+        progress.setProgressDate(date);
+        progress.setProgressType(type);
+        return progress;
+    }
+
+    private Map<String, StudyProgress> indexByUser(List<StudyProgress> progresses) {
+        Map<String, StudyProgress> map = new HashMap<>(progresses.size() * 2);
+        for (StudyProgress progress : progresses) {
+            map.put(progress.getUserId(), progress);
+        }
+        return map;
+    }
+
+    private static int toInt(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        long longValue = ((Number) value).longValue();
+        return longValue > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) longValue;
+    }
+
+    /**
+     * 断点水位：块并行完成、顺序不定，只有从头开始连续成功的块才推进断点，
+     * 这样恢复时从断点之后重跑，最多重复处理少量已完成的块（汇总结果可重复写入）
+     */
+    private final class Watermark {
+        private final ProgressRollupCheckpoint checkpoint;
+        private final TreeMap<Long, String> finished = new TreeMap<>();
+        private final Map<Long, Integer> sizes = new HashMap<>();
+        private long nextIndex;
+        private boolean blocked;
+
+        Watermark(ProgressRollupCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        synchronized void complete(long index, String lastUserId, int size, String error) {
+            if (error != null) {
+                // 失败块之后的断点不再推进，下次从失败块开始
+                blocked = true;
+                checkpoint.setLastError(error.length() > 500 ? error.substring(0, 500) : error);
+                save();
+                return;
+            }
+            if (blocked) {
+                return;
+            }
+
+            finished.put(index, lastUserId);
+            sizes.put(index, size);
+            boolean advanced = false;
+            while (finished.containsKey(nextIndex)) {
+                checkpoint.setLastUserId(finished.remove(nextIndex));
+                checkpoint.setProcessedUsers(checkpoint.getProcessedUsers() + sizes.remove(nextIndex));
+                nextIndex++;
+                advanced = true;
+            }
+            if (advanced) {
+                save();
+            }
+        }
+
+        synchronized void finish(boolean success) {
+            checkpoint.setStatus(success ? ProgressRollupCheckpoint.Status.COMPLETED : ProgressRollupCheckpoint.Status.FAILED);
+            if (success) {
+                checkpoint.setFinishedAt(LocalDateTime.now());
+            }
+            save();
+        }
+
+        private void save() {
+            try {
+                checkpointRepository.save(checkpoint);
+            } catch (Exception e) {
+                log.warn("保存学习进度汇总断点失败 - 日期: {}, 错误: {}", checkpoint.getRollupDate(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 单次汇总任务的运行指标
+     */
+    private static final class RollupRun {
+        private final LocalDate date;
+        private final String resumedFrom;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startNanos = System.nanoTime();
+        private volatile long finishNanos;
+        private volatile LocalDateTime finishedAt;
+
+        private final AtomicLong chunksSubmitted = new AtomicLong();
+        private final AtomicLong chunksCompleted = new AtomicLong();
+        private final AtomicLong chunksFailed = new AtomicLong();
+        private final AtomicLong usersProcessed = new AtomicLong();
+        private final AtomicLong chunkNanos = new AtomicLong();
+
+        RollupRun(LocalDate date, String resumedFrom) {
+            this.date = date;
+            this.resumedFrom = resumedFrom;
+        }
+
+        void chunkCompleted(int users, long nanos) {
+            chunksCompleted.incrementAndGet();
+            usersProcessed.addAndGet(users);
+            chunkNanos.addAndGet(nanos);
+        }
+
+        void finish() {
+            finishNanos = System.nanoTime();
+            finishedAt = LocalDateTime.now();
+        }
+
+        long elapsedMillis() {
+            long end = finishNanos != 0 ? finishNanos : System.nanoTime();
+            return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+        }
+
+        double usersPerSecond() {
+            long elapsed = elapsedMillis();
+            return elapsed == 0 ? 0.0 : usersProcessed.get() * 1000.0 / elapsed;
+        }
+
+        void fill(Map<String, Object> status) {
+            long completed = chunksCompleted.get();
+            status.put("date", date);
+            status.put("resumedFrom", resumedFrom);
+            status.put("startedAt", startedAt);
+            status.put("finishedAt", finishedAt);
+            status.put("chunksSubmitted", chunksSubmitted.get());
+            status.put("chunksCompleted", completed);
+            status.put("chunksFailed", chunksFailed.get());
+            status.put("usersProcessed", usersProcessed.get());
+            status.put("elapsedMillis", elapsedMillis());
+            status.put("usersPerSecond", usersPerSecond());
+            status.put("avgChunkMillis", completed == 0 ? 0.0
+                    : TimeUnit.NANOSECONDS.toMillis(chunkNanos.get()) / (double) completed);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.example.smarttrainingsystem.repository.StudyProgressRepository;
 import com.example.smarttrainingsystem.repository.StudyRecordRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Async;
@@ -33,6 +34,19 @@ public class StudyProgressService {
 
     private final StudyProgressRepository studyProgressRepository;
     private final StudyRecordRepository studyRecordRepository;
+    private final StudyProgressRollupService studyProgressRollupService;
+
+    /**
+     * 是否定时清理过期的每日学习进度记录
+     */
+    @Value("${app.progress.cleanup.enabled:false}")
+    private boolean cleanupEnabled;
+
+    /**
+     * 每日学习进度记录的保留月数
+     */
+    @Value("${app.progress.cleanup.retention-months:6}")
+    private int cleanupRetentionMonths;
 
     /**
      * 更新用户每日学习进度
@@ -396,53 +410,34 @@ public class StudyProgressService {
     }
 
     /**
-     * 定时任务：每日凌晨更新所有用户的学习进度
+     * 定时任务：每日凌晨对账所有用户前一天的学习进度
+     * 白天的进度由 {@link StudyProgressAggregator} 增量汇总，此处全量重算一遍，补齐丢失或失败的事件；
+     * 由汇总引擎分块并行执行，中断后再次执行会从断点继续
      */
     @Scheduled(cron = "0 0 1 * * ?") // 每日凌晨1点执行
-    @Async
     public void scheduledUpdateAllUsersProgress() {
         log.info("开始定时更新所有用户的学习进度");
-
-        LocalDate yesterday = LocalDate.now().minusDays(1);
-
-        // 获取所有有学习记录的用户
-        List<String> userIds = studyRecordRepository.findAllUsersWithStudyRecords();
-
-        for (String userId : userIds) {
-            try {
-                updateDailyProgress(userId, yesterday);
-
-                // 如果是周一，更新上周进度
-                if (yesterday.getDayOfWeek() == java.time.DayOfWeek.SUNDAY) {
-                    updateWeeklyProgress(userId, yesterday);
-                }
-
-                // 如果是月末，更新上月进度
-                if (yesterday.equals(yesterday.withDayOfMonth(yesterday.lengthOfMonth()))) {
-                    updateMonthlyProgress(userId, yesterday);
-                }
-
-            } catch (Exception e) {
-                log.error("更新用户学习进度失败 - 用户ID: {}, 错误: {}", userId, e.getMessage(), e);
-            }
-        }
-
-        log.info("定时更新所有用户的学习进度完成 - 处理用户数: {}", userIds.size());
+        studyProgressRollupService.run(LocalDate.now().minusDays(1), false);
     }
 
     /**
-     * 定时任务：清理过期的学习进度记录
+     * 定时任务：清理过期的每日学习进度记录（默认关闭，需配置 app.progress.cleanup.enabled 开启）
+     * 只删除每日记录，每周、每月汇总记录保留
      */
     @Scheduled(cron = "0 0 2 1 * ?") // 每月1日凌晨2点执行
     @Async
+    @Transactional
     public void scheduledCleanExpiredProgress() {
+        if (!cleanupEnabled) {
+            return;
+        }
         log.info("开始清理过期的学习进度记录");
 
-        // 删除6个月前的每日记录
-        LocalDate sixMonthsAgo = LocalDate.now().minusMonths(6);
-        studyProgressRepository.deleteByProgressDateBefore(sixMonthsAgo);
+        // 删除保留期之前的每日记录
+        LocalDate cutoff = LocalDate.now().minusMonths(cleanupRetentionMonths);
+        studyProgressRepository.deleteByProgressDateBeforeAndProgressType(cutoff, StudyProgress.ProgressType.DAILY);
 
-        log.info("清理过期的学习进度记录完成");
+        log.info("清理过期的学习进度记录完成 - 截止日期: {}", cutoff);
     }
 
     /**
@@ -40,6 +40,7 @@ public class StudyRecordService {
     private final StudyRecordRepository studyRecordRepository;
     private final CourseRepository courseRepository;
     private final UserRepository userRepository;
+    private final StudyProgressAggregator studyProgressAggregator;
 
     /**
      * 创建学习记录
@@ -88,6 +89,7 @@ public class StudyRecordService {
 
         studyRecord.startStudy();
         StudyRecord savedRecord = studyRecordRepository.save(studyRecord);
+        studyProgressAggregator.publish(userId);
 
         log.info("开始学习成功 - 记录ID: {}", savedRecord.getId());
         return convertToResponse(savedRecord);
@@ -133,6 +135,9 @@ public class StudyRecordService {
         }
 
         StudyRecord savedRecord = studyRecordRepository.save(studyRecord);
+        if (request.getProgressPercent() != null || request.getStudyDuration() != null) {
+            studyProgressAggregator.publish(userId);
+        }
 
         log.info("学习进度更新成功 - 记录ID: {}, 新进度: {}%", savedRecord.getId(), savedRecord.getProgressPercent());
         return convertToResponse(savedRecord);
@@ -175,6 +180,7 @@ public class StudyRecordService {
 
         studyRecord.resumeStudy();
         StudyRecord savedRecord = studyRecordRepository.save(studyRecord);
+        studyProgressAggregator.publish(userId);
 
         log.info("恢复学习成功 - 记录ID: {}", savedRecord.getId());
         return convertToResponse(savedRecord);
@@ -196,6 +202,7 @@ public class StudyRecordService {
 
         studyRecord.completeStudy();
         StudyRecord savedRecord = studyRecordRepository.save(studyRecord);
+        studyProgressAggregator.publish(userId);
 
         log.info("完成学习成功 - 记录ID: {}", savedRecord.getId());
         return convertToResponse(savedRecord);
@@ -416,6 +423,7 @@ public class StudyRecordService {
         }
 
         studyRecordRepository.delete(studyRecord);
+        studyProgressAggregator.publish(userId);
         log.info("学习记录删除成功 - 记录ID: {}", recordId);
     }
 
@@ -452,6 +460,10 @@ public class StudyRecordService {
             }
         }
 
+        if ("delete".equals(request.getOperation())) {
+            studyProgressAggregator.publish(userId);
+        }
+
         log.info("批量操作完成 - 用户ID: {}", userId);
     }
 
@@ -11,6 +11,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -36,6 +38,9 @@ public class WrongQuestionsService {
     @Autowired
     private WrongQuestionRepository wrongQuestionRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
     /**
      * 获取用户错题列表
      *
@@ -229,8 +234,9 @@ public class WrongQuestionsService {
             Question question = questionRepository.findById(questionId)
                     .orElseThrow(() -> new RuntimeException("题目不存在: " + questionId));
 
-            // 判断答案是否正确
-            boolean isCorrect = question.getCorrectAnswer().equals(userAnswer);
+            // 判断答案是否正确（与考试评分规则一致）
+            boolean isCorrect = AnswerGrader.compile(question.getQuestionType(), question.getCorrectAnswer())
+                    .match(userAnswer) == AnswerGrader.FULL_CREDIT;
             if (isCorrect) {
                 correctCount++;
             }
@@ -299,34 +305,40 @@ public class WrongQuestionsService {
     @Transactional
     public void recordWrongQuestions(String userId, String examId, Map<String, String> wrongAnswers) {
         log.info("记录错题 - 用户ID: {}, 考试ID: {}, 错题数: {}", userId, examId, wrongAnswers.size());
+        if (wrongAnswers.isEmpty()) {
+            return;
+        }
 
+        // 一次查询出已存在的错题记录
+        Map<String, WrongQuestion> existingRecords = wrongQuestionRepository
+                .findByUserIdAndQuestionIdIn(userId, wrongAnswers.keySet())
+                .stream()
+                .collect(Collectors.toMap(WrongQuestion::getQuestionId, wq -> wq, (a, b) -> a));
+
+        LocalDateTime now = LocalDateTime.now();
         for (Map.Entry<String, String> entry : wrongAnswers.entrySet()) {
             String questionId = entry.getKey();
             String userAnswer = entry.getValue();
 
-            // 查询是否已存在错题记录
-            Optional<WrongQuestion> existingRecord = wrongQuestionRepository.findByUserIdAndQuestionId(userId, questionId);
-
-            if (existingRecord.isPresent()) {
-                // 更新现有记录
-                WrongQuestion wrongQuestion = existingRecord.get();
+            WrongQuestion wrongQuestion = existingRecords.get(questionId);
+            if (wrongQuestion != null) {
+                // 更新现有记录（受管实体，事务提交时写入）
                 wrongQuestion.setWrongCount(wrongQuestion.getWrongCount() + 1);
-                wrongQuestion.setLastWrongAt(LocalDateTime.now());
+                wrongQuestion.setLastWrongAt(now);
                 wrongQuestion.setLastUserAnswer(userAnswer);
-                wrongQuestionRepository.save(wrongQuestion);
             } else {
-                // 创建新的错题记录
-                WrongQuestion wrongQuestion = new WrongQuestion();
+                // 创建新的错题记录（主键由应用生成，直接插入，不先按主键查询）
+                wrongQuestion = new WrongQuestion();
                 wrongQuestion.setUserId(userId);
                 wrongQuestion.setQuestionId(questionId);
                 wrongQuestion.setExamId(examId);
                 wrongQuestion.setWrongCount(1);
                 wrongQuestion.setCorrectCount(0);
                 wrongQuestion.setPracticeCount(0);
-                wrongQuestion.setLastWrongAt(LocalDateTime.now());
+                wrongQuestion.setLastWrongAt(now);
                 wrongQuestion.setLastUserAnswer(userAnswer);
                 wrongQuestion.setMastered(false);
-                wrongQuestionRepository.save(wrongQuestion);
+                entityManager.persist(wrongQuestion);
             }
         }
     }
@@ -3,17 +3,30 @@ package com.example.smarttrainingsystem.utils;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * JWT工具类
+ * 解析结果按Token摘要缓存，同一Token重复请求时不再重复验签和解析
  * 
  * @author 开发者
  * @version 1.0
@@ -35,6 +48,29 @@ public class JwtUtil {
     @Value("${jwt.expiration:604800000}")
     private Long expiration;
 
+    /**
+     * 解析结果缓存的最大条目数
+     */
+    @Value("${jwt.cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    /**
+     * 解析结果缓存，key为Token的SHA-256摘要，避免在内存中保留原始Token
+     */
+    private final Map<String, TokenClaims> claimsCache = new ConcurrentHashMap<>();
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder cacheEvictions = new LongAdder();
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
     /**
      * 生成JWT Token
      * 
@@ -79,13 +115,8 @@ public class JwtUtil {
      * @return 用户名
      */
     public String getUsernameFromToken(String token) {
-        try {
-            Claims claims = getClaimsFromToken(token);
-            return claims.getSubject();
-        } catch (Exception e) {
-            log.error("从Token获取用户名失败", e);
-            return null;
-        }
+        TokenClaims claims = parseToken(token);
+        return claims != null ? claims.getUsername() : null;
     }
 
     /**
@@ -95,13 +126,8 @@ public class JwtUtil {
      * @return 用户ID
      */
     public String getUserIdFromToken(String token) {
-        try {
-            Claims claims = getClaimsFromToken(token);
-            return (String) claims.get("userId");
-        } catch (Exception e) {
-            log.error("从Token获取用户ID失败", e);
-            return null;
-        }
+        TokenClaims claims = parseToken(token);
+        return claims != null ? claims.getUserId() : null;
     }
 
     /**
@@ -110,31 +136,20 @@ public class JwtUtil {
      * @param token JWT Token
      * @return 角色列表
      */
-    @SuppressWarnings("unchecked")
     public List<String> getRolesFromToken(String token) {
-        try {
-            Claims claims = getClaimsFromToken(token);
-            return (List<String>) claims.get("roles");
-        } catch (Exception e) {
-            log.error("从Token获取角色信息失败", e);
-            return null;
-        }
+        TokenClaims claims = parseToken(token);
+        return claims != null ? claims.getRoles() : null;
     }
 
     /**
      * 从Token中获取过期时间
      * 
      * @param token JWT Token
-     * @return 过期时间
+     * @return 过期时间，Token无效、已过期或缺少过期时间时返回null
      */
     public Date getExpirationDateFromToken(String token) {
-        try {
-            Claims claims = getClaimsFromToken(token);
-            return claims.getExpiration();
-        } catch (Exception e) {
-            log.error("从Token获取过期时间失败", e);
-            return null;
-        }
+        TokenClaims claims = parseToken(token);
+        return claims != null ? new Date(claims.getExpiresAt()) : null;
     }
 
     /**
@@ -146,7 +161,7 @@ public class JwtUtil {
     public Boolean isTokenExpired(String token) {
         try {
             Date expiration = getExpirationDateFromToken(token);
-            return expiration.before(new Date());
+            return expiration == null || expiration.before(new Date());
         } catch (Exception e) {
             log.error("验证Token过期状态失败", e);
             return true;
@@ -170,6 +185,102 @@ public class JwtUtil {
         }
     }
 
+    /**
+     * 解析Token，验签通过且未过期时返回不可变的声明对象
+     * 优先命中缓存，缓存条目在Token过期时失效
+     *
+     * @param token JWT Token
+     * @return 声明对象，Token无效、已过期或缺少过期时间时返回null
+     */
+    public TokenClaims parseToken(String token) {
+        if (token == null) {
+            return null;
+        }
+
+        String key = digest(token);
+        long now = System.currentTimeMillis();
+
+        TokenClaims cached = claimsCache.get(key);
+        if (cached != null) {
+            if (cached.getExpiresAt() > now) {
+                cacheHits.increment();
+                return cached;
+            }
+            claimsCache.remove(key, cached);
+            cacheEvictions.increment();
+            cacheMisses.increment();
+            return null;
+        }
+
+        cacheMisses.increment();
+        TokenClaims parsed;
+        try {
+            parsed = TokenClaims.from(getClaimsFromToken(token));
+        } catch (Exception e) {
+            log.warn("Token解析失败: {}", e.getMessage());
+            return null;
+        }
+        if (parsed == null) {
+            // 本系统签发的Token都带过期时间，没有过期时间的Token不予接受
+            log.warn("Token缺少过期时间，拒绝");
+            return null;
+        }
+
+        if (parsed.getExpiresAt() > now) {
+            if (claimsCache.size() >= cacheMaxSize) {
+                evictEntries(now);
+            }
+            claimsCache.put(key, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * 获取解析缓存统计信息
+     *
+     * @return 命中、未命中、淘汰次数及当前条目数
+     */
+    public Map<String, Object> getCacheStats() {
+        long hits = cacheHits.sum();
+        long misses = cacheMisses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", claimsCache.size());
+        stats.put("maxSize", cacheMaxSize);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", cacheEvictions.sum());
+        stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return stats;
+    }
+
+    /**
+     * 缓存已满时先清理过期条目，仍不足则淘汰约十分之一的条目
+     */
+    private void evictEntries(long now) {
+        Iterator<TokenClaims> iterator = claimsCache.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getExpiresAt() <= now) {
+                iterator.remove();
+                cacheEvictions.increment();
+            }
+        }
+
+        int toEvict = claimsCache.size() - cacheMaxSize + Math.max(1, cacheMaxSize / 10);
+        iterator = claimsCache.values().iterator();
+        while (toEvict > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            cacheEvictions.increment();
+            toEvict--;
+        }
+    }
+
+    private String digest(String token) {
+        MessageDigest md = SHA256.get();
+        md.reset();
+        return Base64.getEncoder().encodeToString(md.digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
     /**
      * 从Token中获取Claims
      * 
@@ -203,4 +314,33 @@ public class JwtUtil {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Token声明信息（不可变）
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class TokenClaims {
+        private final String username;
+        private final String userId;
+        private final List<String> roles;
+        private final long expiresAt;
+
+        /**
+         * @return 声明对象，Token没有过期时间时返回null
+         */
+        @SuppressWarnings("unchecked")
+        static TokenClaims from(Claims claims) {
+            Date exp = claims.getExpiration();
+            if (exp == null) {
+                return null;
+            }
+            List<String> roles = (List<String>) claims.get("roles");
+            return new TokenClaims(
+                    claims.getSubject(),
+                    (String) claims.get("userId"),
+                    roles != null ? Collections.unmodifiableList(roles) : Collections.<String>emptyList(),
+                    exp.getTime());
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.smarttrainingsystem.service;
+
+import com.example.smarttrainingsystem.entity.Exam;
+import com.example.smarttrainingsystem.entity.Question.QuestionType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.example.smarttrainingsystem.service.AnswerGrader.FULL_CREDIT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 答案评分器测试
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+class AnswerGraderTest {
+
+    private static final int HALF_CREDIT = FULL_CREDIT / 2;
+
+    // ==================== 选择题 ====================
+
+    @Test
+    void singleChoiceIgnoresCaseAndWhitespace() {
+        AnswerGrader.Matcher matcher = AnswerGrader.compile(QuestionType.SINGLE_CHOICE, "B");
+
+        assertEquals(FULL_CREDIT, matcher.match("B"));
+        assertEquals(FULL_CREDIT, matcher.match(" b "));
+        assertEquals(FULL_CREDIT, matcher.match("Ｂ"));
+        assertEquals(0, matcher.match("A"));
+        assertEquals(0, matcher.match("A,B"));
+    }
+
+    @Test
+    void multipleChoiceComparesOptionSetsRegardlessOfOrderCaseAndSeparators() {
+        AnswerGrader.Matcher matcher = AnswerGrader.compile(QuestionType.MULTIPLE_CHOICE, "A,C,D");
+
+        assertEquals(FULL_CREDIT, matcher.match("A,C,D"));
+        assertEquals(FULL_CREDIT, matcher.match("D,A,C"));
+        assertEquals(FULL_CREDIT, matcher.match("acd"));
+        assertEquals(FULL_CREDIT, matcher.match("C、D，A"));
+        assertEquals(FULL_CREDIT, matcher.match("A; C D"));
+        assertEquals(FULL_CREDIT, matcher.match("A,A,C,D"));
+    }
+
+    @Test
+    void multipleChoiceCorrectSubsetEarnsHalfCredit() {
+        AnswerGrader.Matcher matcher = AnswerGrader.compile(QuestionType.MULTIPLE_CHOICE, "A,C,D");
+
+        assertEquals(HALF_CREDIT, matcher.match("A,C"));
+        assertEquals(HALF_CREDIT, matcher.match("d"));
+    }
+
+    @Test
+    void multipleChoiceWithAnyWrongOptionEarnsNothing() {
+        AnswerGrader.Matcher matcher = AnswerGrader.compile(QuestionType.MULTIPLE_CHOICE, "A,C,D");
+
+        assertEquals(0, matcher.match("A,B"));
+        assertEquals(0, matcher.match("A,B,C,D"));
+        assertEquals(0, matcher.match(""));
+        assertEquals(0, matcher.match(" , "));
+        assertEquals(0, matcher.match("A,C,1"));
+        assertEquals(0, matcher.match(null));
+    }
+
+    @Test
+    void singleChoiceDoesNotGivePartialCredit() {
+        AnswerGrader.Matcher matcher = AnswerGrader.compile(QuestionType.SINGLE_CHOICE, "A,C");
+
+        assertEquals(FULL_CREDIT, matcher.match("C,A"));
+        assertEquals(0, matcher.match("A"));
+    }
+
+    @Test
+    void unparseableChoiceAnswerFallsBackToTextComparison() {
+        AnswerGrader.Matcher matcher = AnswerGrader.compile(QuestionType.SINGLE_CHOICE, "选项1");
+
+        assertEquals(FULL_CREDIT, matcher.match(" 选项1 "));
+        assertEquals(0, matcher.match("选项2"));
+    }
+
+    // ==================== 判断题 ====================
+
+    @Test
+    void trueFalseNormalisesTokens() {
+        AnswerGrader.Matcher matcher = AnswerGrader.compile(QuestionType.TRUE_FALSE, "正确");
+
+        for (String answer : Arrays.asList("true", "TRUE", " True ", "t", "yes", "Y", "1", "正确", "对", "是", "√")) {
+            assertEquals(FULL_CREDIT, matcher.match(answer), answer);
+        }
+        for (String answer : Arrays.asList("false", "F", "no", "0", "错误", "错", "否", "×", "", "maybe")) {
+            assertEquals(0, matcher.match(answer), answer);
+        }
+        assertEquals(0, matcher.match(null));
+    }
+
+    @Test
+    void trueFalseFalseAnswer() {
+        AnswerGrader.Matcher matcher = AnswerGrader.compile(QuestionType.TRUE_FALSE, "false");
+
+        assertEquals(FULL_CREDIT, matcher.match("错"));
+        assertEquals(FULL_CREDIT, matcher.match("Ｎｏ"));
+        assertEquals(0, matcher.match("对"));
+    }
+
+    @Test
+    void unparseableTrueFalseAnswerFallsBackToTextComparison() {
+        AnswerGrader.Matcher matcher = AnswerGrader.compile(QuestionType.TRUE_FALSE, "不一定");
+
+        assertEquals(FULL_CREDIT, matcher.match("不一定"));
+        assertEquals(0, matcher.match("对"));
+    }
+
+    // ==================== 填空题与简答题 ====================
+
+    @Test
+    void fillBlankNormalisesText() {
+        AnswerGrader.Matcher matcher = AnswerGrader.compile(QuestionType.FILL_BLANK, "Spring Boot");
+
+        assertEquals(FULL_CREDIT, matcher.match("spring boot"));
+        assertEquals(FULL_CREDIT, matcher.match("  Spring \t  Boot "));
+        assertEquals(FULL_CREDIT, matcher.match("ＳＰＲＩＮＧ　ＢＯＯＴ"));
+        assertEquals(0, matcher.match("SpringBoot"));
+        assertEquals(0, matcher.match(""));
+        assertEquals(0, matcher.match(null));
+    }
+
+    @Test
+    void fillBlankAcceptsAlternatives() {
+        AnswerGrader.Matcher matcher = AnswerGrader.compile(QuestionType.FILL_BLANK, "JVM|Java虚拟机");
+
+        assertEquals(FULL_CREDIT, matcher.match("jvm"));
+        assertEquals(FULL_CREDIT, matcher.match("Java虚拟机"));
+        assertEquals(0, matcher.match("JRE"));
+    }
+
+    @Test
+    void fillBlankGivesCreditPerBlank() {
+        AnswerGrader.Matcher matcher = AnswerGrader.compile(QuestionType.FILL_BLANK, "GET;POST|post请求;PUT;DELETE");
+
+        assertEquals(FULL_CREDIT, matcher.match("get;POST;put；delete"));
+        assertEquals(FULL_CREDIT, matcher.match("GET;post请求;PUT;DELETE"));
+        assertEquals(FULL_CREDIT * 3 / 4, matcher.match("GET;POST;PATCH;DELETE"));
+        assertEquals(HALF_CREDIT, matcher.match("GET;POST"));
+        assertEquals(FULL_CREDIT / 4, matcher.match(";POST;;"));
+        assertEquals(0, matcher.match("DELETE;PUT;POST;GET"));
+    }
+
+    @Test
+    void shortAnswerComparesWholeNormalisedText() {
+        AnswerGrader.Matcher matcher = AnswerGrader.compile(QuestionType.SHORT_ANSWER, "先进先出;后进先出");
+
+        assertEquals(FULL_CREDIT, matcher.match(" 先进先出;后进先出 "));
+        assertEquals(0, matcher.match("先进先出"));
+    }
+
+    @Test
+    void missingCorrectAnswerNeverMatches() {
+        AnswerGrader.Matcher matcher = AnswerGrader.compile(QuestionType.SINGLE_CHOICE, null);
+
+        assertEquals(0, matcher.match("A"));
+        assertEquals(0, matcher.match(null));
+    }
+
+    @Test
+    void normalizeTrimsConvertsFullWidthAndCollapsesWhitespace() {
+        assertEquals("hello, world!", AnswerGrader.normalize("　ＨＥＬＬＯ，  World！\n"));
+        assertEquals("", AnswerGrader.normalize("   "));
+    }
+
+    // ==================== 整卷评分 ====================
+
+    @Test
+    void paperGradeScalesPartialCreditByQuestionScore() {
+        ExamPaperService.ExamPaper paper = paper(
+                new ExamPaperService.PaperQuestion("q1", QuestionType.SINGLE_CHOICE, "A", 5),
+                new ExamPaperService.PaperQuestion("q2", QuestionType.MULTIPLE_CHOICE, "A,B,C", 10),
+                new ExamPaperService.PaperQuestion("q3", QuestionType.MULTIPLE_CHOICE, "B,D", 7),
+                new ExamPaperService.PaperQuestion("q4", QuestionType.TRUE_FALSE, "对", 5),
+                new ExamPaperService.PaperQuestion("q5", QuestionType.FILL_BLANK, "1;2;3", 9),
+                new ExamPaperService.PaperQuestion("q6", QuestionType.SHORT_ANSWER, "略", null));
+
+        Map<String, String> answers = new HashMap<>();
+        answers.put("q1", "a");
+        answers.put("q2", "C,A");
+        answers.put("q3", "B");
+        answers.put("q4", "false");
+        answers.put("q5", "1;2;4");
+
+        ExamPaperService.PaperGrade grade = paper.grade(answers);
+
+        assertEquals(5, grade.getEarned(0));
+        assertTrue(grade.isCorrect(0));
+        assertEquals(5, grade.getEarned(1));
+        assertFalse(grade.isCorrect(1));
+        // 7 分的一半向下取整
+        assertEquals(3, grade.getEarned(2));
+        assertFalse(grade.isCorrect(2));
+        assertEquals(0, grade.getEarned(3));
+        assertEquals(6, grade.getEarned(4));
+        assertFalse(grade.isCorrect(4));
+        assertEquals(0, grade.getEarned(5));
+        assertFalse(grade.isCorrect(5));
+        assertEquals(19, grade.getTotalScore());
+        assertEquals(1, grade.getCorrectCount());
+    }
+
+    @Test
+    void paperGradeWithAllAnswersCorrect() {
+        ExamPaperService.ExamPaper paper = paper(
+                new ExamPaperService.PaperQuestion("q1", QuestionType.MULTIPLE_CHOICE, "B,D", 10),
+                new ExamPaperService.PaperQuestion("q2", QuestionType.FILL_BLANK, "a;b", 10));
+
+        Map<String, String> answers = new HashMap<>();
+        answers.put("q1", "db");
+        answers.put("q2", "A；B");
+
+        ExamPaperService.PaperGrade grade = paper.grade(answers);
+
+        assertEquals(20, grade.getTotalScore());
+        assertEquals(2, grade.getCorrectCount());
+    }
+
+    @Test
+    void paperGradeWithoutAnswers() {
+        ExamPaperService.ExamPaper paper = paper(
+                new ExamPaperService.PaperQuestion("q1", QuestionType.SINGLE_CHOICE, "A", 10));
+
+        ExamPaperService.PaperGrade grade = paper.grade(Collections.emptyMap());
+
+        assertEquals(0, grade.getTotalScore());
+        assertEquals(0, grade.getCorrectCount());
+    }
+
+    // ==================== 私有方法 ====================
+
+    private static ExamPaperService.ExamPaper paper(ExamPaperService.PaperQuestion... questions) {
+        Exam exam = new Exam();
+        return new ExamPaperService.ExamPaper(exam, Arrays.asList(questions), Collections.emptyList());
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.smarttrainingsystem.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 考试开始准入控制测试
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+class ExamAdmissionServiceTest {
+
+    private static final long TICKET_TTL_MS = 50;
+
+    private ExamAdmissionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ExamAdmissionService();
+        ReflectionTestUtils.setField(service, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(service, "maxQueue", 2);
+        ReflectionTestUtils.setField(service, "maxWaitMs", 10L);
+        ReflectionTestUtils.setField(service, "ticketTtlMs", TICKET_TTL_MS);
+    }
+
+    @Test
+    void deferredTicketKeepsItsPosition() {
+        ExamAdmissionService.Admission holder = service.admit("holder");
+        assertTrue(holder.isGranted());
+
+        ExamAdmissionService.Admission first = service.admit("a");
+        ExamAdmissionService.Admission second = service.admit("b");
+        ExamAdmissionService.Admission retry = service.admit("a");
+
+        assertFalse(first.isGranted());
+        assertEquals(1, first.getPosition());
+        assertEquals(2, second.getPosition());
+        assertEquals(1, retry.getPosition());
+        holder.release();
+    }
+
+    @Test
+    void staleTicketBehindLiveWaiterIsPurged() throws Exception {
+        ExamAdmissionService.Admission holder = service.admit("holder");
+        assertTrue(holder.isGranted());
+
+        // 在服务端长时间等待的考生排在队首
+        ReflectionTestUtils.setField(service, "maxWaitMs", 5000L);
+        CompletableFuture<ExamAdmissionService.Admission> live =
+                CompletableFuture.supplyAsync(() -> service.admit("live"));
+        awaitQueued(1);
+        ReflectionTestUtils.setField(service, "maxWaitMs", 10L);
+
+        // 排在其后的考生离开后不再重试
+        ExamAdmissionService.Admission stale = service.admit("stale");
+        assertFalse(stale.isGranted());
+        assertEquals(2, stale.getPosition());
+        Thread.sleep(TICKET_TTL_MS * 2);
+
+        // 过期位置不再占用排队名额，也不抬高后来者的排队位置
+        ExamAdmissionService.Admission next = service.admit("next");
+        assertFalse(next.isGranted());
+        assertEquals(2, next.getPosition());
+        assertEquals(2, service.getStatus().get("queued"));
+
+        holder.release();
+        ExamAdmissionService.Admission admitted = live.get(5, TimeUnit.SECONDS);
+        assertTrue(admitted.isGranted());
+        admitted.release();
+    }
+
+    // ==================== 私有方法 ====================
+
+    private void awaitQueued(int queued) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Integer.valueOf(queued).equals(service.getStatus().get("queued"))) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("排队人数未达到 " + queued);
+            }
+            Thread.sleep(5);
+        }
+    }
+}
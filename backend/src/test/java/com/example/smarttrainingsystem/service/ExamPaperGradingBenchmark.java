@@ -0,0 +1,135 @@
+package com.example.smarttrainingsystem.service;
+
+import com.example.smarttrainingsystem.entity.Exam;
+import com.example.smarttrainingsystem.entity.Question.QuestionType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整卷评分基准测试
+ * 100 道混合题型的试卷，每次调用为 10000 份答卷评分，作答中混有乱序、大小写、全角字符、少选和错选。
+ * 运行方式：mvn test-compile 后执行本类的 main 方法
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExamPaperGradingBenchmark {
+
+    private static final int QUESTIONS = 100;
+    private static final int SUBMISSIONS = 10000;
+
+    private static final String[] TRUE_FALSE_ANSWERS = {"对", "正确", "true", "T", "错", "false", "×", "1"};
+
+    private ExamPaperService.ExamPaper paper;
+
+    private List<Map<String, String>> submissions;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        List<ExamPaperService.PaperQuestion> questions = new ArrayList<>(QUESTIONS);
+        for (int i = 0; i < QUESTIONS; i++) {
+            questions.add(question(i));
+        }
+        Exam exam = new Exam();
+        paper = new ExamPaperService.ExamPaper(exam, questions, Collections.emptyList());
+
+        submissions = new ArrayList<>(SUBMISSIONS);
+        for (int s = 0; s < SUBMISSIONS; s++) {
+            Map<String, String> answers = new HashMap<>(QUESTIONS * 2);
+            for (ExamPaperService.PaperQuestion question : questions) {
+                String answer = answer(question, random);
+                if (answer != null) {
+                    answers.put(question.getQuestionId(), answer);
+                }
+            }
+            submissions.add(answers);
+        }
+    }
+
+    @Benchmark
+    public void gradeSubmissions(Blackhole blackhole) {
+        for (Map<String, String> answers : submissions) {
+            blackhole.consume(paper.grade(answers));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExamPaperGradingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    // ==================== 私有方法 ====================
+
+    /**
+     * 题型按 单选 40%、多选 25%、判断 20%、填空 15% 分布
+     */
+    private static ExamPaperService.PaperQuestion question(int index) {
+        String id = "q" + index;
+        int bucket = index % 20;
+        if (bucket < 8) {
+            return new ExamPaperService.PaperQuestion(id, QuestionType.SINGLE_CHOICE,
+                    String.valueOf((char) ('A' + index % 4)), 1);
+        }
+        if (bucket < 13) {
+            return new ExamPaperService.PaperQuestion(id, QuestionType.MULTIPLE_CHOICE, "A,C,D", 2);
+        }
+        if (bucket < 17) {
+            return new ExamPaperService.PaperQuestion(id, QuestionType.TRUE_FALSE,
+                    index % 2 == 0 ? "正确" : "错误", 1);
+        }
+        return new ExamPaperService.PaperQuestion(id, QuestionType.FILL_BLANK, "Spring Boot|SpringBoot;JPA", 2);
+    }
+
+    private static String answer(ExamPaperService.PaperQuestion question, Random random) {
+        int roll = random.nextInt(100);
+        if (roll < 3) {
+            // 未作答
+            return null;
+        }
+        switch (question.getQuestionType()) {
+            case SINGLE_CHOICE:
+                return roll < 70 ? question.getCorrectAnswer().toLowerCase() : String.valueOf((char) ('A' + roll % 4));
+            case MULTIPLE_CHOICE:
+                if (roll < 50) {
+                    return "D,A,C";
+                }
+                return roll < 75 ? "c、a" : "A,B";
+            case TRUE_FALSE:
+                return TRUE_FALSE_ANSWERS[roll % TRUE_FALSE_ANSWERS.length];
+            default:
+                if (roll < 50) {
+                    return " spring  boot ；ＪＰＡ";
+                }
+                return roll < 75 ? "springboot;Hibernate" : "Spring";
+        }
+    }
+}
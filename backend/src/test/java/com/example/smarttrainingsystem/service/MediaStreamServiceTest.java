@@ -0,0 +1,155 @@
+package com.example.smarttrainingsystem.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Range 头解析测试
+ *
+ * @author Smart Training System
+ * @version 1.0
+ * @since 2025-08-07
+ */
+class MediaStreamServiceTest {
+
+    private static final long LENGTH = 1000;
+
+    // ==================== 单区间 ====================
+
+    @Test
+    void parsesClosedRange() {
+        assertRanges(MediaStreamService.parseRanges("bytes=0-99", LENGTH), 0, 99);
+        assertRanges(MediaStreamService.parseRanges("Bytes= 10 - 10 ", LENGTH), 10, 10);
+    }
+
+    @Test
+    void clampsLastBytePositionToLength() {
+        assertRanges(MediaStreamService.parseRanges("bytes=900-5000", LENGTH), 900, 999);
+    }
+
+    @Test
+    void parsesOpenEndedRange() {
+        assertRanges(MediaStreamService.parseRanges("bytes=500-", LENGTH), 500, 999);
+        assertRanges(MediaStreamService.parseRanges("bytes=0-", LENGTH), 0, 999);
+    }
+
+    @Test
+    void parsesSuffixRange() {
+        assertRanges(MediaStreamService.parseRanges("bytes=-100", LENGTH), 900, 999);
+        assertRanges(MediaStreamService.parseRanges("bytes=-5000", LENGTH), 0, 999);
+    }
+
+    // ==================== 不可满足 ====================
+
+    @Test
+    void rangeBeyondLengthIsUnsatisfiable() {
+        assertUnsatisfiable(MediaStreamService.parseRanges("bytes=1000-", LENGTH));
+        assertUnsatisfiable(MediaStreamService.parseRanges("bytes=1000-1999", LENGTH));
+        assertUnsatisfiable(MediaStreamService.parseRanges("bytes=2000-3000,1500-", LENGTH));
+    }
+
+    @Test
+    void emptySuffixIsUnsatisfiable() {
+        assertUnsatisfiable(MediaStreamService.parseRanges("bytes=-0", LENGTH));
+    }
+
+    @Test
+    void anyRangeOfEmptyFileIsUnsatisfiable() {
+        assertUnsatisfiable(MediaStreamService.parseRanges("bytes=0-", 0));
+        assertUnsatisfiable(MediaStreamService.parseRanges("bytes=-10", 0));
+    }
+
+    @Test
+    void unsatisfiableRangesAreDroppedFromSatisfiableOnes() {
+        assertRanges(MediaStreamService.parseRanges("bytes=0-9,2000-3000", LENGTH), 0, 9);
+    }
+
+    // ==================== 语法错误 ====================
+
+    @Test
+    void headerWithoutSpecsIsIgnored() {
+        assertNull(MediaStreamService.parseRanges("bytes=", LENGTH));
+        assertNull(MediaStreamService.parseRanges("bytes= ", LENGTH));
+        assertNull(MediaStreamService.parseRanges("bytes=,", LENGTH));
+        assertNull(MediaStreamService.parseRanges("bytes= , ,", LENGTH));
+    }
+
+    @Test
+    void malformedSpecsAreIgnored() {
+        assertNull(MediaStreamService.parseRanges("items=0-99", LENGTH));
+        assertNull(MediaStreamService.parseRanges("bytes=abc", LENGTH));
+        assertNull(MediaStreamService.parseRanges("bytes=-", LENGTH));
+        assertNull(MediaStreamService.parseRanges("bytes=--5", LENGTH));
+        assertNull(MediaStreamService.parseRanges("bytes=a-b", LENGTH));
+        assertNull(MediaStreamService.parseRanges("bytes=+1-2", LENGTH));
+        assertNull(MediaStreamService.parseRanges("bytes=99-0", LENGTH));
+        assertNull(MediaStreamService.parseRanges("bytes=0-99999999999999999999", LENGTH));
+        assertNull(MediaStreamService.parseRanges("bytes=0-9,garbage", LENGTH));
+    }
+
+    // ==================== 多区间 ====================
+
+    @Test
+    void coalescesOverlappingAndAdjacentRanges() {
+        assertRanges(MediaStreamService.parseRanges("bytes=0-99,50-149", LENGTH), 0, 149);
+        assertRanges(MediaStreamService.parseRanges("bytes=0-99,100-199", LENGTH), 0, 199);
+        assertRanges(MediaStreamService.parseRanges("bytes=0-9,-10,995-", LENGTH), 0, 9, 990, 999);
+    }
+
+    @Test
+    void sortsAndMergesUnorderedRanges() {
+        assertRanges(MediaStreamService.parseRanges("bytes=500-599,0-99", LENGTH), 0, 99, 500, 599);
+        assertRanges(MediaStreamService.parseRanges("bytes=200-209, 0-9, 5-20", LENGTH), 0, 20, 200, 209);
+    }
+
+    @Test
+    void skipsEmptySpecsBetweenRanges() {
+        assertRanges(MediaStreamService.parseRanges("bytes=0-9,,20-29", LENGTH), 0, 9, 20, 29);
+    }
+
+    @Test
+    void ignoresHeaderWithTooManyRanges() {
+        assertNotNull(MediaStreamService.parseRanges("bytes=" + specs(16), LENGTH));
+        assertEquals(16, MediaStreamService.parseRanges("bytes=" + specs(16), LENGTH).size());
+        assertNull(MediaStreamService.parseRanges("bytes=" + specs(17), LENGTH));
+    }
+
+    // ==================== 私有方法 ====================
+
+    /**
+     * count 个互不相邻的两字节区间
+     */
+    private static String specs(int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(i * 10).append('-').append(i * 10 + 1);
+        }
+        return builder.toString();
+    }
+
+    private static void assertUnsatisfiable(List<MediaStreamService.ByteRange> ranges) {
+        assertNotNull(ranges);
+        assertTrue(ranges.isEmpty());
+    }
+
+    /**
+     * @param bounds 依次为各区间的起止位置
+     */
+    private static void assertRanges(List<MediaStreamService.ByteRange> ranges, long... bounds) {
+        assertNotNull(ranges);
+        assertEquals(bounds.length / 2, ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            assertEquals(bounds[2 * i], ranges.get(i).start);
+            assertEquals(bounds[2 * i + 1], ranges.get(i).end);
+        }
+    }
+}
@@ -2,9 +2,18 @@
 export function useMediaUrl() {
   const API_BASE = ''  // 使用相对路径，通过vite代理
 
-  const isVideoFile = (url) => /\.(mp4|mov|webm|avi|mkv)$/i.test(url || '')
-  const isAudioFile = (url) => /\.(mp3|wav|ogg|m4a)$/i.test(url || '')
-  const isDocumentFile = (url) => /\.(pdf|docx?|xlsx?|pptx?|txt|md|csv|json|xml)$/i.test(url || '')
+  const isVideoFile = (url) => /\.(mp4|mov|webm|avi|mkv)(\?.*)?$/i.test(url || '')
+  const isAudioFile = (url) => /\.(mp3|wav|ogg|m4a)(\?.*)?$/i.test(url || '')
+  const isDocumentFile = (url) => /\.(pdf|docx?|xlsx?|pptx?|txt|md|csv|json|xml)(\?.*)?$/i.test(url || '')
+
+  // video/img 等标签无法携带 Authorization 头，媒体地址通过查询参数携带 Token，后端据此按用户限流
+  const withAccessToken = (url) => {
+    const token = localStorage.getItem('token')
+    if (!token || !url.startsWith(`${API_BASE}/api/`)) {
+      return url
+    }
+    return `${url}${url.includes('?') ? '&' : '?'}access_token=${encodeURIComponent(token)}`
+  }
 
   const resolveMediaUrl = (url) => {
     console.log('🔗 原始URL:', url)
@@ -48,7 +57,7 @@ export function useMediaUrl() {
     }
 
     console.log('🔗 最终URL:', finalUrl)
-    return finalUrl
+    return withAccessToken(finalUrl)
   }
 
   const getMediaUrl = (lessonData) => {
@@ -0,0 +1,43 @@
+// frontend/src/utils/thumbnail.js
+/**
+ * 缩略图地址工具函数
+ * 课程封面、头像通过缩略图接口加载，尺寸须与后端预生成规格一致（其他尺寸返回 400）
+ */
+
+/**
+ * 课程封面规格：列表小图、卡片图、详情页图
+ */
+export const COVER_SIZES = {
+  small: [48, 48],
+  card: [320, 180],
+  detail: [640, 360]
+}
+
+/**
+ * 头像规格
+ */
+export const AVATAR_SIZES = {
+  small: [48, 48],
+  medium: [96, 96],
+  large: [192, 192]
+}
+
+/**
+ * 获取上传图片的缩略图地址
+ * @param {string} url - 原图URL（/api/v1/files/...）
+ * @param {number[]} size - 规格 [宽, 高]，取自 COVER_SIZES / AVATAR_SIZES
+ * @returns {string} 缩略图URL，非上传文件（外部地址、blob 等）原样返回
+ */
+export const getThumbnailUrl = (url, size) => {
+  if (!url) {
+    return url
+  }
+
+  const path = url.replace(/^https?:\/\/[^/]+/, '')
+  if (!path.startsWith('/api/v1/files/')) {
+    return url
+  }
+
+  const [width, height] = size
+  return `/api/v1/files/thumbnail?url=${encodeURIComponent(path)}&w=${width}&h=${height}`
+}